@@ -0,0 +1,109 @@
+package com.befiler.assistant.benchmark;
+
+import com.befiler.assistant.config.IngestionProperties;
+import com.befiler.assistant.config.VectorStoreProperties;
+import com.befiler.assistant.service.DocumentChunker;
+import com.befiler.assistant.service.DocumentService;
+import com.befiler.assistant.service.DocumentService.QAPair;
+import com.befiler.assistant.service.TokenCounter;
+import com.befiler.assistant.vectorstore.InMemoryHnswVectorStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic knowledge base shaped like the one KnowledgeLoaderService loads:
+ * sections with subsections, one general-info paragraph and several Q&A pairs each,
+ * built through DocumentService so ids and metadata match production
+ */
+public final class BenchmarkCorpus {
+
+    public static final int DIMENSIONS = 1536;
+
+    private static final String[] TOPICS = {
+        "salary", "rental income", "business income", "capital gains", "withholding tax",
+        "zakat", "wealth statement", "tax credit", "pension", "foreign remittance"
+    };
+    private static final String[] ACTIONS = {
+        "declare", "calculate", "report", "claim", "adjust", "verify"
+    };
+
+    private BenchmarkCorpus() {
+    }
+
+    public static String section(int i) {
+        return "section_" + i;
+    }
+
+    public static String subsection(int i) {
+        return "subsection_" + i;
+    }
+
+    /**
+     * Document builder only; the storage collaborators are left out
+     */
+    public static DocumentService documentService() {
+        return new DocumentService(null, null, null, null,
+            new DocumentChunker(new IngestionProperties(), new TokenCounter()));
+    }
+
+    /**
+     * Deterministic documents: sections * subsections * (1 + qaPerSubsection)
+     */
+    public static List<Document> documents(int sections, int subsections, int qaPerSubsection) {
+        DocumentService documentService = documentService();
+        Random random = new Random(7);
+        List<Document> documents = new ArrayList<>();
+        for (int s = 0; s < sections; s++) {
+            for (int ss = 0; ss < subsections; ss++) {
+                List<QAPair> qaPairs = new ArrayList<>(qaPerSubsection);
+                for (int q = 0; q < qaPerSubsection; q++) {
+                    qaPairs.add(new QAPair(question(random), answer(random)));
+                }
+                documents.addAll(documentService.buildTaxKnowledgeSection(
+                    section(s), answer(random) + " " + answer(random), qaPairs, subsection(ss)));
+            }
+        }
+        return documents;
+    }
+
+    /**
+     * In-process vector store over the corpus, embedded with the hashing client.
+     * Only the unquantized search path is used, so the pgvector collaborators
+     * (writes, deletes, re-rank reads) are left out.
+     */
+    public static InMemoryHnswVectorStore vectorStore(List<Document> documents,
+                                                      HashingEmbeddingClient embeddingClient) {
+        VectorStoreProperties.Hnsw settings = new VectorStoreProperties.Hnsw();
+        settings.setDimensions(DIMENSIONS);
+        settings.setSnapshotPath("");
+
+        List<List<Double>> embeddings = embeddingClient.embed(documents.stream().map(Document::getContent).toList());
+        for (int i = 0; i < documents.size(); i++) {
+            documents.get(i).setEmbedding(embeddings.get(i));
+        }
+        InMemoryHnswVectorStore store = new InMemoryHnswVectorStore(null, null, embeddingClient, embeddingClient,
+            null, settings, new ObjectMapper());
+        store.index(documents);
+        return store;
+    }
+
+    public static String question(Random random) {
+        return "How do I " + pick(random, ACTIONS) + " " + pick(random, TOPICS)
+            + " in my return for tax year " + (2019 + random.nextInt(6)) + "?";
+    }
+
+    private static String answer(Random random) {
+        return "To " + pick(random, ACTIONS) + " " + pick(random, TOPICS) + ", open the "
+            + pick(random, TOPICS) + " tab in the return form, enter the amount shown on your "
+            + pick(random, TOPICS) + " certificate and attach supporting documents for "
+            + pick(random, TOPICS) + ". Figures must match the annual statement issued by your employer or bank.";
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
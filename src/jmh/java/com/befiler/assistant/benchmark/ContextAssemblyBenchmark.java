@@ -0,0 +1,56 @@
+package com.befiler.assistant.benchmark;
+
+import com.befiler.assistant.config.RagProperties;
+import com.befiler.assistant.service.ContextAssembler;
+import com.befiler.assistant.service.ContextAssembler.AssembledContext;
+import com.befiler.assistant.service.TokenCounter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scoring, de-duplication, token counting and formatting of the prompt context
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ContextAssemblyBenchmark {
+
+    @Param({"8", "32"})
+    int candidates;
+
+    private ContextAssembler contextAssembler;
+    private List<Document> retrieved;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        contextAssembler = new ContextAssembler(new TokenCounter(), new RagProperties());
+
+        List<Document> corpus = BenchmarkCorpus.documents(4, 2, 8);
+        retrieved = new ArrayList<>(candidates);
+        for (int i = 0; i < candidates; i++) {
+            Document doc = corpus.get(i % corpus.size());
+            Map<String, Object> metadata = new HashMap<>(doc.getMetadata());
+            metadata.put("distance", 0.1 + i * 0.01);
+            retrieved.add(new Document(doc.getId(), doc.getContent(), metadata));
+        }
+    }
+
+    @Benchmark
+    public AssembledContext assemble() {
+        return contextAssembler.assemble(retrieved);
+    }
+}
@@ -0,0 +1,61 @@
+package com.befiler.assistant.benchmark;
+
+import com.befiler.assistant.service.DocumentService;
+import com.befiler.assistant.service.DocumentService.QAPair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Document and metadata construction (content hashing, deterministic ids) before
+ * anything is embedded or stored
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DocumentConstructionBenchmark {
+
+    @Param({"10", "100"})
+    int documents;
+
+    private DocumentService documentService;
+    private String generalInfo;
+    private List<QAPair> qaPairs;
+    private List<String> contents;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        documentService = BenchmarkCorpus.documentService();
+        List<Document> corpus = BenchmarkCorpus.documents(1, 1, documents);
+        generalInfo = corpus.get(0).getContent();
+        qaPairs = new ArrayList<>(documents);
+        contents = new ArrayList<>(documents);
+        for (Document doc : corpus.subList(1, corpus.size())) {
+            qaPairs.add(new QAPair(doc.getContent(), doc.getContent()));
+            contents.add(doc.getContent());
+        }
+    }
+
+    @Benchmark
+    public List<Document> taxKnowledgeSection() {
+        return documentService.buildTaxKnowledgeSection("salary", generalInfo, qaPairs, "allowances");
+    }
+
+    @Benchmark
+    public List<Document> batchDocuments() {
+        return documentService.buildDocuments(contents, "general_info", "salary", "allowances",
+            Map.of("priority", "high"));
+    }
+}
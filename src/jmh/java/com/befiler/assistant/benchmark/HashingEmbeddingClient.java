@@ -0,0 +1,78 @@
+package com.befiler.assistant.benchmark;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingClient;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Deterministic local stand-in for the embedding model: feature hashing of the
+ * lower-cased words into a unit vector. Texts sharing words get similar vectors,
+ * which is enough to give the retrieval path realistic neighbourhoods.
+ */
+public class HashingEmbeddingClient implements EmbeddingClient {
+
+    private static final int HASHES_PER_WORD = 4;
+
+    private final int dimensions;
+
+    public HashingEmbeddingClient(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public List<Double> embed(String text) {
+        double[] vector = new double[dimensions];
+        for (String word : text.toLowerCase(Locale.ROOT).split("\\W+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            int hash = word.hashCode();
+            for (int i = 0; i < HASHES_PER_WORD; i++) {
+                hash = hash * 0x9E3779B1 + i;
+                int index = Math.floorMod(hash, dimensions);
+                vector[index] += (hash & 0x10000) == 0 ? 1.0 : -1.0;
+            }
+        }
+
+        double norm = 0;
+        for (double v : vector) {
+            norm += v * v;
+        }
+        double scale = norm == 0 ? 0 : 1.0 / Math.sqrt(norm);
+        List<Double> embedding = new ArrayList<>(dimensions);
+        for (double v : vector) {
+            embedding.add(v * scale);
+        }
+        return embedding;
+    }
+
+    @Override
+    public List<List<Double>> embed(List<String> texts) {
+        return texts.stream().map(this::embed).toList();
+    }
+
+    @Override
+    public List<Double> embed(Document document) {
+        return embed(document.getContent());
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<Embedding> embeddings = new ArrayList<>(request.getInstructions().size());
+        for (int i = 0; i < request.getInstructions().size(); i++) {
+            embeddings.add(new Embedding(embed(request.getInstructions().get(i)), i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+}
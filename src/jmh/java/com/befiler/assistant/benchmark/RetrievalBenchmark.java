@@ -0,0 +1,58 @@
+package com.befiler.assistant.benchmark;
+
+import com.befiler.assistant.config.RagProperties;
+import com.befiler.assistant.service.DocumentRetriever;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scoped similarity search (metadata filter + vector search) through DocumentRetriever
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RetrievalBenchmark {
+
+    @Param({"10", "50"})
+    int sections;
+
+    /**
+     * none: whole corpus; section: one section; subsection: one section and subsection
+     */
+    @Param({"none", "section", "subsection"})
+    String scope;
+
+    private DocumentRetriever retriever;
+    private String query;
+    private String section;
+    private String subsection;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        HashingEmbeddingClient embeddingClient = new HashingEmbeddingClient(BenchmarkCorpus.DIMENSIONS);
+        List<Document> documents = BenchmarkCorpus.documents(sections, 5, 8);
+        retriever = new DocumentRetriever(BenchmarkCorpus.vectorStore(documents, embeddingClient),
+            embeddingClient, null, null, null, new RagProperties());
+
+        query = BenchmarkCorpus.question(new Random(11));
+        section = scope.equals("none") ? null : BenchmarkCorpus.section(sections / 2);
+        subsection = scope.equals("subsection") ? BenchmarkCorpus.subsection(2) : null;
+    }
+
+    @Benchmark
+    public List<Document> vectorSearch() {
+        return retriever.vectorSearch(query, section, subsection, 8);
+    }
+}
@@ -0,0 +1,86 @@
+package com.befiler.assistant.benchmark;
+
+import com.befiler.assistant.config.RagProperties;
+import com.befiler.assistant.model.RetrievalMode;
+import com.befiler.assistant.service.ContextAssembler;
+import com.befiler.assistant.service.DocumentRetriever;
+import com.befiler.assistant.service.KnownSections;
+import com.befiler.assistant.service.LexicalReranker;
+import com.befiler.assistant.service.RagMetrics;
+import com.befiler.assistant.service.Reranker;
+import com.befiler.assistant.service.RetrievalPipeline;
+import com.befiler.assistant.service.RetrievalPipeline.RetrievedContext;
+import com.befiler.assistant.service.TokenCounter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RetrievalPipeline.retrieve (query embedding, scoped search, optional re-ranking and
+ * context packing) over the in-memory corpus, per retrieval policy: fixed top-k,
+ * a wider candidate set through the lexical re-ranker, or adaptive sizing. Adaptive
+ * sizing only applies without a re-ranker, so the policies are one parameter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RetrievalPipelineBenchmark {
+
+    @Param({"fixed", "rerank", "adaptive"})
+    String policy;
+
+    private RetrievalPipeline pipeline;
+    private String[] queries;
+    private String[] sections;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        HashingEmbeddingClient embeddingClient = new HashingEmbeddingClient(BenchmarkCorpus.DIMENSIONS);
+        RagProperties ragProperties = new RagProperties();
+        ragProperties.getAdaptive().setEnabled(policy.equals("adaptive"));
+        // Hashing embeddings score far below real ones; keep every candidate so each policy packs context
+        ragProperties.getAdaptive().setMinSimilarity(0.0);
+
+        DocumentRetriever retriever = new DocumentRetriever(
+            BenchmarkCorpus.vectorStore(BenchmarkCorpus.documents(20, 5, 8), embeddingClient),
+            embeddingClient, null, null, null, ragProperties);
+        KnownSections knownSections = new KnownSections(null);
+        for (int s = 0; s < 20; s++) {
+            knownSections.add(BenchmarkCorpus.section(s));
+        }
+        StaticListableBeanFactory rerankers = policy.equals("rerank")
+            ? new StaticListableBeanFactory(Map.of("reranker", new LexicalReranker(ragProperties)))
+            : new StaticListableBeanFactory();
+        pipeline = new RetrievalPipeline(retriever, new ContextAssembler(new TokenCounter(), ragProperties),
+            ragProperties, new RagMetrics(new SimpleMeterRegistry(), knownSections),
+            rerankers.getBeanProvider(Reranker.class));
+
+        Random random = new Random(3);
+        queries = new String[64];
+        sections = new String[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = BenchmarkCorpus.question(random);
+            sections[i] = BenchmarkCorpus.section(random.nextInt(20));
+        }
+    }
+
+    @Benchmark
+    public RetrievedContext retrieve() {
+        int i = next;
+        next = (next + 1) % queries.length;
+        return pipeline.retrieve(queries[i], sections[i], null, RetrievalMode.VECTOR);
+    }
+}
@@ -2,8 +2,10 @@ package com.befiler.assistant;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class BefilerRagAssistantApplication {
     public static void main(String[] args) {
         SpringApplication.run(BefilerRagAssistantApplication.class, args);
@@ -0,0 +1,43 @@
+package com.befiler.assistant.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the in-process caches in front of the AI upstreams
+ */
+@Data
+@ConfigurationProperties(prefix = "befiler.cache")
+public class CacheProperties {
+
+    private Answers answers = new Answers();
+
+    private Embeddings embeddings = new Embeddings();
+
+    @Data
+    public static class Answers {
+
+        private boolean enabled = true;
+
+        /**
+         * Minimum cosine similarity between query embeddings for a cached answer to be reused
+         */
+        private double similarityThreshold = 0.95;
+
+        private int maxEntries = 1000;
+
+        private Duration ttl = Duration.ofHours(6);
+    }
+
+    @Data
+    public static class Embeddings {
+
+        private boolean enabled = true;
+
+        private int maxEntries = 10000;
+
+        private Duration ttl = Duration.ofHours(1);
+    }
+}
@@ -0,0 +1,48 @@
+package com.befiler.assistant.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Conversation sessions: how many are kept, how much history reaches the prompt
+ */
+@Data
+@ConfigurationProperties(prefix = "befiler.conversation")
+public class ConversationProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Sessions kept in memory; the least recently used are evicted first
+     */
+    private int maxSessions = 10000;
+
+    /**
+     * Idle time after which a session is dropped from memory
+     */
+    private Duration ttl = Duration.ofHours(2);
+
+    /**
+     * Token budget for the history section of the prompt (summary plus recent turns).
+     * Older turns are folded into the summary once the turns exceed it.
+     */
+    private int historyMaxTokens = 600;
+
+    /**
+     * Turns always kept verbatim when older ones are summarized
+     */
+    private int recentTurns = 2;
+
+    /**
+     * Rewrite follow-up questions into standalone ones before retrieval
+     */
+    private boolean rewriteFollowUps = true;
+
+    /**
+     * Also store sessions in the database so they survive eviction and restarts;
+     * written in the background after each turn
+     */
+    private boolean persistent = false;
+}
@@ -0,0 +1,95 @@
+package com.befiler.assistant.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Batching settings for embedding and inserting documents
+ */
+@Data
+@ConfigurationProperties(prefix = "befiler.ingestion")
+public class IngestionProperties {
+
+    /**
+     * Maximum documents per embedding request
+     */
+    private int embeddingBatchSize = 64;
+
+    /**
+     * Maximum estimated tokens per embedding request
+     */
+    private int embeddingBatchTokens = 8000;
+
+    /**
+     * Embedding requests in flight at once for a single write
+     */
+    private int embeddingParallelism = 4;
+
+    /**
+     * Rows per JDBC batch (sent as multi-row inserts with reWriteBatchedInserts)
+     */
+    private int insertBatchSize = 500;
+
+    private Chunking chunking = new Chunking();
+
+    private Jobs jobs = new Jobs();
+
+    /**
+     * Splitting of long documents (everything except Q&A pairs) before embedding
+     */
+    @Data
+    public static class Chunking {
+
+        public enum Strategy { SENTENCE, TOKEN_WINDOW }
+
+        private boolean enabled = true;
+
+        /**
+         * SENTENCE packs whole sentences (splitting only overlong ones);
+         * TOKEN_WINDOW slides a fixed window over words
+         */
+        private Strategy strategy = Strategy.SENTENCE;
+
+        /**
+         * Upper bound on tokens per chunk; shorter documents are stored whole
+         */
+        private int maxTokens = 200;
+
+        /**
+         * Tokens repeated from the end of the previous chunk at the start of the next
+         */
+        private int overlapTokens = 30;
+    }
+
+    /**
+     * Asynchronous bulk ingestion jobs submitted through the admin API
+     */
+    @Data
+    public static class Jobs {
+
+        private int workers = 2;
+
+        /**
+         * Jobs waiting for a worker; submissions beyond this are rejected
+         */
+        private int queueCapacity = 16;
+
+        /**
+         * Documents per chunk; each chunk is written and retried independently
+         */
+        private int chunkSize = 100;
+
+        private int maxRetries = 5;
+
+        private Duration initialBackoff = Duration.ofSeconds(1);
+
+        private Duration maxBackoff = Duration.ofSeconds(30);
+
+        /**
+         * How long finished jobs stay queryable
+         */
+        private Duration retention = Duration.ofHours(1);
+    }
+}
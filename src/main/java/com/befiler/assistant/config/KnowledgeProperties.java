@@ -0,0 +1,58 @@
+package com.befiler.assistant.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Where the knowledge base files live and how they are streamed into the vector store
+ */
+@Data
+@ConfigurationProperties(prefix = "befiler.knowledge")
+public class KnowledgeProperties {
+
+    /**
+     * Directory scanned (recursively) for .md, .yaml/.yml and .jsonl knowledge files
+     */
+    private Path directory = Path.of("knowledge");
+
+    /**
+     * Documents handed to the sync per batch; bounds what is held in memory while loading
+     */
+    private int batchSize = 500;
+
+    /**
+     * Files at least this large are memory-mapped instead of read through a heap buffer
+     */
+    private DataSize mmapThreshold = DataSize.ofMegabytes(16);
+
+    private Reload reload = new Reload();
+
+    /**
+     * Reloading changed files while the service runs (see KnowledgeReloadService)
+     */
+    @Data
+    public static class Reload {
+
+        /**
+         * Watch the directory and reload when files change; otherwise reload only on
+         * POST /api/admin/knowledge/reload
+         */
+        private boolean watch = false;
+
+        /**
+         * Quiet period after the last file change before a reload starts, so a copy
+         * of many files triggers one reload
+         */
+        private Duration debounce = Duration.ofSeconds(2);
+
+        /**
+         * Previous versions kept per section for rollback; their replaced rows are kept in
+         * the vector_store_history table; 0 disables rollback
+         */
+        private int history = 5;
+    }
+}
@@ -0,0 +1,191 @@
+package com.befiler.assistant.config;
+
+import com.befiler.assistant.model.RetrievalMode;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Retrieval and generation settings for RagService
+ */
+@Data
+@ConfigurationProperties(prefix = "befiler.rag")
+public class RagProperties {
+
+    /**
+     * Number of neighbours requested from the vector store per query
+     */
+    private int topK = 8;
+
+    /**
+     * Retrieval mode used when a request does not choose one
+     */
+    private RetrievalMode retrievalMode = RetrievalMode.VECTOR;
+
+    private Hybrid hybrid = new Hybrid();
+
+    private Context context = new Context();
+
+    private MultiQuery multiQuery = new MultiQuery();
+
+    private Rerank rerank = new Rerank();
+
+    private Faq faq = new Faq();
+
+    private Batch batch = new Batch();
+
+    private Chunks chunks = new Chunks();
+
+    private Adaptive adaptive = new Adaptive();
+
+    @Data
+    public static class Hybrid {
+
+        /**
+         * Reciprocal rank fusion constant: score = sum of 1 / (k + rank)
+         */
+        private int rrfK = 60;
+    }
+
+    @Data
+    public static class MultiQuery {
+
+        /**
+         * Upper bound on searches per question, the original question included
+         */
+        private int maxVariants = 4;
+
+        /**
+         * Words a clause needs to be searched on its own, unless it opens like a question
+         */
+        private int minVariantWords = 3;
+    }
+
+    /**
+     * Curated Q&A answers returned directly for exact or near-exact questions
+     */
+    @Data
+    public static class Faq {
+
+        private boolean enabled = true;
+
+        /**
+         * Minimum cosine similarity between the query and a stored question
+         */
+        private double similarityThreshold = 0.97;
+
+        /**
+         * Section changes are collected for this long, then the changed sections are
+         * re-read and re-embedded together in the background
+         */
+        private Duration refreshDelay = Duration.ofMillis(500);
+    }
+
+    @Data
+    public static class Rerank {
+
+        private boolean enabled = false;
+
+        /**
+         * Candidates retrieved for re-ranking when enabled (instead of topK)
+         */
+        private int candidates = 24;
+
+        /**
+         * Weight of the lexical (BM25) score against retrieval relevance, 0..1
+         */
+        private double lexicalWeight = 0.5;
+    }
+
+    /**
+     * Per-request sizing of vector retrieval (VECTOR mode without a re-ranker):
+     * a small first search, early stop on a confident match, and type-specific
+     * searches only for the document types the first search left short
+     */
+    @Data
+    public static class Adaptive {
+
+        private boolean enabled = true;
+
+        /**
+         * Neighbours requested by the first search; keep it at least context.max-general-info
+         * plus context.max-qa-pairs, or most questions will need a second search
+         */
+        private int initialTopK = 6;
+
+        /**
+         * Cosine similarity below which candidates are not returned at all
+         */
+        private double minSimilarity = 0.5;
+
+        /**
+         * A best match at or above this similarity ends retrieval after the first search
+         */
+        private double confidentSimilarity = 0.92;
+
+        /**
+         * On early stop, matches within this similarity of the best one are kept
+         */
+        private double confidentMargin = 0.03;
+    }
+
+    @Data
+    public static class Chunks {
+
+        /**
+         * Neighbouring chunks stitched onto each retrieved chunk, on either side; 0 returns the chunk alone
+         */
+        private int expandNeighbours = 0;
+    }
+
+    /**
+     * Bulk answering through /api/chat/batch
+     */
+    @Data
+    public static class Batch {
+
+        /**
+         * Largest number of questions accepted in one request
+         */
+        private int maxQueries = 1000;
+
+        /**
+         * Batches running at the same time; further batch requests are rejected with 429
+         */
+        private int maxConcurrentBatches = 2;
+
+        /**
+         * Questions embedded per upstream call before a batch is answered
+         */
+        private int embeddingBatchSize = 64;
+
+        /**
+         * Retrievals of one batch running at the same time
+         */
+        private int searchParallelism = 8;
+
+        /**
+         * Completions started per second across all running batches, spaced evenly
+         */
+        private double completionsPerSecond = 4.0;
+    }
+
+    @Data
+    public static class Context {
+
+        /**
+         * Upper bound on tokens spent on retrieved context per prompt
+         */
+        private int maxTokens = 1500;
+
+        private int maxGeneralInfo = 2;
+
+        private int maxQaPairs = 4;
+
+        /**
+         * Word-shingle Jaccard similarity at which a chunk counts as a duplicate of one already packed
+         */
+        private double duplicateThreshold = 0.8;
+    }
+}
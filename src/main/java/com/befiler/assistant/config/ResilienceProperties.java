@@ -0,0 +1,86 @@
+package com.befiler.assistant.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Deadlines, retries, hedging and circuit breaking for the OpenAI upstreams
+ */
+@Data
+@ConfigurationProperties(prefix = "befiler.resilience")
+public class ResilienceProperties {
+
+    private Policy chat = new Policy(Duration.ofSeconds(30), Duration.ZERO);
+
+    private Policy embedding = new Policy(Duration.ofSeconds(5), Duration.ofMillis(800));
+
+    /**
+     * Similarity at which FAQ and cached answers are served while the chat circuit is open
+     * (looser than the normal thresholds, since the alternative is no answer)
+     */
+    private double fallbackSimilarityThreshold = 0.9;
+
+    @Data
+    public static class Policy {
+
+        /**
+         * Deadline for one call, retries and backoff included; also the read timeout of each attempt
+         */
+        private Duration timeout;
+
+        /**
+         * Connect timeout of each attempt, capped at the timeout
+         */
+        private Duration connectTimeout = Duration.ofSeconds(2);
+
+        /**
+         * Retries after the first attempt, for throttling (429), 5xx and I/O errors
+         */
+        private int maxRetries = 2;
+
+        private Duration initialBackoff = Duration.ofMillis(200);
+
+        private Duration maxBackoff = Duration.ofSeconds(2);
+
+        /**
+         * Start a second, identical request when the first has not answered by then; zero disables hedging
+         */
+        private Duration hedgeDelay;
+
+        private CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+        public Policy() {
+        }
+
+        public Policy(Duration timeout, Duration hedgeDelay) {
+            this.timeout = timeout;
+            this.hedgeDelay = hedgeDelay;
+        }
+    }
+
+    @Data
+    public static class CircuitBreaker {
+
+        /**
+         * Most recent calls the failure rate is computed over
+         */
+        private int slidingWindow = 20;
+
+        /**
+         * Calls needed in the window before the breaker may open
+         */
+        private int minimumCalls = 10;
+
+        /**
+         * Failure rate (0..1) at which the breaker opens
+         */
+        private double failureRateThreshold = 0.5;
+
+        /**
+         * Time calls fail fast before a trial call is let through
+         */
+        private Duration openDuration = Duration.ofSeconds(30);
+    }
+}
@@ -0,0 +1,157 @@
+package com.befiler.assistant.config;
+
+import com.befiler.assistant.service.CachingEmbeddingClient;
+import com.befiler.assistant.service.LimitedChatClient;
+import com.befiler.assistant.service.LimitedEmbeddingClient;
+import com.befiler.assistant.service.LimitedVectorStore;
+import com.befiler.assistant.service.PrecomputedEmbeddingClient;
+import com.befiler.assistant.service.ResilientChatClient;
+import com.befiler.assistant.service.ResilientEmbeddingClient;
+import com.befiler.assistant.service.UpstreamGuards;
+import com.befiler.assistant.service.UpstreamLimiters;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingClient;
+import org.springframework.ai.openai.OpenAiChatClient;
+import org.springframework.ai.openai.OpenAiEmbeddingClient;
+import org.springframework.ai.vectorstore.PgVectorStore;
+import org.springframework.boot.thread.Threading;
+import org.springframework.boot.web.client.ClientHttpRequestFactories;
+import org.springframework.boot.web.client.ClientHttpRequestFactorySettings;
+import org.springframework.boot.web.client.RestClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.retry.backoff.NoBackOffPolicy;
+import org.springframework.retry.policy.NeverRetryPolicy;
+import org.springframework.retry.support.RetryTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Wraps the auto-configured OpenAI and pgvector clients with concurrency limits,
+ * resilience policies (and the embedding cache) and exposes the decorated beans as
+ * primary, so every caller goes through the same limits.
+ * The OpenAI clients' own retry templates (up to 10 attempts with minutes of backoff)
+ * are switched off, so UpstreamGuard alone decides on retries within its deadline,
+ * and their HTTP timeouts come from the same policies.
+ */
+@Configuration
+@Slf4j
+public class UpstreamClientConfig {
+
+    @Bean
+    public UpstreamLimiters upstreamLimiters(UpstreamProperties upstreamProperties, MeterRegistry meterRegistry) {
+        return new UpstreamLimiters(upstreamProperties, meterRegistry);
+    }
+
+    @Bean
+    public UpstreamGuards upstreamGuards(ResilienceProperties resilienceProperties, MeterRegistry meterRegistry) {
+        return new UpstreamGuards(resilienceProperties, meterRegistry);
+    }
+
+    /**
+     * Per-attempt connect and read timeouts for the auto-configured OpenAI clients, from
+     * the resilience policies: an attempt UpstreamGuard has stopped waiting for is
+     * aborted by then and gives back its concurrency permit. Requests to /embeddings
+     * use the embedding policy, all others the chat policy. The JDK client also aborts
+     * when a cancelled attempt's thread is interrupted.
+     */
+    @Bean
+    public RestClientCustomizer upstreamTimeouts(ResilienceProperties resilienceProperties) {
+        ClientHttpRequestFactory chat = requestFactory(resilienceProperties.getChat());
+        ClientHttpRequestFactory embedding = requestFactory(resilienceProperties.getEmbedding());
+        return builder -> builder.requestFactory((uri, method) ->
+            (uri.getPath().endsWith("/embeddings") ? embedding : chat).createRequest(uri, method));
+    }
+
+    private static ClientHttpRequestFactory requestFactory(ResilienceProperties.Policy policy) {
+        Duration timeout = policy.getTimeout();
+        Duration connect = policy.getConnectTimeout();
+        ClientHttpRequestFactorySettings settings = ClientHttpRequestFactorySettings.DEFAULTS
+            .withConnectTimeout(connect != null && connect.compareTo(timeout) < 0 ? connect : timeout)
+            .withReadTimeout(timeout);
+        return ClientHttpRequestFactories.get(JdkClientHttpRequestFactory.class, settings);
+    }
+
+    /**
+     * Rate-limited but uncached embeddings, for ingestion: document texts are
+     * embedded once and would only evict hot query entries from the cache
+     */
+    @Bean
+    public LimitedEmbeddingClient limitedEmbeddingClient(OpenAiEmbeddingClient openAiEmbeddingClient,
+                                                         UpstreamLimiters upstreamLimiters) {
+        disableRetries(openAiEmbeddingClient.retryTemplate);
+        return new LimitedEmbeddingClient(openAiEmbeddingClient, upstreamLimiters.embedding());
+    }
+
+    /**
+     * Resilient query embeddings plus the texts pinned by a running question batch
+     */
+    @Bean
+    public PrecomputedEmbeddingClient precomputedEmbeddingClient(LimitedEmbeddingClient limitedEmbeddingClient,
+                                                                 UpstreamGuards upstreamGuards) {
+        return new PrecomputedEmbeddingClient(
+            new ResilientEmbeddingClient(limitedEmbeddingClient, upstreamGuards.embedding()));
+    }
+
+    /**
+     * OpenAI embeddings -> concurrency limit -> resilience policy -> pinned batch embeddings
+     * -> optional cache. Cache hits and pinned texts never take an upstream permit; each
+     * attempt (retry or hedge) takes its own.
+     */
+    @Bean
+    @Primary
+    public EmbeddingClient embeddingClient(PrecomputedEmbeddingClient precomputedEmbeddingClient,
+                                           CacheProperties cacheProperties,
+                                           MeterRegistry meterRegistry) {
+        if (cacheProperties.getEmbeddings().isEnabled()) {
+            return new CachingEmbeddingClient(precomputedEmbeddingClient, cacheProperties, meterRegistry);
+        }
+        return precomputedEmbeddingClient;
+    }
+
+    /**
+     * OpenAI chat -> concurrency limit -> resilience policy
+     */
+    @Bean
+    @Primary
+    public ResilientChatClient chatClient(OpenAiChatClient openAiChatClient, UpstreamLimiters upstreamLimiters,
+                                          UpstreamGuards upstreamGuards) {
+        disableRetries(openAiChatClient.retryTemplate);
+        LimitedChatClient limited = new LimitedChatClient(openAiChatClient, openAiChatClient, upstreamLimiters.chat());
+        return new ResilientChatClient(limited, limited, upstreamGuards.chat());
+    }
+
+    /**
+     * Not primary by itself: VectorStoreConfig decides which store serves searches
+     */
+    @Bean
+    public LimitedVectorStore limitedVectorStore(PgVectorStore pgVectorStore, UpstreamLimiters upstreamLimiters) {
+        return new LimitedVectorStore(pgVectorStore, upstreamLimiters.vectorStore());
+    }
+
+    private static void disableRetries(RetryTemplate retryTemplate) {
+        retryTemplate.setRetryPolicy(new NeverRetryPolicy());
+        retryTemplate.setBackOffPolicy(new NoBackOffPolicy());
+    }
+
+    /**
+     * Executor for outbound fan-out (parallel searches, batch work).
+     * One virtual thread per task when spring.threads.virtual.enabled is set,
+     * otherwise a bounded platform pool; upstream limits apply either way.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService upstreamExecutor(Environment environment, UpstreamProperties upstreamProperties) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            log.info("Outbound upstream calls run on virtual threads");
+            return Executors.newVirtualThreadPerTaskExecutor();
+        }
+        return Executors.newFixedThreadPool(upstreamProperties.getPlatformPoolSize());
+    }
+}
@@ -0,0 +1,43 @@
+package com.befiler.assistant.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Concurrency limits for the blocking upstreams used by RagService and DocumentService
+ */
+@Data
+@ConfigurationProperties(prefix = "befiler.upstream")
+public class UpstreamProperties {
+
+    private Limit chat = new Limit(16);
+
+    private Limit embedding = new Limit(32);
+
+    /**
+     * Keep at or below the JDBC pool size so callers queue here instead of inside Hikari
+     */
+    private Limit vectorStore = new Limit(8);
+
+    /**
+     * Size of the platform-thread pool used for outbound fan-out when virtual threads are off
+     */
+    private int platformPoolSize = 32;
+
+    @Data
+    public static class Limit {
+
+        private int maxConcurrent;
+
+        private Duration acquireTimeout = Duration.ofSeconds(10);
+
+        public Limit() {
+        }
+
+        public Limit(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.befiler.assistant.config;
+
+import com.befiler.assistant.repository.VectorStoreRepository;
+import com.befiler.assistant.service.LimitedEmbeddingClient;
+import com.befiler.assistant.service.LimitedVectorStore;
+import com.befiler.assistant.service.UpstreamLimiters;
+import com.befiler.assistant.vectorstore.InMemoryHnswVectorStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.ai.embedding.EmbeddingClient;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * Selects the primary VectorStore from befiler.vectorstore.mode: the rate-limited
+ * pgvector store (default) or the in-process HNSW index backed by it.
+ */
+@Configuration
+public class VectorStoreConfig {
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(prefix = "befiler.vectorstore", name = "mode", havingValue = "pgvector", matchIfMissing = true)
+    public VectorStore primaryVectorStore(LimitedVectorStore limitedVectorStore) {
+        return limitedVectorStore;
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(prefix = "befiler.vectorstore", name = "mode", havingValue = "hnsw")
+    public InMemoryHnswVectorStore hnswVectorStore(LimitedVectorStore limitedVectorStore,
+                                                   VectorStoreRepository vectorStoreRepository,
+                                                   EmbeddingClient embeddingClient,
+                                                   LimitedEmbeddingClient limitedEmbeddingClient,
+                                                   UpstreamLimiters upstreamLimiters,
+                                                   VectorStoreProperties vectorStoreProperties,
+                                                   ObjectMapper objectMapper) {
+        return new InMemoryHnswVectorStore(limitedVectorStore, vectorStoreRepository, embeddingClient,
+            limitedEmbeddingClient, upstreamLimiters.vectorStore(), vectorStoreProperties.getHnsw(), objectMapper);
+    }
+}
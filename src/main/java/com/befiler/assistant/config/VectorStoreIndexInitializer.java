@@ -0,0 +1,64 @@
+package com.befiler.assistant.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Creates metadata indexes on the pgvector table so scoped similarity searches
+ * can be answered with a single index-assisted query.
+ * Runs before the knowledge loader; the VectorStore dependency guarantees the
+ * table has already been created by PgVectorStore.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(prefix = "befiler.vectorstore", name = "metadata-indexes", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class VectorStoreIndexInitializer implements ApplicationRunner {
+
+    private static final List<String> INDEX_STATEMENTS = List.of(
+        // Serves the jsonpath (@@) predicates generated from filter expressions
+        "CREATE INDEX IF NOT EXISTS vector_store_metadata_path_idx "
+            + "ON vector_store USING gin ((metadata::jsonb) jsonb_path_ops)",
+        // Serves direct SQL lookups by section/subsection/type
+        "CREATE INDEX IF NOT EXISTS vector_store_section_idx "
+            + "ON vector_store ((metadata->>'section'), (metadata->>'subsection'), (metadata->>'type'))",
+        // Serves the startup content-hash diff per source
+        "CREATE INDEX IF NOT EXISTS vector_store_source_idx "
+            + "ON vector_store ((metadata->>'source'), (metadata->>'content_hash'))",
+        // Serves the sibling lookup when retrieved chunks are expanded
+        "CREATE INDEX IF NOT EXISTS vector_store_parent_idx "
+            + "ON vector_store ((metadata->>'parent_id'))",
+        // Serves admin upserts and deletes by entry id
+        "CREATE INDEX IF NOT EXISTS vector_store_entry_idx "
+            + "ON vector_store ((metadata->>'entry_id'))",
+        // Serves the lexical side of hybrid retrieval
+        "CREATE INDEX IF NOT EXISTS vector_store_content_fts_idx "
+            + "ON vector_store USING gin (to_tsvector('english', content))"
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+    private final VectorStore vectorStore;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        for (String statement : INDEX_STATEMENTS) {
+            try {
+                jdbcTemplate.execute(statement);
+            } catch (Exception e) {
+                log.warn("Could not create vector store metadata index: {}", e.getMessage());
+            }
+        }
+        log.info("Vector store metadata indexes ensured for {}", vectorStore.getClass().getSimpleName());
+    }
+}
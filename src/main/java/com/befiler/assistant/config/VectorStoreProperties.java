@@ -0,0 +1,87 @@
+package com.befiler.assistant.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Which vector store serves similarity searches, and its settings.
+ * pgvector always remains the system of record.
+ */
+@Data
+@ConfigurationProperties(prefix = "befiler.vectorstore")
+public class VectorStoreProperties {
+
+    public enum Mode { PGVECTOR, HNSW }
+
+    /**
+     * How HNSW vectors are held in memory: float (6 KB per 1536-dim vector),
+     * int8 (~1.5 KB) or sign bits (192 bytes)
+     */
+    public enum Quantization { NONE, INT8, BINARY }
+
+    private Mode mode = Mode.PGVECTOR;
+
+    /**
+     * Create metadata and full-text indexes on the pgvector table at startup
+     */
+    private boolean metadataIndexes = true;
+
+    private Hnsw hnsw = new Hnsw();
+
+    /**
+     * In-process HNSW index, loaded from pgvector (or a snapshot) at startup
+     * and kept in sync on every write
+     */
+    @Data
+    public static class Hnsw {
+
+        private int dimensions = 1536;
+
+        /**
+         * Neighbours per node on upper layers (twice this on layer 0)
+         */
+        private int m = 16;
+
+        private int efConstruction = 100;
+
+        private int efSearch = 64;
+
+        /**
+         * Upper bound for the beam when a filter rejects most nodes near the query;
+         * the search returns fewer than topK rather than widening past it
+         */
+        private int maxEfSearch = 512;
+
+        /**
+         * Filters matching at most this many documents are answered by an exact scan
+         */
+        private int exactSearchThreshold = 2000;
+
+        private Quantization quantization = Quantization.NONE;
+
+        /**
+         * With quantization, topK * rerankFactor candidates are re-scored against
+         * their float embeddings
+         */
+        private int rerankFactor = 4;
+
+        /**
+         * Memory-mapped file holding the float embeddings used for re-ranking with
+         * quantization. Off-heap, so only the pages of re-ranked nodes need to stay in
+         * memory. Empty re-ranks against pgvector instead, one extra round trip per
+         * search: a quantized index then trades latency for memory.
+         */
+        private String rerankVectorsPath = "data/hnsw.floats";
+
+        /**
+         * Rebuild the graph from its live nodes once tombstones (deleted or replaced
+         * documents) reach this fraction of it
+         */
+        private double compactionThreshold = 0.2;
+
+        /**
+         * Memory-mapped snapshot used for fast restarts; empty disables snapshots
+         */
+        private String snapshotPath = "data/hnsw.snapshot";
+    }
+}
@@ -1,36 +1,140 @@
 package com.befiler.assistant.controller;
 
+import com.befiler.assistant.config.RagProperties;
+import com.befiler.assistant.model.BatchQueryResult;
 import com.befiler.assistant.model.ChatRequest;
 import com.befiler.assistant.model.ChatResponse;
+import com.befiler.assistant.service.BatchThrottle;
 import com.befiler.assistant.service.RagService;
+import com.befiler.assistant.service.RagService.StreamingAnswer;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.Disposable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/chat")
 @CrossOrigin(origins = "*")
 @RequiredArgsConstructor
+@Slf4j
 public class ChatController {
     
+    private static final long STREAM_TIMEOUT_MS = 120_000;
+    private static final String FALLBACK_MESSAGE =
+        "I apologize, but I'm having trouble processing your request right now. Please try again later.";
+    
     private final RagService ragService;
+    private final RagProperties ragProperties;
+    private final ObjectMapper objectMapper;
+    private final BatchThrottle batchThrottle;
     
     @PostMapping("/query")
     public ResponseEntity<ChatResponse> processQuery(@RequestBody ChatRequest request) {
         try {
-            String response = ragService.processQuery(request.getQuery(), request.getSection(), request.getSubsection());
-            return ResponseEntity.ok(new ChatResponse(response, request.getSection(), request.getSubsection()));
+            return ResponseEntity.ok(ragService.processQuery(request));
         } catch (Exception e) {
             return ResponseEntity.ok(new ChatResponse(
-                "I apologize, but I'm having trouble processing your request right now. Please try again later.",
+                FALLBACK_MESSAGE,
                 request.getSection(),
                 request.getSubsection()
             ));
         }
     }
     
+    /**
+     * Stream the answer as server-sent events: a "metadata" event with retrieval results,
+     * then "token" events as the completion is generated, then "done".
+     * The servlet thread is released once retrieval finishes.
+     */
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamQuery(@RequestBody ChatRequest request) {
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        try {
+            StreamingAnswer answer = ragService.streamQuery(request);
+            emitter.send(SseEmitter.event().name("metadata").data(answer.metadata(), MediaType.APPLICATION_JSON));
+            
+            Disposable subscription = answer.tokens().subscribe(
+                token -> sendQuietly(emitter, SseEmitter.event().name("token").data(token)),
+                error -> {
+                    log.error("RAG stream failed for query: {}", request.getQuery(), error);
+                    sendQuietly(emitter, SseEmitter.event().name("error").data(FALLBACK_MESSAGE));
+                    emitter.complete();
+                },
+                () -> {
+                    sendQuietly(emitter, SseEmitter.event().name("done").data(""));
+                    emitter.complete();
+                }
+            );
+            emitter.onCompletion(subscription::dispose);
+            emitter.onTimeout(subscription::dispose);
+            emitter.onError(e -> subscription.dispose());
+        } catch (Exception e) {
+            log.error("RAG stream setup failed for query: {}", request.getQuery(), e);
+            sendQuietly(emitter, SseEmitter.event().name("error").data(FALLBACK_MESSAGE));
+            emitter.complete();
+        }
+        return emitter;
+    }
+    
+    /**
+     * Answer a list of questions in one call, for offline evaluation and bulk answering.
+     * Results are streamed as NDJSON, one BatchQueryResult per line in completion order;
+     * a failed question yields a line with an error instead of failing the batch.
+     * Answers 429 while rag.batch.max-concurrent-batches batches are already running.
+     */
+    @PostMapping(value = "/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> batchQuery(@RequestBody List<ChatRequest> requests) {
+        if (requests.isEmpty() || requests.size() > ragProperties.getBatch().getMaxQueries()) {
+            return ResponseEntity.badRequest().build();
+        }
+        Optional<BatchThrottle.Slot> slot = batchThrottle.tryStart();
+        if (slot.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+        StreamingResponseBody body = out -> {
+            try (BatchThrottle.Slot running = slot.get()) {
+                ragService.processBatch(requests, result -> writeLine(out, result));
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+    
     @GetMapping("/health")
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("RAG Assistant is running");
     }
+    
+    private void writeLine(OutputStream out, BatchQueryResult result) {
+        try {
+            byte[] line = objectMapper.writeValueAsBytes(result);
+            synchronized (out) {
+                out.write(line);
+                out.write('\n');
+                out.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static void sendQuietly(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; completing the emitter disposes the upstream subscription
+            emitter.completeWithError(e);
+        }
+    }
 }
@@ -0,0 +1,20 @@
+package com.befiler.assistant.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One line of a batch response, emitted as soon as its question is answered.
+ * Lines arrive in completion order; index is the question's position in the request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchQueryResult {
+    private int index;
+    private String query;
+    private ChatResponse response;
+    /** Failure message when the question could not be answered; response is null then */
+    private String error;
+}
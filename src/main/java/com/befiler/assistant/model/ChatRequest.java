@@ -7,4 +7,7 @@ public class ChatRequest {
     private String query;
     private String section;
     private String subsection;
+    private RetrievalMode retrievalMode;
+    /** Conversation to continue; a new one is started when absent */
+    private String sessionId;
 }
@@ -11,4 +11,18 @@ public class ChatResponse {
     private String response;
     private String section;
     private String subsection;
+    /** Tokens of retrieved context sent to the model; null when no retrieval ran */
+    private Integer contextTokens;
+    /** True when a curated Q&A answer was returned without retrieval or generation */
+    private boolean faqMatch;
+    /** Conversation this answer belongs to; send it back to ask a follow-up */
+    private String sessionId;
+
+    public ChatResponse(String response, String section, String subsection) {
+        this(response, section, subsection, null, false, null);
+    }
+
+    public ChatResponse(String response, String section, String subsection, Integer contextTokens) {
+        this(response, section, subsection, contextTokens, false, null);
+    }
 }
@@ -0,0 +1,22 @@
+package com.befiler.assistant.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * First event of a streamed answer: what retrieval found before generation starts
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatStreamMetadata {
+    private String section;
+    private String subsection;
+    private int generalInfoCount;
+    private int qaPairCount;
+    private int contextTokens;
+    private boolean cached;
+    private boolean faqMatch;
+    private String sessionId;
+}
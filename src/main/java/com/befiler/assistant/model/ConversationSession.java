@@ -0,0 +1,43 @@
+package com.befiler.assistant.model;
+
+import jakarta.persistence.CollectionTable;
+import jakarta.persistence.Column;
+import jakarta.persistence.ElementCollection;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.OrderColumn;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persisted form of a conversation: the running summary and the turns not yet
+ * folded into it, so the stored history stays as small as the in-memory one
+ */
+@Entity
+@Table(name = "conversation_sessions")
+@Getter
+@Setter
+@NoArgsConstructor
+public class ConversationSession {
+
+    @Id
+    private String id;
+
+    @Column(columnDefinition = "text")
+    private String summary;
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "conversation_turns", joinColumns = @JoinColumn(name = "session_id"))
+    @OrderColumn(name = "turn_index")
+    private List<ConversationTurn> turns = new ArrayList<>();
+
+    private Instant updatedAt;
+}
@@ -0,0 +1,21 @@
+package com.befiler.assistant.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One question and answer of a conversation
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Embeddable
+public class ConversationTurn {
+    @Column(columnDefinition = "text")
+    private String question;
+    @Column(columnDefinition = "text")
+    private String answer;
+}
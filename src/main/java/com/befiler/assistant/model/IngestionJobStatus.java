@@ -0,0 +1,30 @@
+package com.befiler.assistant.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Progress snapshot of an asynchronous ingestion job
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestionJobStatus {
+
+    public enum State { QUEUED, RUNNING, SUCCEEDED, PARTIALLY_FAILED, FAILED }
+
+    private String jobId;
+    private State state;
+    private int totalDocuments;
+    private int processedDocuments;
+    private int failedDocuments;
+    private int retries;
+    private Instant submittedAt;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private double documentsPerSecond;
+    private String error;
+}
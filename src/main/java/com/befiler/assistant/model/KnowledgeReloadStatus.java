@@ -0,0 +1,31 @@
+package com.befiler.assistant.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Progress snapshot of a knowledge base reload
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KnowledgeReloadStatus {
+
+    public enum State { QUEUED, RUNNING, SUCCEEDED, PARTIALLY_FAILED, FAILED }
+
+    private long version;
+    private String trigger;
+    private State state;
+    private Instant requestedAt;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private List<String> changedSections;
+    private List<String> failedSections;
+    private int inserted;
+    private int deleted;
+    private String error;
+}
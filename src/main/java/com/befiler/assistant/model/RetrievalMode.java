@@ -0,0 +1,13 @@
+package com.befiler.assistant.model;
+
+/**
+ * How candidate documents are retrieved for a query
+ */
+public enum RetrievalMode {
+    /** pgvector similarity search only */
+    VECTOR,
+    /** Full-text and vector search in parallel, fused with reciprocal rank fusion */
+    HYBRID,
+    /** Vector search for the question and each of its sub-questions in parallel, fused the same way */
+    MULTI_QUERY
+}
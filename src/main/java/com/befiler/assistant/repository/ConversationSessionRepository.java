@@ -0,0 +1,7 @@
+package com.befiler.assistant.repository;
+
+import com.befiler.assistant.model.ConversationSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ConversationSessionRepository extends JpaRepository<ConversationSession, String> {
+}
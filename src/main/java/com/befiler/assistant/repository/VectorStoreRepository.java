@@ -0,0 +1,379 @@
+package com.befiler.assistant.repository;
+
+import com.befiler.assistant.service.DocumentIds;
+import com.befiler.assistant.service.VectorMath;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgvector.PGvector;
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.document.Document;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Direct SQL against the pgvector table for operations the VectorStore
+ * abstraction does not offer: bookkeeping queries and bulk writes of
+ * documents whose embeddings were computed in batches
+ */
+@Repository
+@RequiredArgsConstructor
+public class VectorStoreRepository {
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Document id to content hash for everything written by the given source
+     */
+    public Map<String, String> findContentHashesBySource(String source) {
+        Map<String, String> hashes = new HashMap<>();
+        jdbcTemplate.query(
+            "SELECT id::text AS id, metadata->>'content_hash' AS content_hash "
+                + "FROM vector_store WHERE metadata->>'source' = ?",
+            rs -> {
+                hashes.put(rs.getString("id"), rs.getString("content_hash"));
+            },
+            source);
+        return hashes;
+    }
+
+    /**
+     * Id, section and content hash of everything written by the given source
+     */
+    public List<SourceEntry> findEntriesBySource(String source) {
+        return jdbcTemplate.query(
+            "SELECT id::text AS id, metadata->>'section' AS section, metadata->>'content_hash' AS content_hash "
+                + "FROM vector_store WHERE metadata->>'source' = ?",
+            (rs, rowNum) -> new SourceEntry(rs.getString("id"), rs.getString("section"), rs.getString("content_hash")),
+            source);
+    }
+
+    public List<String> findSections() {
+        return jdbcTemplate.queryForList(
+            "SELECT DISTINCT metadata->>'section' FROM vector_store WHERE metadata->>'section' IS NOT NULL",
+            String.class);
+    }
+
+    /**
+     * Document id to a version of its content for every row: the content hash, or
+     * the md5 of the content for rows written before content hashes existed
+     */
+    public Map<String, String> findAllVersions() {
+        Map<String, String> versions = new HashMap<>();
+        jdbcTemplate.query(
+            "SELECT id::text AS id, coalesce(metadata->>'content_hash', md5(coalesce(content, ''))) AS version FROM vector_store",
+            rs -> {
+                versions.put(rs.getString("id"), rs.getString("version"));
+            });
+        return versions;
+    }
+
+    /**
+     * Stream every row with its embedding as a primitive float[]
+     */
+    public void forEachEmbedded(Consumer<EmbeddedDocument> consumer) {
+        jdbcTemplate.query(
+            "SELECT id::text AS id, content, metadata::text AS metadata, embedding::text AS embedding "
+                + "FROM vector_store",
+            rs -> {
+                consumer.accept(new EmbeddedDocument(rs.getString("id"), rs.getString("content"),
+                    parseMetadata(rs.getString("metadata")), new PGvector(rs.getString("embedding")).toArray()));
+            });
+    }
+
+    /**
+     * Full-precision embeddings for the given ids, used to re-rank quantized candidates
+     */
+    public Map<String, float[]> findEmbeddings(Collection<String> ids) {
+        Map<String, float[]> embeddings = new HashMap<>();
+        if (ids.isEmpty()) {
+            return embeddings;
+        }
+        jdbcTemplate.query(
+            "SELECT id::text AS id, embedding::text AS embedding FROM vector_store WHERE id = ANY (?)",
+            ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids.toArray())),
+            rs -> {
+                embeddings.put(rs.getString("id"), new PGvector(rs.getString("embedding")).toArray());
+            });
+        return embeddings;
+    }
+
+    /**
+     * Rows that belong to the given entries: rows with the entry's id or entry_id
+     * (chunks), plus Q&A rows written before entry ids with the same section,
+     * subsection and question. Questions are compared the way entry ids normalize
+     * them (DocumentIds.normalizeKey), so a corrected question that differs only in
+     * case or spacing still replaces the loader's row. One query for all entries.
+     */
+    public List<SourceEntry> findEntryRows(List<EntryKey> entries) {
+        if (entries.isEmpty()) {
+            return List.of();
+        }
+        Object[] ids = entries.stream().map(EntryKey::entryId).toArray();
+        List<EntryKey> questions = entries.stream().filter(entry -> entry.question() != null).toList();
+        return jdbcTemplate.query(
+            "SELECT id::text AS id, metadata->>'section' AS section, metadata->>'content_hash' AS content_hash "
+                + "FROM vector_store WHERE id = ANY (?) OR metadata->>'entry_id' = ANY (?) "
+                + "UNION "
+                + "SELECT v.id::text, v.metadata->>'section', v.metadata->>'content_hash' FROM vector_store v "
+                + "JOIN unnest(?::text[], ?::text[], ?::text[]) AS k(section, subsection, question) "
+                + "ON v.metadata->>'section' = k.section "
+                + "AND coalesce(v.metadata->>'subsection', '') = k.subsection "
+                + "AND lower(btrim(regexp_replace(v.metadata->>'question', '\\s+', ' ', 'g'))) = k.question "
+                + "WHERE v.metadata->>'type' = 'qa_pair'",
+            ps -> {
+                ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids));
+                ps.setArray(2, ps.getConnection().createArrayOf("text", ids));
+                ps.setArray(3, ps.getConnection().createArrayOf("text",
+                    questions.stream().map(EntryKey::section).toArray()));
+                ps.setArray(4, ps.getConnection().createArrayOf("text",
+                    questions.stream().map(entry -> entry.subsection() != null ? entry.subsection() : "").toArray()));
+                ps.setArray(5, ps.getConnection().createArrayOf("text",
+                    questions.stream().map(entry -> DocumentIds.normalizeKey(entry.question())).toArray()));
+            },
+            (rs, rowNum) -> new SourceEntry(rs.getString("id"), rs.getString("section"), rs.getString("content_hash")));
+    }
+
+    /**
+     * Rows with the given ids, or whose entry_id is one of them (the chunks of an entry)
+     */
+    public List<SourceEntry> findByIdsOrEntryIds(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(
+            "SELECT id::text AS id, metadata->>'section' AS section, metadata->>'content_hash' AS content_hash "
+                + "FROM vector_store WHERE id = ANY (?) OR metadata->>'entry_id' = ANY (?)",
+            ps -> {
+                ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids.toArray()));
+                ps.setArray(2, ps.getConnection().createArrayOf("text", ids.toArray()));
+            },
+            (rs, rowNum) -> new SourceEntry(rs.getString("id"), rs.getString("section"), rs.getString("content_hash")));
+    }
+
+    /**
+     * Delete every row of a section (or of one subsection) in one statement, returning the deleted ids
+     */
+    public List<String> deleteBySection(String section, String subsection) {
+        if (subsection == null) {
+            return jdbcTemplate.queryForList(
+                "DELETE FROM vector_store WHERE metadata->>'section' = ? RETURNING id::text",
+                String.class, section);
+        }
+        return jdbcTemplate.queryForList(
+            "DELETE FROM vector_store WHERE metadata->>'section' = ? "
+                + "AND coalesce(metadata->>'subsection', '') = ? RETURNING id::text",
+            String.class, section, subsection);
+    }
+
+    public int deleteByIds(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(
+            "DELETE FROM vector_store WHERE id = ANY (?)",
+            ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids.toArray())));
+    }
+
+    /**
+     * Create the table holding rows replaced by knowledge reloads, and empty it: the
+     * versions it refers to are numbered per run
+     */
+    public void resetHistory() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS vector_store_history "
+            + "(version bigint NOT NULL, section text NOT NULL, LIKE vector_store)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS vector_store_history_version_idx "
+            + "ON vector_store_history (section, version)");
+        jdbcTemplate.execute("TRUNCATE vector_store_history");
+    }
+
+    /**
+     * Copy the given rows into the history as a section's replaced rows of a version
+     */
+    public int archive(long version, String section, Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(
+            "INSERT INTO vector_store_history (version, section, id, content, metadata, embedding) "
+                + "SELECT ?, ?, id, content, metadata, embedding FROM vector_store WHERE id = ANY (?)",
+            ps -> {
+                ps.setLong(1, version);
+                ps.setString(2, section);
+                ps.setArray(3, ps.getConnection().createArrayOf("uuid", ids.toArray()));
+            });
+    }
+
+    /**
+     * Put a version's archived rows back into the store and return them, embeddings included
+     */
+    public List<EmbeddedDocument> restoreArchived(long version, String section) {
+        return jdbcTemplate.query(
+            "INSERT INTO vector_store (id, content, metadata, embedding) "
+                + "SELECT id, content, metadata, embedding FROM vector_store_history "
+                + "WHERE section = ? AND version = ? "
+                + "ON CONFLICT (id) DO UPDATE SET content = EXCLUDED.content, "
+                + "metadata = EXCLUDED.metadata, embedding = EXCLUDED.embedding "
+                + "RETURNING id::text AS id, content, metadata::text AS metadata, embedding::text AS embedding",
+            (rs, rowNum) -> new EmbeddedDocument(rs.getString("id"), rs.getString("content"),
+                parseMetadata(rs.getString("metadata")), new PGvector(rs.getString("embedding")).toArray()),
+            section, version);
+    }
+
+    public int deleteArchived(long version, String section) {
+        return jdbcTemplate.update(
+            "DELETE FROM vector_store_history WHERE section = ? AND version = ?", section, version);
+    }
+
+    public List<StoredDocument> findQaPairs() {
+        return jdbcTemplate.query(
+            "SELECT id::text AS id, content, metadata::text AS metadata "
+                + "FROM vector_store WHERE metadata->>'type' = 'qa_pair'",
+            (rs, rowNum) -> new StoredDocument(
+                rs.getString("id"), rs.getString("content"), parseMetadata(rs.getString("metadata"))));
+    }
+
+    /**
+     * Q&A rows of the given sections only
+     */
+    public List<StoredDocument> findQaPairs(Collection<String> sections) {
+        if (sections.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(
+            "SELECT id::text AS id, content, metadata::text AS metadata "
+                + "FROM vector_store WHERE metadata->>'type' = 'qa_pair' AND metadata->>'section' = ANY (?)",
+            ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", sections.toArray())),
+            (rs, rowNum) -> new StoredDocument(
+                rs.getString("id"), rs.getString("content"), parseMetadata(rs.getString("metadata"))));
+    }
+
+    /**
+     * Every chunk of the given parent documents
+     */
+    public List<StoredDocument> findChunks(Collection<String> parentIds) {
+        if (parentIds.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(
+            "SELECT id::text AS id, content, metadata::text AS metadata "
+                + "FROM vector_store WHERE metadata->>'parent_id' = ANY (?)",
+            ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", parentIds.toArray())),
+            (rs, rowNum) -> new StoredDocument(
+                rs.getString("id"), rs.getString("content"), parseMetadata(rs.getString("metadata"))));
+    }
+
+    /**
+     * Rows written before documents carried a content hash
+     */
+    public List<StoredDocument> findDocumentsWithoutContentHash() {
+        return jdbcTemplate.query(
+            "SELECT id::text AS id, content, metadata::text AS metadata "
+                + "FROM vector_store WHERE metadata->>'content_hash' IS NULL",
+            (rs, rowNum) -> new StoredDocument(
+                rs.getString("id"), rs.getString("content"), parseMetadata(rs.getString("metadata"))));
+    }
+
+    /**
+     * Full-text search over document content, best ts_rank_cd first.
+     * Query terms are OR-ed (plainto_tsquery ANDs them, which natural-language
+     * questions rarely satisfy), so documents matching more terms rank higher.
+     * The to_tsvector expression matches vector_store_content_fts_idx.
+     */
+    public List<Document> fullTextSearch(String query, String section, String subsection, int limit) {
+        StringBuilder sql = new StringBuilder(
+            "SELECT id::text AS id, content, metadata::text AS metadata, "
+                + "ts_rank_cd(to_tsvector('english', content), q) AS rank "
+                + "FROM vector_store, "
+                + "replace(plainto_tsquery('english', ?)::text, '&', '|')::tsquery AS q "
+                + "WHERE to_tsvector('english', content) @@ q");
+        List<Object> args = new ArrayList<>();
+        args.add(query);
+        if (section != null && !section.isBlank()) {
+            sql.append(" AND metadata->>'section' = ?");
+            args.add(section);
+        }
+        if (subsection != null && !subsection.isBlank()) {
+            sql.append(" AND metadata->>'subsection' = ?");
+            args.add(subsection);
+        }
+        sql.append(" ORDER BY rank DESC LIMIT ?");
+        args.add(limit);
+
+        return jdbcTemplate.query(sql.toString(),
+            (rs, rowNum) -> {
+                Map<String, Object> metadata = new HashMap<>(parseMetadata(rs.getString("metadata")));
+                metadata.put("text_rank", rs.getFloat("rank"));
+                return new Document(rs.getString("id"), rs.getString("content"), metadata);
+            },
+            args.toArray());
+    }
+
+    /**
+     * Upsert documents that already carry embeddings, one JDBC batch per chunk.
+     * With reWriteBatchedInserts the driver sends each batch as multi-row INSERTs.
+     */
+    public void upsertAll(List<Document> documents, int batchSize) {
+        for (int from = 0; from < documents.size(); from += batchSize) {
+            List<Document> chunk = documents.subList(from, Math.min(from + batchSize, documents.size()));
+            jdbcTemplate.batchUpdate(
+                "INSERT INTO vector_store (id, content, metadata, embedding) VALUES (?, ?, ?::jsonb, ?) "
+                    + "ON CONFLICT (id) DO UPDATE SET content = EXCLUDED.content, "
+                    + "metadata = EXCLUDED.metadata, embedding = EXCLUDED.embedding",
+                chunk,
+                chunk.size(),
+                (ps, doc) -> {
+                    ps.setObject(1, UUID.fromString(doc.getId()));
+                    ps.setString(2, doc.getContent());
+                    ps.setString(3, toJson(doc.getMetadata()));
+                    ps.setObject(4, new PGvector(VectorMath.toFloats(doc.getEmbedding())));
+                });
+        }
+    }
+
+    private String toJson(Map<String, Object> metadata) {
+        try {
+            return objectMapper.writeValueAsString(metadata);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Document metadata is not serializable", e);
+        }
+    }
+
+    private Map<String, Object> parseMetadata(String json) {
+        if (json == null) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(json, METADATA_TYPE);
+        } catch (JsonProcessingException e) {
+            return Map.of();
+        }
+    }
+
+    public record StoredDocument(String id, String content, Map<String, Object> metadata) {
+    }
+
+    public record SourceEntry(String id, String section, String contentHash) {
+    }
+
+    /**
+     * A knowledge entry's stable id, and the question that identified it before entry ids existed
+     */
+    public record EntryKey(String entryId, String section, String subsection, String question) {
+    }
+
+    public record EmbeddedDocument(String id, String content, Map<String, Object> metadata, float[] embedding) {
+    }
+}
@@ -1,14 +1,25 @@
 package com.befiler.assistant.controller;
 
+import com.befiler.assistant.model.IngestionJobStatus;
+import com.befiler.assistant.model.KnowledgeReloadStatus;
 import com.befiler.assistant.service.DocumentService;
+import com.befiler.assistant.service.DocumentService.KnowledgeEntry;
 import com.befiler.assistant.service.DocumentService.QAPair;
+import com.befiler.assistant.service.DocumentService.WriteResult;
+import com.befiler.assistant.service.IngestionJobService;
+import com.befiler.assistant.service.KnowledgeReloadService;
+import com.befiler.assistant.service.KnowledgeReloadService.SectionRollback;
+import com.befiler.assistant.vectorstore.QuantizationReport;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Admin controller for managing knowledge base content
@@ -21,6 +32,9 @@ import java.util.Map;
 public class AdminController {
     
     private final DocumentService documentService;
+    private final IngestionJobService ingestionJobService;
+    private final QuantizationReport quantizationReport;
+    private final KnowledgeReloadService knowledgeReloadService;
     
     /**
      * Add a single document to the knowledge base
@@ -85,6 +99,126 @@ public class AdminController {
         }
     }
     
+    /**
+     * Create or replace knowledge entries by their stable ids (derived from section,
+     * subsection and question, or key for non-Q&A content); returns the entry ids.
+     * 400 when an entry has neither question nor key, or two entries share an id.
+     */
+    @PutMapping("/entries")
+    public ResponseEntity<WriteResult> upsertEntries(@RequestBody UpsertEntriesRequest request) {
+        if (request.getEntries() == null || request.getEntries().isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        for (EntryRequest entry : request.getEntries()) {
+            if (entry.getSection() == null || entry.getSection().isBlank()
+                    || entry.getContent() == null || entry.getContent().isBlank()) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        List<KnowledgeEntry> entries = request.getEntries().stream()
+            .map(entry -> new KnowledgeEntry(entry.getType(), entry.getSection(), entry.getSubsection(),
+                entry.getQuestion(), entry.getKey(), entry.getContent()))
+            .toList();
+        try {
+            return ResponseEntity.ok(documentService.upsertEntries(entries));
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected entry upsert: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * Delete documents or entries by id (comma-separated); an entry id removes all its chunks
+     */
+    @DeleteMapping("/documents")
+    public ResponseEntity<WriteResult> deleteDocuments(@RequestParam List<String> ids) {
+        try {
+            ids.forEach(UUID::fromString);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(documentService.deleteByIds(ids));
+    }
+    
+    /**
+     * Delete every document of a section, or only of one subsection. Rows that came
+     * from the knowledge files are written again by the next reload or restart; remove
+     * the section from the files to delete it for good.
+     */
+    @DeleteMapping("/sections/{section}")
+    public WriteResult deleteSection(@PathVariable String section,
+                                     @RequestParam(required = false) String subsection) {
+        return documentService.deleteSection(section, subsection);
+    }
+    
+    /**
+     * Submit a batch of documents as a background ingestion job.
+     * Returns 202 with the job id, or 429 when the ingestion queue is full.
+     */
+    @PostMapping("/jobs/documents")
+    public ResponseEntity<IngestionJobStatus> submitDocumentsJob(@RequestBody AddDocumentsBatchRequest request) {
+        try {
+            IngestionJobStatus status = ingestionJobService.submitDocuments(
+                request.getContents(),
+                request.getType(),
+                request.getSection(),
+                request.getSubsection(),
+                request.getMetadata()
+            );
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(status);
+        } catch (RejectedExecutionException e) {
+            log.warn("Ingestion queue full, rejecting job for section={}", request.getSection());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+    }
+    
+    /**
+     * Poll the progress of an ingestion job
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<IngestionJobStatus> getJobStatus(@PathVariable String jobId) {
+        return ingestionJobService.getStatus(jobId)
+            .map(ResponseEntity::ok)
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * Reload the knowledge base files in the background; only changed sections are
+     * re-embedded and swapped in. Returns 202 with the reload's version.
+     */
+    @PostMapping("/knowledge/reload")
+    public ResponseEntity<KnowledgeReloadStatus> reloadKnowledge() {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(knowledgeReloadService.requestReload("admin"));
+    }
+    
+    /**
+     * Recent knowledge reloads, newest first
+     */
+    @GetMapping("/knowledge/reloads")
+    public List<KnowledgeReloadStatus> knowledgeReloads() {
+        return knowledgeReloadService.recentReloads();
+    }
+    
+    /**
+     * Restore a section to what it was before its latest reload
+     */
+    @PostMapping("/knowledge/sections/{section}/rollback")
+    public ResponseEntity<SectionRollback> rollbackSection(@PathVariable String section) {
+        return knowledgeReloadService.rollback(section)
+            .map(ResponseEntity::ok)
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * Recall and latency of float, int8 and binary HNSW storage on the current corpus.
+     * Builds one in-memory index per mode, so run it off-peak on large corpora.
+     */
+    @GetMapping("/vectorstore/quantization-report")
+    public QuantizationReport.Report quantizationReport(@RequestParam(defaultValue = "200") int queries,
+                                                        @RequestParam(defaultValue = "8") int k) {
+        return quantizationReport.run(queries, k);
+    }
+    
     // Request DTOs
     public static class AddDocumentRequest {
         private String content;
@@ -134,6 +268,37 @@ public class AdminController {
         public void setAnswer(String answer) { this.answer = answer; }
     }
     
+    public static class UpsertEntriesRequest {
+        private List<EntryRequest> entries;
+        
+        // Getters and setters
+        public List<EntryRequest> getEntries() { return entries; }
+        public void setEntries(List<EntryRequest> entries) { this.entries = entries; }
+    }
+    
+    public static class EntryRequest {
+        private String type;
+        private String section;
+        private String subsection;
+        private String question;
+        private String key;
+        private String content;
+        
+        // Getters and setters
+        public String getType() { return type; }
+        public void setType(String type) { this.type = type; }
+        public String getSection() { return section; }
+        public void setSection(String section) { this.section = section; }
+        public String getSubsection() { return subsection; }
+        public void setSubsection(String subsection) { this.subsection = subsection; }
+        public String getQuestion() { return question; }
+        public void setQuestion(String question) { this.question = question; }
+        public String getKey() { return key; }
+        public void setKey(String key) { this.key = key; }
+        public String getContent() { return content; }
+        public void setContent(String content) { this.content = content; }
+    }
+    
     public static class AddDocumentsBatchRequest {
         private List<String> contents;
         private String type;
@@ -0,0 +1,210 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.IngestionProperties;
+import com.befiler.assistant.repository.VectorStoreRepository;
+import com.befiler.assistant.vectorstore.InMemoryHnswVectorStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Writes documents with batched embedding requests and multi-row upserts,
+ * instead of one embedding call and one insert per document.
+ * Embedding batches are bounded by document count and estimated tokens and run
+ * with limited parallelism; rows are upserted in JDBC batches afterwards.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BatchDocumentWriter {
+
+    private final LimitedEmbeddingClient embeddingClient;
+    private final VectorStoreRepository vectorStoreRepository;
+    private final UpstreamLimiters upstreamLimiters;
+    private final ExecutorService upstreamExecutor;
+    private final IngestionProperties ingestionProperties;
+    private final ObjectProvider<InMemoryHnswVectorStore> hnswVectorStore;
+    private final RagMetrics ragMetrics;
+    private final TransactionTemplate transactionTemplate;
+
+    public void write(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+
+        String section = sectionOf(documents);
+        List<List<Document>> batches = partition(documents);
+        ragMetrics.timeIngestion("embed", section, () -> embedAll(batches));
+        ragMetrics.timeIngestion("upsert", section, () -> upstreamLimiters.vectorStore().run(() ->
+            vectorStoreRepository.upsertAll(documents, ingestionProperties.getInsertBatchSize())));
+        documents.stream()
+            .collect(Collectors.groupingBy(doc -> String.valueOf(doc.getMetadata().get("section")),
+                Collectors.counting()))
+            .forEach((docSection, count) -> ragMetrics.recordIngested(docSection, count.intValue()));
+        // Keep the in-process index (when enabled) in step with pgvector
+        hnswVectorStore.ifAvailable(store -> store.index(documents));
+
+        log.info("Wrote {} documents in {} embedding batches ({} ms)",
+                documents.size(), batches.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Replace documents in one step: the new documents are embedded first (those that
+     * already carry an embedding are kept as is), then inserted and the old ids deleted
+     * in a single transaction, so searches see either the old set or the new one.
+     * On failure nothing is changed.
+     */
+    public void swap(List<Document> inserts, List<String> deleteIds) {
+        swap(inserts, deleteIds, () -> {
+        });
+    }
+
+    /**
+     * Same as swap, running beforeWrite first in the same transaction (e.g. to archive
+     * the rows about to be deleted)
+     */
+    public void swap(List<Document> inserts, List<String> deleteIds, Runnable beforeWrite) {
+        if (inserts.isEmpty() && deleteIds.isEmpty()) {
+            return;
+        }
+        List<Document> missing = inserts.stream()
+            .filter(doc -> doc.getEmbedding() == null || doc.getEmbedding().isEmpty())
+            .toList();
+        if (!missing.isEmpty()) {
+            ragMetrics.timeIngestion("embed", sectionOf(missing), () -> embedAll(partition(missing)));
+        }
+        String section = inserts.isEmpty() ? "removal" : sectionOf(inserts);
+        ragMetrics.timeIngestion("swap", section, () -> upstreamLimiters.vectorStore().run(() ->
+            transactionTemplate.executeWithoutResult(status -> {
+                beforeWrite.run();
+                vectorStoreRepository.upsertAll(inserts, ingestionProperties.getInsertBatchSize());
+                vectorStoreRepository.deleteByIds(deleteIds);
+            })));
+        hnswVectorStore.ifAvailable(store -> store.replace(inserts, deleteIds));
+        log.info("Swapped documents: {} inserted ({} embedded), {} deleted",
+                inserts.size(), missing.size(), deleteIds.size());
+    }
+
+    /**
+     * Restore rows written back by SQL (restore returns them, embeddings included) and
+     * delete deleteIds, in one transaction; the in-process index is updated to match.
+     * Returns the restored documents.
+     */
+    public List<Document> restore(Supplier<List<Document>> restore, List<String> deleteIds) {
+        List<Document> restored = upstreamLimiters.vectorStore().call(() ->
+            transactionTemplate.execute(status -> {
+                List<Document> written = restore.get();
+                vectorStoreRepository.deleteByIds(deleteIds);
+                return written;
+            }));
+        hnswVectorStore.ifAvailable(store -> store.replace(restored, deleteIds));
+        log.info("Restored documents: {} restored, {} deleted", restored.size(), deleteIds.size());
+        return restored;
+    }
+
+    /**
+     * Delete a section (or one subsection) with a single statement; returns the deleted ids
+     */
+    public List<String> deleteSection(String section, String subsection) {
+        List<String> deleted = upstreamLimiters.vectorStore().call(() ->
+            vectorStoreRepository.deleteBySection(section, subsection));
+        hnswVectorStore.ifAvailable(store -> store.replace(List.of(), deleted));
+        log.info("Deleted section={} subsection={}: {} documents", section, subsection, deleted.size());
+        return deleted;
+    }
+
+    /**
+     * Size-aware split: a batch closes when it reaches the document or token limit
+     */
+    List<List<Document>> partition(List<Document> documents) {
+        List<List<Document>> batches = new ArrayList<>();
+        List<Document> current = new ArrayList<>();
+        int currentTokens = 0;
+        for (Document doc : documents) {
+            int tokens = estimateTokens(doc.getContent());
+            boolean full = current.size() >= ingestionProperties.getEmbeddingBatchSize()
+                || currentTokens + tokens > ingestionProperties.getEmbeddingBatchTokens();
+            if (!current.isEmpty() && full) {
+                batches.add(current);
+                current = new ArrayList<>();
+                currentTokens = 0;
+            }
+            current.add(doc);
+            currentTokens += tokens;
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    private void embedAll(List<List<Document>> batches) {
+        if (batches.size() == 1) {
+            embedBatch(batches.get(0));
+            return;
+        }
+
+        Semaphore inFlight = new Semaphore(Math.max(1, ingestionProperties.getEmbeddingParallelism()));
+        List<CompletableFuture<Void>> futures = new ArrayList<>(batches.size());
+        try {
+            for (List<Document> batch : batches) {
+                inFlight.acquire();
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        embedBatch(batch);
+                    } finally {
+                        inFlight.release();
+                    }
+                }, upstreamExecutor));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(true));
+            throw new IllegalStateException("Interrupted while embedding documents", e);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    private void embedBatch(List<Document> batch) {
+        List<List<Double>> embeddings = embeddingClient.embed(batch.stream().map(Document::getContent).toList());
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).setEmbedding(embeddings.get(i));
+        }
+    }
+
+    /**
+     * Section tag for the stage timers: the shared section, or "mixed" for multi-section writes
+     */
+    private static String sectionOf(List<Document> documents) {
+        Set<Object> sections = documents.stream()
+            .map(doc -> doc.getMetadata().get("section"))
+            .collect(Collectors.toSet());
+        return sections.size() == 1 ? String.valueOf(sections.iterator().next()) : "mixed";
+    }
+
+    /**
+     * Rough token estimate (about four characters per token) used only for batch sizing
+     */
+    static int estimateTokens(String text) {
+        return text == null ? 0 : (text.length() + 3) / 4;
+    }
+}
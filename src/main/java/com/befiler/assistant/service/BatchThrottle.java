@@ -0,0 +1,55 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.RagProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits shared by every question batch: how many batches may run at once, and a
+ * single completion pacer, so concurrent batches together start at most
+ * rag.batch.completions-per-second completions instead of that rate each
+ */
+@Component
+public class BatchThrottle {
+
+    private final Semaphore batches;
+    private final RatePacer completions;
+
+    public BatchThrottle(RagProperties ragProperties) {
+        RagProperties.Batch settings = ragProperties.getBatch();
+        this.batches = new Semaphore(Math.max(1, settings.getMaxConcurrentBatches()));
+        this.completions = new RatePacer(settings.getCompletionsPerSecond());
+    }
+
+    /**
+     * A slot for one batch, or empty when max-concurrent-batches are already running
+     */
+    public Optional<Slot> tryStart() {
+        return batches.tryAcquire() ? Optional.of(new Slot()) : Optional.empty();
+    }
+
+    public RatePacer completions() {
+        return completions;
+    }
+
+    /**
+     * A running batch; closing it frees the slot, once
+     */
+    public final class Slot implements AutoCloseable {
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Slot() {
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                batches.release();
+            }
+        }
+    }
+}
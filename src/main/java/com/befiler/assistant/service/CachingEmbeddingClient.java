@@ -0,0 +1,211 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.CacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingClient;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.text.Normalizer;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * EmbeddingClient decorator that caches text embeddings by normalized text.
+ * Vectors are held as primitive float[] and exposed through a read-only List view.
+ * Concurrent requests for the same text share one in-flight upstream call.
+ */
+@Slf4j
+public class CachingEmbeddingClient implements EmbeddingClient {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final EmbeddingClient delegate;
+    private final CacheProperties.Embeddings settings;
+    private final Clock clock;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final ConcurrentHashMap<String, CompletableFuture<float[]>> inFlight = new ConcurrentHashMap<>();
+
+    public CachingEmbeddingClient(EmbeddingClient delegate, CacheProperties cacheProperties,
+                                  MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.settings = cacheProperties.getEmbeddings();
+        this.clock = Clock.systemUTC();
+        this.hits = Counter.builder("rag.embedding.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("rag.embedding.cache").tag("result", "miss").register(meterRegistry);
+        this.coalesced = Counter.builder("rag.embedding.cache").tag("result", "coalesced").register(meterRegistry);
+        meterRegistry.gauge("rag.embedding.cache.size", entries, Map::size);
+    }
+
+    @Override
+    public List<Double> embed(String text) {
+        String key = normalize(text);
+        float[] cached = getCached(key);
+        if (cached != null) {
+            hits.increment();
+            return new FloatListView(cached);
+        }
+
+        CompletableFuture<float[]> mine = new CompletableFuture<>();
+        CompletableFuture<float[]> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.increment();
+            return new FloatListView(join(existing));
+        }
+
+        misses.increment();
+        try {
+            float[] vector = VectorMath.toFloats(delegate.embed(text));
+            putCached(key, vector);
+            mine.complete(vector);
+            return new FloatListView(vector);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Serves cached texts locally and sends only the misses upstream, in one call
+     */
+    @Override
+    public List<List<Double>> embed(List<String> texts) {
+        List<List<Double>> results = new ArrayList<>(texts.size());
+        Map<String, Integer> missIndex = new HashMap<>();
+        List<String> missTexts = new ArrayList<>();
+
+        for (String text : texts) {
+            String key = normalize(text);
+            float[] cached = getCached(key);
+            if (cached != null) {
+                hits.increment();
+                results.add(new FloatListView(cached));
+            } else {
+                if (!missIndex.containsKey(key)) {
+                    missIndex.put(key, missTexts.size());
+                    missTexts.add(text);
+                }
+                results.add(null);
+            }
+        }
+        if (missTexts.isEmpty()) {
+            return results;
+        }
+
+        misses.increment(missTexts.size());
+        List<List<Double>> fetched = delegate.embed(missTexts);
+        List<float[]> vectors = new ArrayList<>(fetched.size());
+        for (int i = 0; i < fetched.size(); i++) {
+            float[] vector = VectorMath.toFloats(fetched.get(i));
+            putCached(normalize(missTexts.get(i)), vector);
+            vectors.add(vector);
+        }
+        for (int i = 0; i < texts.size(); i++) {
+            if (results.get(i) == null) {
+                results.set(i, new FloatListView(vectors.get(missIndex.get(normalize(texts.get(i))))));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public List<Double> embed(Document document) {
+        return delegate.embed(document);
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return delegate.call(request);
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    static String normalize(String text) {
+        String normalized = Normalizer.normalize(text == null ? "" : text, Normalizer.Form.NFKC);
+        return WHITESPACE.matcher(normalized.trim()).replaceAll(" ").toLowerCase();
+    }
+
+    private float[] getCached(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt().isBefore(clock.instant())) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.vector();
+        }
+    }
+
+    private void putCached(String key, float[] vector) {
+        synchronized (entries) {
+            entries.put(key, new Entry(vector, clock.instant().plus(settings.getTtl())));
+            Iterator<String> eldest = entries.keySet().iterator();
+            while (entries.size() > settings.getMaxEntries() && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    private static float[] join(CompletableFuture<float[]> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    private record Entry(float[] vector, Instant expiresAt) {
+    }
+
+    /**
+     * Read-only List view over a cached float[]; callers never see or mutate the backing array
+     */
+    static final class FloatListView extends AbstractList<Double> {
+
+        private final float[] values;
+
+        FloatListView(float[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public Double get(int index) {
+            return (double) values[index];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.ResilienceProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Count-based circuit breaker for one upstream. Opens when the failure rate over
+ * the last calls crosses the threshold, fails fast while open, then lets a single
+ * trial call through: success closes it again, failure re-opens it.
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final String name;
+    private final ResilienceProperties.CircuitBreaker settings;
+    private final Map<State, Counter> transitions = new EnumMap<>(State.class);
+
+    // Outcomes of the most recent calls while closed, true = failure
+    private final boolean[] window;
+    private int next;
+    private int recorded;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(String name, ResilienceProperties.CircuitBreaker settings, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.settings = settings;
+        this.window = new boolean[Math.max(1, settings.getSlidingWindow())];
+        for (State target : State.values()) {
+            transitions.put(target, Counter.builder("rag.upstream.circuit.transitions")
+                .tag("upstream", name)
+                .tag("state", target.name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry));
+        }
+        Gauge.builder("rag.upstream.circuit.state", this, breaker -> breaker.state().ordinal())
+            .tag("upstream", name)
+            .description("0 = closed, 1 = half-open, 2 = open")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Whether a call may go upstream now; every true must be followed by exactly
+     * one of onSuccess, onFailure or onIgnored
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < settings.getOpenDuration().toNanos()) {
+                    return false;
+                }
+                transition(State.HALF_OPEN);
+                trialInFlight = true;
+                return true;
+            default:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            transition(State.CLOSED);
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            transition(State.OPEN);
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (recorded >= settings.getMinimumCalls()
+                    && failures >= settings.getFailureRateThreshold() * recorded) {
+                transition(State.OPEN);
+            }
+        }
+    }
+
+    /**
+     * The call ended without saying anything about the upstream's health (e.g. cancelled)
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /**
+     * True while calls are being rejected outright, i.e. open and not yet due for a trial call
+     */
+    public synchronized boolean isOpen() {
+        return state == State.OPEN && System.nanoTime() - openedAt < settings.getOpenDuration().toNanos();
+    }
+
+    private void record(boolean failure) {
+        if (recorded == window.length) {
+            if (window[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        window[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % window.length;
+    }
+
+    private void transition(State target) {
+        log.warn("Upstream {} circuit {} -> {} (failures {}/{})", name, state, target, failures, recorded);
+        state = target;
+        trialInFlight = false;
+        next = 0;
+        recorded = 0;
+        failures = 0;
+        if (target == State.OPEN) {
+            openedAt = System.nanoTime();
+        }
+        transitions.get(target).increment();
+    }
+}
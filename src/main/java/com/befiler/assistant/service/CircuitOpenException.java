@@ -0,0 +1,11 @@
+package com.befiler.assistant.service;
+
+/**
+ * Thrown without calling the upstream while its circuit breaker is open
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    public CircuitOpenException(String upstream) {
+        super("Upstream " + upstream + " is unavailable (circuit open)");
+    }
+}
@@ -0,0 +1,175 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.RagProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Turns retrieved candidates into the prompt context under a token budget.
+ * Candidates are scored (retrieval relevance plus a small type priority), near
+ * duplicates of already packed chunks are dropped, and the rest are packed greedily
+ * until the budget or the per-type caps are reached.
+ */
+@Component
+@RequiredArgsConstructor
+public class ContextAssembler {
+
+    private static final String GENERAL_INFO_HEADER = "GENERAL INFORMATION:\n";
+    private static final String QA_HEADER = "RELEVANT Q&A:\n";
+
+    private final TokenCounter tokenCounter;
+    private final RagProperties ragProperties;
+
+    public AssembledContext assemble(List<Document> candidates) {
+        RagProperties.Context settings = ragProperties.getContext();
+
+        List<Scored> scored = new ArrayList<>(candidates.size());
+        for (int rank = 0; rank < candidates.size(); rank++) {
+            Document doc = candidates.get(rank);
+            scored.add(new Scored(doc, score(doc, rank, ragProperties.getHybrid().getRrfK()),
+                tokenCounter.count(entry(doc))));
+        }
+        scored.sort(Comparator.comparingDouble(Scored::score).reversed());
+
+        int budget = settings.getMaxTokens()
+            - tokenCounter.count(GENERAL_INFO_HEADER) - tokenCounter.count(QA_HEADER);
+        int used = 0;
+        List<Document> generalInfo = new ArrayList<>();
+        List<Document> qaPairs = new ArrayList<>();
+        List<Set<String>> packedShingles = new ArrayList<>();
+        Set<String> packedIds = new HashSet<>();
+
+        for (Scored candidate : scored) {
+            Document doc = candidate.document();
+            Object type = doc.getMetadata().get("type");
+            boolean isGeneralInfo = "general_info".equals(type);
+            boolean isQaPair = "qa_pair".equals(type);
+            if (!isGeneralInfo && !isQaPair) {
+                continue;
+            }
+            if (isGeneralInfo && generalInfo.size() >= settings.getMaxGeneralInfo()) {
+                continue;
+            }
+            if (isQaPair && qaPairs.size() >= settings.getMaxQaPairs()) {
+                continue;
+            }
+            if (used + candidate.tokens() > budget || !packedIds.add(doc.getId())) {
+                continue;
+            }
+
+            Set<String> shingles = shingles(doc.getContent());
+            if (isDuplicate(shingles, packedShingles, settings.getDuplicateThreshold())) {
+                continue;
+            }
+
+            packedShingles.add(shingles);
+            used += candidate.tokens();
+            (isGeneralInfo ? generalInfo : qaPairs).add(doc);
+        }
+
+        String context = format(generalInfo, qaPairs);
+        return new AssembledContext(generalInfo, qaPairs, context, tokenCounter.count(context));
+    }
+
+    /**
+     * Build context with structured formatting
+     */
+    private static String format(List<Document> generalInfo, List<Document> qaPairs) {
+        StringBuilder contextBuilder = new StringBuilder();
+
+        if (!generalInfo.isEmpty()) {
+            contextBuilder.append(GENERAL_INFO_HEADER);
+            generalInfo.forEach(doc -> contextBuilder.append(entry(doc)));
+        }
+
+        if (!qaPairs.isEmpty()) {
+            contextBuilder.append(QA_HEADER);
+            qaPairs.forEach(doc -> contextBuilder.append(entry(doc)));
+        }
+        return contextBuilder.toString();
+    }
+
+    private static String entry(Document doc) {
+        return "- " + doc.getContent() + "\n\n";
+    }
+
+    /**
+     * Re-ranker score when a re-ranker ran, otherwise the retrieval relevance,
+     * plus a small bonus for high-priority chunks
+     */
+    static double score(Document doc, int rank, int rrfK) {
+        Object rerank = doc.getMetadata().get("rerank_score");
+        double relevance = rerank instanceof Number r ? r.doubleValue() : relevance(doc, rank, rrfK);
+        return "high".equals(doc.getMetadata().get("priority")) ? relevance + 0.05 : relevance;
+    }
+
+    /**
+     * Relevance from whatever the retriever reported (cosine distance or fused
+     * score), falling back to rank order
+     */
+    static double relevance(Document doc, int rank, int rrfK) {
+        Object distance = doc.getMetadata().get("distance");
+        Object rrf = doc.getMetadata().get("rrf_score");
+        if (rrf instanceof Number fused) {
+            // Rescale against the best possible single-list RRF score, 1/(k+1)
+            return Math.min(1.0, fused.doubleValue() * (rrfK + 1));
+        }
+        if (distance instanceof Number d) {
+            return 1.0 - d.doubleValue();
+        }
+        return 1.0 / (rank + 1);
+    }
+
+    private static boolean isDuplicate(Set<String> shingles, List<Set<String>> packed, double threshold) {
+        for (Set<String> other : packed) {
+            if (jaccard(shingles, other) >= threshold) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static Set<String> shingles(String text) {
+        String[] words = text.toLowerCase(Locale.ROOT).split("\\W+");
+        Set<String> shingles = new HashSet<>();
+        for (int i = 0; i + 2 < words.length; i++) {
+            shingles.add(words[i] + ' ' + words[i + 1] + ' ' + words[i + 2]);
+        }
+        return shingles;
+    }
+
+    static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        Set<String> smaller = a.size() <= b.size() ? a : b;
+        Set<String> larger = smaller == a ? b : a;
+        int intersection = 0;
+        for (String shingle : smaller) {
+            if (larger.contains(shingle)) {
+                intersection++;
+            }
+        }
+        return (double) intersection / (a.size() + b.size() - intersection);
+    }
+
+    private record Scored(Document document, double score, int tokens) {
+    }
+
+    /**
+     * Documents packed into the prompt, the formatted context and its token count
+     */
+    public record AssembledContext(List<Document> generalInfo,
+                                   List<Document> qaPairs,
+                                   String context,
+                                   int tokens) {
+    }
+}
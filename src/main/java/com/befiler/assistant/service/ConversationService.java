@@ -0,0 +1,360 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.ConversationProperties;
+import com.befiler.assistant.model.ConversationSession;
+import com.befiler.assistant.model.ConversationTurn;
+import com.befiler.assistant.repository.ConversationSessionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.ChatClient;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Pattern;
+
+/**
+ * Server-side conversation sessions with bounded history.
+ * Sessions live in an LRU/TTL map (optionally mirrored to the database). Each keeps
+ * a running summary plus the latest turns; once the turns exceed the history token
+ * budget, all but the most recent are folded into the summary in the background,
+ * so the history sent with each prompt stays roughly constant in size.
+ * Persistent sessions are written in the background, one write at a time per session;
+ * changes made while a write is running are folded into the next one.
+ */
+@Service
+@Slf4j
+public class ConversationService {
+
+    // Pronouns and continuations that open a question about the previous turn
+    private static final Pattern FOLLOW_UP_START = Pattern.compile(
+        "^\\W*(and|also|what about|how about|then|so|it|its|that|this|these|those|they|them|their|same|there)\\b",
+        Pattern.CASE_INSENSITIVE);
+    // Tax subjects a self-contained question names; without one it relies on the conversation for its subject
+    private static final Pattern DOMAIN_NOUN = Pattern.compile(
+        "\\b(tax|taxes|taxation|returns?|filing|filers?|income|salary|salaries|wages?|pensions?|rent|property"
+            + "|business|freelanc\\w*|dividends?|profits?|gains?|deductions?|exemptions?|credits?|refunds?"
+            + "|withholding|allowances?|bonus\\w*|zakat|wealth statement|ntn|fbr|iris|slabs?|rates?"
+            + "|penalt(y|ies)|deadlines?|notices?|audits?|investments?|shares|savings|bank\\w*|remittances?)\\b",
+        Pattern.CASE_INSENSITIVE);
+
+    private final ConversationProperties settings;
+    private final ConversationSessionRepository repository;
+    private final ChatClient chatClient;
+    private final TokenCounter tokenCounter;
+    private final ExecutorService upstreamExecutor;
+    private final Clock clock;
+
+    // Access-ordered so iteration starts from the least recently used session
+    private final LinkedHashMap<String, Conversation> sessions = new LinkedHashMap<>(64, 0.75f, true);
+
+    public ConversationService(ConversationProperties settings,
+                               ConversationSessionRepository repository,
+                               ChatClient chatClient,
+                               TokenCounter tokenCounter,
+                               ExecutorService upstreamExecutor,
+                               MeterRegistry meterRegistry) {
+        this.settings = settings;
+        this.repository = repository;
+        this.chatClient = chatClient;
+        this.tokenCounter = tokenCounter;
+        this.upstreamExecutor = upstreamExecutor;
+        this.clock = Clock.systemUTC();
+        meterRegistry.gauge("rag.conversation.sessions", sessions, Map::size);
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    /**
+     * The session with this id, or a new one when the id is missing or unknown.
+     * Only ids this server issued are resumed: a new session always gets a random id,
+     * never the one the client sent, so clients cannot create or claim sessions by name.
+     * Returns null when sessions are disabled.
+     */
+    public Conversation open(String sessionId) {
+        if (!settings.isEnabled()) {
+            return null;
+        }
+        boolean requested = sessionId != null && !sessionId.isBlank();
+        Instant now = clock.instant();
+
+        if (requested) {
+            synchronized (sessions) {
+                evictExpired(now);
+                Conversation existing = sessions.get(sessionId);
+                if (existing != null) {
+                    existing.lastAccess = now;
+                    return existing;
+                }
+            }
+        }
+
+        // Persisted sessions were issued by this server before a restart or by another instance
+        Conversation loaded = requested && settings.isPersistent() ? load(sessionId) : null;
+        Conversation conversation = loaded != null ? loaded : new Conversation(UUID.randomUUID().toString());
+        synchronized (sessions) {
+            evictExpired(now);
+            Conversation raced = sessions.putIfAbsent(conversation.id, conversation);
+            if (raced != null) {
+                conversation = raced;
+            }
+            conversation.lastAccess = now;
+            while (sessions.size() > settings.getMaxSessions()) {
+                Iterator<String> eldest = sessions.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return conversation;
+    }
+
+    /**
+     * The follow-up rewritten as a self-contained question using the formatted history;
+     * the query itself when there is no history or it does not look like a follow-up
+     */
+    public String standaloneQuery(String history, String query) {
+        if (history.isEmpty() || !settings.isRewriteFollowUps() || !isFollowUp(query)) {
+            return query;
+        }
+        try {
+            String rewritten = complete(String.format("""
+                Rewrite the follow-up question as a single standalone question about Pakistani tax filing
+                that can be understood without the conversation. Keep every specific detail it refers to.
+                Reply with the question only.
+
+                Conversation:
+                %s
+                Follow-up question: %s
+                """, history, query));
+            return rewritten == null || rewritten.isBlank() ? query : rewritten.trim();
+        } catch (Exception e) {
+            log.warn("Follow-up rewrite failed, using the original question: {}", e.getMessage());
+            return query;
+        }
+    }
+
+    /**
+     * Prompt-ready history within the token budget: the summary of earlier turns,
+     * then as many of the latest turns as fit
+     */
+    public String formatHistory(Conversation conversation) {
+        if (conversation == null) {
+            return "";
+        }
+        String summary;
+        List<ConversationTurn> turns;
+        synchronized (conversation) {
+            summary = conversation.summary;
+            turns = List.copyOf(conversation.turns);
+        }
+
+        int budget = settings.getHistoryMaxTokens();
+        StringBuilder history = new StringBuilder();
+        if (summary != null && !summary.isBlank()) {
+            String line = "Earlier in this conversation: " + summary + "\n";
+            budget -= tokenCounter.count(line);
+            history.append(line);
+        }
+        List<String> recent = new ArrayList<>();
+        for (int i = turns.size() - 1; i >= 0; i--) {
+            String entry = format(turns.get(i));
+            int tokens = tokenCounter.count(entry);
+            if (tokens > budget) {
+                break;
+            }
+            budget -= tokens;
+            recent.add(0, entry);
+        }
+        recent.forEach(history::append);
+        return history.toString();
+    }
+
+    /**
+     * Record a turn; when the turns outgrow the budget, fold the older ones into the summary
+     */
+    public void append(Conversation conversation, String question, String answer) {
+        if (conversation == null) {
+            return;
+        }
+        List<ConversationTurn> toFold = null;
+        String previousSummary = null;
+        synchronized (conversation) {
+            conversation.turns.add(new ConversationTurn(question, answer));
+            if (!conversation.compacting
+                    && conversation.turns.size() > settings.getRecentTurns()
+                    && turnTokens(conversation.turns) > settings.getHistoryMaxTokens()) {
+                conversation.compacting = true;
+                toFold = List.copyOf(conversation.turns.subList(0,
+                    conversation.turns.size() - settings.getRecentTurns()));
+                previousSummary = conversation.summary;
+            }
+        }
+        persist(conversation);
+
+        if (toFold != null) {
+            List<ConversationTurn> folded = toFold;
+            String summary = previousSummary;
+            upstreamExecutor.execute(() -> compact(conversation, summary, folded));
+        }
+    }
+
+    private void compact(Conversation conversation, String previousSummary, List<ConversationTurn> folded) {
+        String summary;
+        try {
+            summary = summarize(previousSummary, folded);
+        } catch (Exception e) {
+            // Keep the bound even without a summary: the folded turns are dropped
+            log.warn("Conversation summary failed for session {}: {}", conversation.id, e.getMessage());
+            summary = previousSummary;
+        }
+        synchronized (conversation) {
+            conversation.summary = summary;
+            conversation.turns.subList(0, folded.size()).clear();
+            conversation.compacting = false;
+        }
+        persist(conversation);
+    }
+
+    private String summarize(String previousSummary, List<ConversationTurn> turns) {
+        StringBuilder transcript = new StringBuilder();
+        if (previousSummary != null && !previousSummary.isBlank()) {
+            transcript.append("Summary so far: ").append(previousSummary).append('\n');
+        }
+        turns.forEach(turn -> transcript.append(format(turn)));
+        return complete(String.format("""
+            Summarize this tax-assistant conversation in at most %d words. Keep the facts the user
+            shared about their situation (income types, amounts, tax years, filing status) and any
+            unresolved questions; drop pleasantries and general explanations.
+
+            %s
+            """, Math.max(30, settings.getHistoryMaxTokens() / 3), transcript));
+    }
+
+    private String complete(String prompt) {
+        return chatClient.call(new Prompt(List.of(new UserMessage(prompt))))
+            .getResult()
+            .getOutput()
+            .getContent();
+    }
+
+    /**
+     * A question opening with a pronoun or continuation, or naming no tax subject at all
+     */
+    static boolean isFollowUp(String query) {
+        return FOLLOW_UP_START.matcher(query).find() || !DOMAIN_NOUN.matcher(query).find();
+    }
+
+    private int turnTokens(List<ConversationTurn> turns) {
+        int tokens = 0;
+        for (ConversationTurn turn : turns) {
+            tokens += tokenCounter.count(format(turn));
+        }
+        return tokens;
+    }
+
+    private static String format(ConversationTurn turn) {
+        return "User: " + turn.getQuestion() + "\nAssistant: " + turn.getAnswer() + "\n";
+    }
+
+    private void evictExpired(Instant now) {
+        Iterator<Conversation> it = sessions.values().iterator();
+        while (it.hasNext()) {
+            if (!it.next().lastAccess.plus(settings.getTtl()).isBefore(now)) {
+                break;
+            }
+            it.remove();
+        }
+    }
+
+    private Conversation load(String id) {
+        try {
+            return repository.findById(id)
+                .map(session -> {
+                    Conversation conversation = new Conversation(id);
+                    conversation.summary = session.getSummary();
+                    conversation.turns.addAll(session.getTurns());
+                    return conversation;
+                })
+                .orElse(null);
+        } catch (Exception e) {
+            log.warn("Could not load conversation {}: {}", id, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Schedule a background write of the session, unless one is already running; that
+     * one then writes this change too
+     */
+    private void persist(Conversation conversation) {
+        if (!settings.isPersistent()) {
+            return;
+        }
+        synchronized (conversation) {
+            conversation.unsaved = true;
+            if (conversation.saving) {
+                return;
+            }
+            conversation.saving = true;
+        }
+        upstreamExecutor.execute(() -> save(conversation));
+    }
+
+    /**
+     * Write the latest state until nothing is left unsaved
+     */
+    private void save(Conversation conversation) {
+        while (true) {
+            ConversationSession session = new ConversationSession();
+            synchronized (conversation) {
+                if (!conversation.unsaved) {
+                    conversation.saving = false;
+                    return;
+                }
+                conversation.unsaved = false;
+                session.setId(conversation.id);
+                session.setSummary(conversation.summary);
+                session.setTurns(new ArrayList<>(conversation.turns));
+            }
+            session.setUpdatedAt(clock.instant());
+            try {
+                repository.save(session);
+            } catch (Exception e) {
+                log.warn("Could not persist conversation {}: {}", conversation.id, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * In-memory session state; guarded by its own monitor
+     */
+    public static final class Conversation {
+
+        private final String id;
+        private final List<ConversationTurn> turns = new ArrayList<>();
+        private String summary;
+        private boolean compacting;
+        private boolean saving;
+        private boolean unsaved;
+        private volatile Instant lastAccess = Instant.EPOCH;
+
+        private Conversation(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.IngestionProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits long text into overlapping chunks of at most maxTokens, so each chunk gets
+ * a focused embedding and retrieval can return just the part that matched.
+ * Chunks are built from whole units (sentences, or words for TOKEN_WINDOW and for
+ * sentences that alone exceed the limit); consecutive chunks share up to
+ * overlapTokens of trailing units, recorded so the text can be stitched back.
+ */
+@Component
+@RequiredArgsConstructor
+public class DocumentChunker {
+
+    private static final Pattern WORD = Pattern.compile("\\S+\\s*");
+
+    private final IngestionProperties ingestionProperties;
+    private final TokenCounter tokenCounter;
+
+    /**
+     * The text's chunks in order; a single chunk when chunking is off or the text fits
+     */
+    public List<Chunk> split(String text) {
+        IngestionProperties.Chunking settings = ingestionProperties.getChunking();
+        int maxTokens = Math.max(1, settings.getMaxTokens());
+        if (!settings.isEnabled() || tokenCounter.count(text) <= maxTokens) {
+            return List.of(new Chunk(text, 0));
+        }
+
+        List<String> units = new ArrayList<>();
+        if (settings.getStrategy() == IngestionProperties.Chunking.Strategy.TOKEN_WINDOW) {
+            units.addAll(words(text));
+        } else {
+            for (String sentence : sentences(text)) {
+                if (tokenCounter.count(sentence) > maxTokens) {
+                    units.addAll(words(sentence));
+                } else {
+                    units.add(sentence);
+                }
+            }
+        }
+        int[] tokens = units.stream().mapToInt(tokenCounter::count).toArray();
+        return pack(units, tokens, maxTokens, Math.max(0, settings.getOverlapTokens()));
+    }
+
+    private static List<Chunk> pack(List<String> units, int[] tokens, int maxTokens, int overlapTokens) {
+        List<Chunk> chunks = new ArrayList<>();
+        int start = 0;
+        int overlapChars = 0;
+        while (start < units.size()) {
+            int end = start;
+            int total = 0;
+            while (end < units.size() && (end == start || total + tokens[end] <= maxTokens)) {
+                total += tokens[end++];
+            }
+            chunks.add(new Chunk(join(units, start, end), overlapChars));
+            if (end == units.size()) {
+                break;
+            }
+            // Step back over trailing units worth at most overlapTokens, always moving forward
+            int next = end;
+            int overlap = 0;
+            while (next - 1 > start && overlap + tokens[next - 1] <= overlapTokens) {
+                overlap += tokens[--next];
+            }
+            overlapChars = join(units, next, end).length();
+            start = next;
+        }
+        return chunks;
+    }
+
+    private static List<String> sentences(String text) {
+        BreakIterator iterator = BreakIterator.getSentenceInstance(Locale.ENGLISH);
+        iterator.setText(text);
+        List<String> sentences = new ArrayList<>();
+        int start = iterator.first();
+        for (int end = iterator.next(); end != BreakIterator.DONE; start = end, end = iterator.next()) {
+            sentences.add(text.substring(start, end));
+        }
+        return sentences;
+    }
+
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        Matcher matcher = WORD.matcher(text);
+        while (matcher.find()) {
+            words.add(matcher.group());
+        }
+        return words;
+    }
+
+    private static String join(List<String> units, int from, int to) {
+        StringBuilder text = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            text.append(units.get(i));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Text of consecutive chunks with the repeated overlaps removed
+     */
+    public static String stitch(List<Chunk> chunks) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            int skip = i == 0 ? 0 : Math.min(chunk.overlapChars(), chunk.text().length());
+            text.append(chunk.text(), skip, chunk.text().length());
+        }
+        return text.toString();
+    }
+
+    /**
+     * Chunk text (unit separators kept) and the length of its leading part that
+     * repeats the end of the previous chunk
+     */
+    public record Chunk(String text, int overlapChars) {
+    }
+}
@@ -0,0 +1,62 @@
+package com.befiler.assistant.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Stable identifiers for knowledge base documents
+ */
+public final class DocumentIds {
+
+    private DocumentIds() {
+    }
+
+    /**
+     * SHA-256 over type, scope and content; changes whenever anything that
+     * affects the stored embedding or retrieval scope changes
+     */
+    public static String contentHash(String type, String section, String subsection, String content) {
+        return HexFormat.of().formatHex(sha256(String.join("\u0000",
+            nullToEmpty(type), nullToEmpty(section), nullToEmpty(subsection), nullToEmpty(content))));
+    }
+
+    /**
+     * Deterministic UUID (the pgvector id column type) derived from a content hash
+     */
+    public static String fromContentHash(String contentHash) {
+        return UUID.nameUUIDFromBytes(contentHash.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * Deterministic UUID for a knowledge entry, derived from its scope and key (the
+     * question of a Q&A pair, otherwise the type) rather than its content, so writing
+     * a corrected version replaces the entry. Keys compare case- and whitespace-insensitively.
+     */
+    public static String entryId(String type, String section, String subsection, String key) {
+        return fromContentHash("entry\u0000" + contentHash(type, section, subsection, normalizeKey(key)));
+    }
+
+    /**
+     * Entry key as compared: trimmed, inner whitespace collapsed to one space, lower case.
+     * VectorStoreRepository applies the same normalization in SQL.
+     */
+    public static String normalizeKey(String key) {
+        return nullToEmpty(key).strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,388 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.RagProperties;
+import com.befiler.assistant.model.RetrievalMode;
+import com.befiler.assistant.repository.VectorStoreRepository;
+import com.befiler.assistant.repository.VectorStoreRepository.StoredDocument;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingClient;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+/**
+ * Finds candidate documents for a query, scoped by section/subsection.
+ * VECTOR runs a single pgvector similarity search; HYBRID also runs a PostgreSQL
+ * full-text search in parallel and fuses both rankings with reciprocal rank fusion,
+ * so exact tokens ("Section 111(4)", "withholding") are not lost to embedding similarity.
+ * MULTI_QUERY splits mixed questions ("how is freelance income taxed, and what about
+ * dividends?") into sub-questions, searches for each in parallel and fuses the rankings
+ * the same way.
+ * Long documents are stored as chunks; expandNeighbours widens matched chunks with
+ * the chunks around them when more surrounding text is wanted.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DocumentRetriever {
+
+    private static final Pattern QUERY_SPLIT = Pattern.compile(
+        "\\s+(?:and|or|as well as|also|plus|along with)\\s+|[;,?]+\\s*|\\.\\s+", Pattern.CASE_INSENSITIVE);
+    private static final Pattern QUESTION_START = Pattern.compile(
+        "^(?:what|how|when|where|who|whom|which|why|is|are|am|do|does|did"
+            + "|can|could|should|would|will|must|shall|may)\\b",
+        Pattern.CASE_INSENSITIVE);
+
+    private final VectorStore vectorStore;
+    private final EmbeddingClient embeddingClient;
+    private final VectorStoreRepository vectorStoreRepository;
+    private final UpstreamLimiters upstreamLimiters;
+    private final ExecutorService upstreamExecutor;
+    private final RagProperties ragProperties;
+
+    public List<Document> retrieve(String query, String section, String subsection,
+                                   RetrievalMode mode, int topK) {
+        if (mode == RetrievalMode.HYBRID) {
+            return hybridSearch(query, section, subsection, topK);
+        }
+        if (mode == RetrievalMode.MULTI_QUERY) {
+            return multiQuerySearch(query, section, subsection, topK);
+        }
+        return vectorSearch(query, section, subsection, topK);
+    }
+
+    public List<Document> vectorSearch(String query, String section, String subsection, int topK) {
+        return vectorSearch(query, section, subsection, null, topK, SearchRequest.SIMILARITY_THRESHOLD_ACCEPT_ALL);
+    }
+
+    private List<Document> vectorSearch(String query, String section, String subsection, String type,
+                                        int topK, double minSimilarity) {
+        // Section/subsection/type scoping and the similarity cutoff run inside the store query
+        SearchRequest searchReq = SearchRequest.query(query).withTopK(topK).withSimilarityThreshold(minSimilarity);
+        Filter.Expression scope = RetrievalFilters.scope(section, subsection, type);
+        if (scope != null) {
+            searchReq = searchReq.withFilterExpression(scope);
+        }
+        return vectorStore.similaritySearch(searchReq);
+    }
+
+    /**
+     * Vector search sized per request instead of a fixed topK. A first search asks for
+     * rag.adaptive.initial-top-k neighbours above the similarity cutoff. If the best one
+     * is confident, the clear winners are returned at once. Otherwise, for each of
+     * general_info and qa_pair that the first search returned none of, one
+     * type-filtered search fills it, in parallel; none are issued when the first
+     * search already ran out of matches above the cutoff. With initial-top-k at least
+     * the two context caps together, most questions need the first search only.
+     */
+    public AdaptiveResult adaptiveSearch(String query, String section, String subsection) {
+        RagProperties.Adaptive settings = ragProperties.getAdaptive();
+        RagProperties.Context caps = ragProperties.getContext();
+        int initialTopK = Math.max(1, settings.getInitialTopK());
+        List<Document> first = vectorSearch(query, section, subsection, null, initialTopK,
+            settings.getMinSimilarity());
+
+        if (!first.isEmpty() && similarity(first.get(0)) >= settings.getConfidentSimilarity()) {
+            double floor = similarity(first.get(0)) - settings.getConfidentMargin();
+            List<Document> confident = first.stream().filter(doc -> similarity(doc) >= floor).toList();
+            return new AdaptiveResult(confident, "early_stop", initialTopK, 1);
+        }
+        if (first.size() < initialTopK) {
+            return new AdaptiveResult(first, "exhausted", initialTopK, 1);
+        }
+
+        Map<String, Integer> shortfall = new LinkedHashMap<>();
+        if (caps.getMaxGeneralInfo() > 0 && countType(first, "general_info") == 0) {
+            shortfall.put("general_info", caps.getMaxGeneralInfo());
+        }
+        if (caps.getMaxQaPairs() > 0 && countType(first, "qa_pair") == 0) {
+            shortfall.put("qa_pair", caps.getMaxQaPairs());
+        }
+        if (shortfall.isEmpty()) {
+            return new AdaptiveResult(first, "filled", initialTopK, 1);
+        }
+
+        // A type search returns the first search's matches of that type again, so it asks for the full cap
+        List<CompletableFuture<List<Document>>> searches = shortfall.entrySet().stream()
+            .map(entry -> CompletableFuture.supplyAsync(() -> vectorSearch(query, section, subsection,
+                entry.getKey(), entry.getValue(), settings.getMinSimilarity()), upstreamExecutor))
+            .toList();
+        Map<String, Document> merged = new LinkedHashMap<>();
+        first.forEach(doc -> merged.put(doc.getId(), doc));
+        try {
+            searches.forEach(search -> search.join().forEach(doc -> merged.putIfAbsent(doc.getId(), doc)));
+        } catch (CompletionException e) {
+            searches.forEach(search -> search.cancel(true));
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+        List<Document> documents = merged.values().stream()
+            .sorted(Comparator.comparingDouble(DocumentRetriever::similarity).reversed())
+            .toList();
+        int requested = initialTopK + shortfall.values().stream().mapToInt(Integer::intValue).sum();
+        return new AdaptiveResult(documents, "type_fill", requested, 1 + shortfall.size());
+    }
+
+    private static long countType(List<Document> documents, String type) {
+        return documents.stream().filter(doc -> type.equals(doc.getMetadata().get("type"))).count();
+    }
+
+    /**
+     * Cosine similarity reported by the store; 0 when it reported none
+     */
+    private static double similarity(Document doc) {
+        return doc.getMetadata().get("distance") instanceof Number distance ? 1.0 - distance.doubleValue() : 0.0;
+    }
+
+    public List<Document> lexicalSearch(String query, String section, String subsection, int topK) {
+        return upstreamLimiters.vectorStore().call(() ->
+            vectorStoreRepository.fullTextSearch(query, section, subsection, topK));
+    }
+
+    private List<Document> hybridSearch(String query, String section, String subsection, int topK) {
+        CompletableFuture<List<Document>> vector = CompletableFuture.supplyAsync(
+            () -> vectorSearch(query, section, subsection, topK), upstreamExecutor);
+        CompletableFuture<List<Document>> lexical = CompletableFuture.supplyAsync(
+            () -> lexicalSearch(query, section, subsection, topK), upstreamExecutor);
+
+        try {
+            List<Document> fused = fuse(List.of(vector.join(), lexical.join()),
+                ragProperties.getHybrid().getRrfK(), topK);
+            log.debug("Hybrid retrieval: vector={}, lexical={}, fused={}",
+                    vector.join().size(), lexical.join().size(), fused.size());
+            return fused;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Replace each matched chunk with the text of its chunk and up to
+     * rag.chunks.expand-neighbours chunks on either side. Matches from the same parent
+     * whose windows touch are merged into the better-ranked one, so no text is sent twice.
+     * Documents that are not chunks pass through unchanged.
+     */
+    public List<Document> expandNeighbours(List<Document> matches) {
+        int radius = ragProperties.getChunks().getExpandNeighbours();
+        Set<String> parentIds = new LinkedHashSet<>();
+        for (Document doc : matches) {
+            if (doc.getMetadata().get("parent_id") instanceof String parentId) {
+                parentIds.add(parentId);
+            }
+        }
+        if (radius <= 0 || parentIds.isEmpty()) {
+            return matches;
+        }
+
+        Map<String, Map<Integer, StoredDocument>> chunksByParent = new HashMap<>();
+        for (StoredDocument chunk : upstreamLimiters.vectorStore().call(() ->
+                vectorStoreRepository.findChunks(parentIds))) {
+            chunksByParent.computeIfAbsent((String) chunk.metadata().get("parent_id"), id -> new HashMap<>())
+                .put(intValue(chunk.metadata().get("chunk_index")), chunk);
+        }
+
+        // Windows in rank order; a null window keeps the match as it is
+        List<Document> anchors = new ArrayList<>();
+        List<int[]> windows = new ArrayList<>();
+        for (Document doc : matches) {
+            String parentId = doc.getMetadata().get("parent_id") instanceof String id ? id : null;
+            Map<Integer, StoredDocument> siblings = parentId != null ? chunksByParent.get(parentId) : null;
+            int index = intValue(doc.getMetadata().get("chunk_index"));
+            if (siblings == null || !siblings.containsKey(index)) {
+                anchors.add(doc);
+                windows.add(null);
+                continue;
+            }
+            // Only a gap-free run of stored siblings can be stitched
+            int from = index;
+            while (from > index - radius && siblings.containsKey(from - 1)) {
+                from--;
+            }
+            int to = index;
+            while (to < index + radius && siblings.containsKey(to + 1)) {
+                to++;
+            }
+            int merged = touchingWindow(anchors, windows, parentId, from, to);
+            if (merged >= 0) {
+                int[] window = windows.get(merged);
+                window[0] = Math.min(window[0], from);
+                window[1] = Math.max(window[1], to);
+            } else {
+                anchors.add(doc);
+                windows.add(new int[] {from, to});
+            }
+        }
+
+        List<Document> expanded = new ArrayList<>(anchors.size());
+        for (int i = 0; i < anchors.size(); i++) {
+            Document anchor = anchors.get(i);
+            int[] window = windows.get(i);
+            if (window == null) {
+                expanded.add(anchor);
+                continue;
+            }
+            Map<Integer, StoredDocument> siblings = chunksByParent.get((String) anchor.getMetadata().get("parent_id"));
+            List<DocumentChunker.Chunk> run = new ArrayList<>(window[1] - window[0] + 1);
+            for (int index = window[0]; index <= window[1]; index++) {
+                StoredDocument chunk = siblings.get(index);
+                run.add(new DocumentChunker.Chunk(chunk.content(), intValue(chunk.metadata().get("chunk_overlap"))));
+            }
+            Map<String, Object> metadata = new HashMap<>(anchor.getMetadata());
+            metadata.put("expanded_from", window[0]);
+            metadata.put("expanded_to", window[1]);
+            expanded.add(new Document(anchor.getId(), DocumentChunker.stitch(run), metadata));
+        }
+        return expanded;
+    }
+
+    private static int touchingWindow(List<Document> anchors, List<int[]> windows, String parentId, int from, int to) {
+        for (int i = 0; i < anchors.size(); i++) {
+            int[] window = windows.get(i);
+            if (window != null && parentId.equals(anchors.get(i).getMetadata().get("parent_id"))
+                    && from <= window[1] + 1 && to >= window[0] - 1) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int intValue(Object value) {
+        return value instanceof Number number ? number.intValue() : -1;
+    }
+
+    /**
+     * Searches the question and its sub-questions concurrently. The original
+     * question's results are always used; the others are waited for at most as long
+     * as the original search took, so the fan-out costs no more than one extra
+     * search round trip of wall time.
+     */
+    private List<Document> multiQuerySearch(String query, String section, String subsection, int topK) {
+        RagProperties.MultiQuery settings = ragProperties.getMultiQuery();
+        List<String> variants = queryVariants(query, settings.getMaxVariants(), settings.getMinVariantWords());
+        if (variants.size() == 1) {
+            return vectorSearch(query, section, subsection, topK);
+        }
+
+        // One batched embedding call, which the caching client then serves the store's
+        // per-variant lookups from; without the cache it would only add a round trip
+        if (embeddingClient instanceof CachingEmbeddingClient) {
+            embeddingClient.embed(variants);
+        }
+
+        // Plain executor tasks rather than supplyAsync, so cancel(true) interrupts a search
+        // still waiting for a vector-store permit. A query already running in the database
+        // is not aborted by the interrupt and holds its permit until it returns.
+        long start = System.nanoTime();
+        List<Future<List<Document>>> searches = variants.stream()
+            .map(variant -> upstreamExecutor.submit(() -> vectorSearch(variant, section, subsection, topK)))
+            .toList();
+
+        List<List<Document>> rankings = new ArrayList<>(variants.size());
+        try {
+            rankings.add(searches.get(0).get());
+        } catch (ExecutionException e) {
+            searches.forEach(search -> search.cancel(true));
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            searches.forEach(search -> search.cancel(true));
+            throw new CancellationException("Interrupted during multi-query retrieval");
+        }
+
+        long deadline = System.nanoTime() + (System.nanoTime() - start);
+        int dropped = 0;
+        for (Future<List<Document>> search : searches.subList(1, searches.size())) {
+            try {
+                rankings.add(search.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException | ExecutionException e) {
+                search.cancel(true);
+                dropped++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                searches.forEach(pending -> pending.cancel(true));
+                break;
+            }
+        }
+
+        List<Document> fused = fuse(rankings, ragProperties.getHybrid().getRrfK(), topK);
+        log.debug("Multi-query retrieval: variants={}, dropped={}, fused={}", variants.size(), dropped, fused.size());
+        return fused;
+    }
+
+    /**
+     * The question itself followed by its distinct clauses, split on conjunctions
+     * and punctuation. Only clauses of at least minWords words, or of two or more
+     * words opening like a question ("what about dividends"), are searched; list
+     * items such as "bonus" are left to the whole question.
+     */
+    static List<String> queryVariants(String query, int maxVariants, int minWords) {
+        Set<String> variants = new LinkedHashSet<>();
+        variants.add(query.trim());
+        for (String part : QUERY_SPLIT.split(query)) {
+            String variant = part.trim();
+            int words = variant.isEmpty() ? 0 : variant.split("\\s+").length;
+            boolean question = words >= 2 && QUESTION_START.matcher(variant).find();
+            if ((words >= minWords || question) && variants.size() < maxVariants) {
+                variants.add(variant);
+            }
+        }
+        return new ArrayList<>(variants);
+    }
+
+    /**
+     * Candidates of an adaptive search, how it ended (early_stop, exhausted, filled or
+     * type_fill), the neighbours it asked the store for in total and the searches issued
+     */
+    public record AdaptiveResult(List<Document> documents, String outcome, int requested, int searches) {
+    }
+
+    /**
+     * Reciprocal rank fusion: each ranking contributes 1 / (k + rank) per document,
+     * documents are merged by id and the fused score is stored as "rrf_score"
+     */
+    static List<Document> fuse(List<List<Document>> rankings, int k, int limit) {
+        Map<String, Double> scores = new HashMap<>();
+        Map<String, Document> byId = new LinkedHashMap<>();
+        for (List<Document> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                Document doc = ranking.get(rank);
+                scores.merge(doc.getId(), 1.0 / (k + rank + 1), Double::sum);
+                byId.putIfAbsent(doc.getId(), doc);
+            }
+        }
+        return byId.values().stream()
+            .sorted(Comparator.comparingDouble((Document doc) -> scores.get(doc.getId())).reversed())
+            .limit(limit)
+            .peek(doc -> doc.getMetadata().put("rrf_score", scores.get(doc.getId())))
+            .toList();
+    }
+}
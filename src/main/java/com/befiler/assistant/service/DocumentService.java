@@ -1,14 +1,24 @@
 package com.befiler.assistant.service;
 
+import com.befiler.assistant.repository.VectorStoreRepository;
+import com.befiler.assistant.repository.VectorStoreRepository.EntryKey;
+import com.befiler.assistant.repository.VectorStoreRepository.SourceEntry;
+import com.befiler.assistant.repository.VectorStoreRepository.StoredDocument;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -16,6 +26,10 @@ import java.util.Map;
 public class DocumentService {
 
     private final VectorStore vectorStore;
+    private final BatchDocumentWriter batchDocumentWriter;
+    private final VectorStoreRepository vectorStoreRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DocumentChunker documentChunker;
 
     /**
      * Original method - keeping for backward compatibility
@@ -35,8 +49,8 @@ public class DocumentService {
                 metadata.putAll(additionalMetadata);
             }
 
-            Document doc = new Document(content, metadata);
-            vectorStore.add(List.of(doc));
+            batchDocumentWriter.write(newDocuments(content, metadata));
+            eventPublisher.publishEvent(new KnowledgeSectionChangedEvent(section, subsection));
 
             log.info("Document added: section={} subsection={} type={}",
                      metadata.get("section"), metadata.get("subsection"), type);
@@ -51,15 +65,9 @@ public class DocumentService {
      * Add a general information paragraph
      */
     public void addGeneralInfo(String content, String section, String subsection) {
-        Map<String, Object> metadata = new HashMap<>();
-        metadata.put("type", "general_info");
-        metadata.put("section", section);
-        metadata.put("subsection", subsection != null ? subsection : "");
-        metadata.put("priority", "high");
-        
-        Document doc = new Document(content, metadata);
-        vectorStore.add(List.of(doc));
-        
+        batchDocumentWriter.write(generalInfoDocuments(content, section, subsection));
+        eventPublisher.publishEvent(new KnowledgeSectionChangedEvent(section, subsection));
+
         log.info("Added general info: section={}, subsection={}", section, subsection);
     }
 
@@ -67,47 +75,150 @@ public class DocumentService {
      * Add a Q&A pair
      */
     public void addQAPair(String question, String answer, String section, String subsection) {
-        String content = String.format("Question: %s\n\nAnswer: %s", question, answer);
-        
-        Map<String, Object> metadata = new HashMap<>();
-        metadata.put("type", "qa_pair");
-        metadata.put("section", section);
-        metadata.put("subsection", subsection != null ? subsection : "");
-        metadata.put("question", question);
-        metadata.put("priority", "medium");
-        
-        Document doc = new Document(content, metadata);
-        vectorStore.add(List.of(doc));
-        
+        Document doc = qaPairDocument(question, answer, section, subsection);
+        batchDocumentWriter.write(List.of(doc));
+        eventPublisher.publishEvent(new KnowledgeSectionChangedEvent(section, subsection));
+
         log.info("Added Q&A pair: section={}, subsection={}", section, subsection);
     }
 
     /**
-     * Add structured tax knowledge from your format
+     * Add structured tax knowledge from your format.
+     * The general information paragraph and all Q&A pairs are embedded and
+     * inserted together in batches.
      */
-    public void addTaxKnowledgeSection(String sectionName, String generalInfo, 
+    public void addTaxKnowledgeSection(String sectionName, String generalInfo,
                                      List<QAPair> qaPairs, String subsection) {
-        
-        // Add the general information paragraph
-        addGeneralInfo(generalInfo, sectionName, subsection);
-        
-        // Add each Q&A pair
+
+        batchDocumentWriter.write(buildTaxKnowledgeSection(sectionName, generalInfo, qaPairs, subsection));
+        eventPublisher.publishEvent(new KnowledgeSectionChangedEvent(sectionName, subsection));
+
+        log.info("Added complete tax knowledge section: {}, subsection: {}, {} Q&A pairs",
+                sectionName, subsection, qaPairs.size());
+    }
+
+    /**
+     * Build (without storing) the documents for a tax section: the general
+     * information paragraph (one document per chunk) followed by one document per Q&A pair
+     */
+    public List<Document> buildTaxKnowledgeSection(String sectionName, String generalInfo,
+                                                   List<QAPair> qaPairs, String subsection) {
+        List<Document> documents = new ArrayList<>(generalInfoDocuments(generalInfo, sectionName, subsection));
         for (QAPair qa : qaPairs) {
-            addQAPair(qa.getQuestion(), qa.getAnswer(), sectionName, subsection);
+            documents.add(qaPairDocument(qa.getQuestion(), qa.getAnswer(), sectionName, subsection));
         }
-        
-        log.info("Added complete tax knowledge section: {}, subsection: {}, {} Q&A pairs", 
-                sectionName, subsection, qaPairs.size());
+        return documents;
+    }
+
+    /**
+     * Create or replace knowledge entries. Each entry has a stable id derived from its
+     * section, subsection and question (or the caller's key, for other content), so a corrected
+     * entry replaces the stored one instead of competing with it in retrieval.
+     * All entries are embedded together and swapped in with one transaction: rows
+     * written, plus deletion of the entries' previous rows (extra chunks, and Q&A rows
+     * stored before entry ids with the same question). Entries loaded from the
+     * knowledge files come back on the next reload unless the file is changed too.
+     */
+    public WriteResult upsertEntries(List<KnowledgeEntry> entries) {
+        // Reject the whole request before anything is embedded
+        Map<String, List<Document>> documentsByEntry = new LinkedHashMap<>();
+        List<EntryKey> keys = new ArrayList<>(entries.size());
+        for (KnowledgeEntry entry : entries) {
+            String entryId = entryId(entry);
+            if (documentsByEntry.containsKey(entryId)) {
+                throw new IllegalArgumentException("More than one entry for section=" + entry.section()
+                    + ", subsection=" + entry.subsection() + ", key=" + entryKey(entry));
+            }
+            keys.add(new EntryKey(entryId, entry.section(), entry.subsection(), entry.question()));
+            documentsByEntry.put(entryId, withEntryId(entryDocuments(entry), entryId, entryKey(entry)));
+        }
+
+        List<Document> documents = documentsByEntry.values().stream().flatMap(List::stream).toList();
+        Set<String> writtenIds = new HashSet<>();
+        documents.forEach(doc -> writtenIds.add(doc.getId()));
+        List<SourceEntry> previous = vectorStoreRepository.findEntryRows(keys);
+        List<String> staleIds = previous.stream()
+            .map(SourceEntry::id)
+            .filter(id -> !writtenIds.contains(id))
+            .toList();
+        batchDocumentWriter.swap(documents, staleIds);
+
+        Set<String> sections = new LinkedHashSet<>();
+        entries.forEach(entry -> sections.add(entry.section()));
+        previous.forEach(row -> sections.add(row.section()));
+        sections.forEach(section -> eventPublisher.publishEvent(new KnowledgeSectionChangedEvent(section, null)));
+
+        log.info("Upserted {} entries: {} documents written, {} stale removed",
+                documentsByEntry.size(), documents.size(), staleIds.size());
+        return new WriteResult(new ArrayList<>(documentsByEntry.keySet()), documents.size(), staleIds.size());
+    }
+
+    /**
+     * Delete documents by id; an entry id also deletes the entry's chunks
+     */
+    public WriteResult deleteByIds(List<String> ids) {
+        List<SourceEntry> rows = vectorStoreRepository.findByIdsOrEntryIds(ids);
+        List<String> rowIds = rows.stream().map(SourceEntry::id).toList();
+        batchDocumentWriter.swap(List.of(), rowIds);
+        rows.stream().map(SourceEntry::section).distinct().forEach(section ->
+            eventPublisher.publishEvent(new KnowledgeSectionChangedEvent(section, null)));
+
+        log.info("Deleted {} documents for {} ids", rowIds.size(), ids.size());
+        return new WriteResult(rowIds, 0, rowIds.size());
+    }
+
+    /**
+     * Delete a whole section, or one subsection of it
+     */
+    public WriteResult deleteSection(String section, String subsection) {
+        List<String> deleted = batchDocumentWriter.deleteSection(section, subsection);
+        if (!deleted.isEmpty()) {
+            eventPublisher.publishEvent(new KnowledgeSectionChangedEvent(section, subsection));
+        }
+        return new WriteResult(deleted, 0, deleted.size());
+    }
+
+    /**
+     * Make the stored documents of a source match the given set, using content hashes:
+     * unchanged documents are left alone (no embedding call), stale ones are deleted
+     * and only new or changed ones are embedded and inserted.
+     */
+    public SyncResult syncSource(String source, List<Document> documents) {
+        SourceSync sync = startSync(source);
+        sync.add(documents);
+        return sync.finish();
+    }
+
+    /**
+     * Incremental form of syncSource for corpora too large to build in memory:
+     * batches are compared with the stored hashes as they arrive, so only the hashes
+     * seen so far are retained, and finish() removes whatever was not seen.
+     * A sync that is abandoned without finish() inserts but never deletes.
+     */
+    public SourceSync startSync(String source) {
+        return new SourceSync(source, vectorStoreRepository.findContentHashesBySource(source));
     }
 
     /**
      * Batch add multiple documents with same metadata
      */
-    public void addDocumentsBatch(List<String> contents, String type, String section, 
+    public void addDocumentsBatch(List<String> contents, String type, String section,
                                 String subsection, Map<String, Object> additionalMetadata) {
-        
-        List<Document> documents = contents.stream()
-            .map(content -> {
+
+        List<Document> documents = buildDocuments(contents, type, section, subsection, additionalMetadata);
+        writeDocuments(documents, section, subsection);
+        log.info("Added {} documents in batch: section={}, subsection={}, type={}",
+                documents.size(), section, subsection, type);
+    }
+
+    /**
+     * Build (without storing) documents that share the same metadata; long contents
+     * become several chunk documents
+     */
+    public List<Document> buildDocuments(List<String> contents, String type, String section,
+                                         String subsection, Map<String, Object> additionalMetadata) {
+        return contents.stream()
+            .flatMap(content -> {
                 Map<String, Object> metadata = new HashMap<>();
                 metadata.put("section", section);
                 metadata.put("subsection", subsection != null ? subsection : "");
@@ -115,13 +226,244 @@ public class DocumentService {
                 if (additionalMetadata != null) {
                     metadata.putAll(additionalMetadata);
                 }
-                return new Document(content, metadata);
+                return newDocuments(content, metadata).stream();
             })
             .toList();
-            
-        vectorStore.add(documents);
-        log.info("Added {} documents in batch: section={}, subsection={}, type={}", 
-                documents.size(), section, subsection, type);
+    }
+
+    /**
+     * Embed and store prebuilt documents of one section
+     */
+    public void writeDocuments(List<Document> documents, String section, String subsection) {
+        batchDocumentWriter.write(documents);
+        eventPublisher.publishEvent(new KnowledgeSectionChangedEvent(section, subsection));
+    }
+
+    List<Document> generalInfoDocuments(String content, String section, String subsection) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("type", "general_info");
+        metadata.put("section", section);
+        metadata.put("subsection", subsection != null ? subsection : "");
+        metadata.put("priority", "high");
+        return newDocuments(content, metadata);
+    }
+
+    Document qaPairDocument(String question, String answer, String section, String subsection) {
+        String content = String.format("Question: %s\n\nAnswer: %s", question, answer);
+
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("type", "qa_pair");
+        metadata.put("section", section);
+        metadata.put("subsection", subsection != null ? subsection : "");
+        metadata.put("question", question);
+        metadata.put("priority", "medium");
+        return newDocument(content, metadata);
+    }
+
+    /**
+     * The document for content, or one document per chunk when it is too long to embed
+     * well as a whole. Q&A pairs are never split: the answer only makes sense with its question.
+     * Chunks record their parent (the id the whole content would have had), position and
+     * overlap, so retrieval can stitch neighbours back together. A chunk's hash covers the
+     * parent's hash and its position, so editing the text re-embeds every chunk of it.
+     */
+    private List<Document> newDocuments(String content, Map<String, Object> metadata) {
+        if ("qa_pair".equals(metadata.get("type"))) {
+            return List.of(newDocument(content, metadata));
+        }
+        List<DocumentChunker.Chunk> chunks = documentChunker.split(content);
+        if (chunks.size() == 1) {
+            return List.of(newDocument(content, metadata));
+        }
+
+        String type = (String) metadata.get("type");
+        String section = (String) metadata.get("section");
+        String subsection = (String) metadata.get("subsection");
+        String parentHash = DocumentIds.contentHash(type, section, subsection, content);
+        String parentId = DocumentIds.fromContentHash(parentHash);
+        List<Document> documents = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            DocumentChunker.Chunk chunk = chunks.get(i);
+            Map<String, Object> chunkMetadata = new HashMap<>(metadata);
+            chunkMetadata.put("parent_id", parentId);
+            chunkMetadata.put("chunk_index", i);
+            chunkMetadata.put("chunk_count", chunks.size());
+            chunkMetadata.put("chunk_overlap", chunk.overlapChars());
+            String hash = DocumentIds.contentHash(type, section, subsection,
+                parentHash + "\u0000" + i + "\u0000" + chunk.text());
+            chunkMetadata.put("content_hash", hash);
+            documents.add(new Document(DocumentIds.fromContentHash(hash), chunk.text(), chunkMetadata));
+        }
+        return documents;
+    }
+
+    /**
+     * Q&A pairs are keyed by their question; other content needs an explicit key, since
+     * a section can hold several paragraphs of the same type
+     *
+     * @throws IllegalArgumentException for non-Q&A content without a key
+     */
+    static String entryId(KnowledgeEntry entry) {
+        String key = entryKey(entry);
+        if (key == null || key.isBlank()) {
+            throw new IllegalArgumentException("Entries without a question need a key: section="
+                + entry.section() + ", subsection=" + entry.subsection());
+        }
+        String type = entry.question() != null ? "qa_pair" : entry.type();
+        return DocumentIds.entryId(type, entry.section(), entry.subsection(), key);
+    }
+
+    private static String entryKey(KnowledgeEntry entry) {
+        return entry.question() != null ? entry.question() : entry.key();
+    }
+
+    private List<Document> entryDocuments(KnowledgeEntry entry) {
+        if (entry.question() != null) {
+            return List.of(qaPairDocument(entry.question(), entry.content(), entry.section(), entry.subsection()));
+        }
+        if ("general_info".equals(entry.type())) {
+            return generalInfoDocuments(entry.content(), entry.section(), entry.subsection());
+        }
+        return buildDocuments(List.of(entry.content()), entry.type(), entry.section(), entry.subsection(), null);
+    }
+
+    /**
+     * Re-key an entry's documents: the entry id for a single document, ids derived
+     * from it for chunks; every row records the entry id
+     */
+    private static List<Document> withEntryId(List<Document> documents, String entryId, String key) {
+        List<Document> keyed = new ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            Document doc = documents.get(i);
+            Map<String, Object> metadata = new HashMap<>(doc.getMetadata());
+            metadata.put("entry_id", entryId);
+            metadata.put("entry_key", key);
+            metadata.put("source", "admin");
+            String id = documents.size() == 1 ? entryId : DocumentIds.fromContentHash(entryId + "\u0000" + i);
+            keyed.add(new Document(id, doc.getContent(), metadata));
+        }
+        return keyed;
+    }
+
+    /**
+     * Stamp the content hash and derive the id from it, so writing identical
+     * content twice updates one row instead of adding a duplicate
+     */
+    private Document newDocument(String content, Map<String, Object> metadata) {
+        String hash = DocumentIds.contentHash((String) metadata.get("type"), (String) metadata.get("section"),
+            (String) metadata.get("subsection"), content);
+        metadata.put("content_hash", hash);
+        return new Document(DocumentIds.fromContentHash(hash), content, metadata);
+    }
+
+    /**
+     * Rows stored before content hashing whose content matches a desired document
+     */
+    private List<String> findLegacyDuplicates(Set<String> desiredHashes) {
+        List<String> duplicates = new ArrayList<>();
+        for (StoredDocument legacy : vectorStoreRepository.findDocumentsWithoutContentHash()) {
+            Map<String, Object> metadata = legacy.metadata();
+            String hash = DocumentIds.contentHash((String) metadata.get("type"), (String) metadata.get("section"),
+                (String) metadata.get("subsection"), legacy.content());
+            if (desiredHashes.contains(hash)) {
+                duplicates.add(legacy.id());
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * Sync of one source in progress; see startSync
+     */
+    public final class SourceSync {
+
+        private final String source;
+        private final Map<String, String> stored;
+        private final Set<String> storedHashes;
+        private final Set<String> seenHashes = new HashSet<>();
+        private final Set<String> insertedIds = new HashSet<>();
+        private final Set<String> changedSections = new LinkedHashSet<>();
+
+        private SourceSync(String source, Map<String, String> stored) {
+            this.source = source;
+            this.stored = stored;
+            this.storedHashes = new HashSet<>(stored.values());
+        }
+
+        /**
+         * Embed and insert the new or changed documents of this batch
+         */
+        public void add(List<Document> documents) {
+            List<Document> toInsert = new ArrayList<>();
+            for (Document doc : documents) {
+                doc.getMetadata().put("source", source);
+                String hash = (String) doc.getMetadata().get("content_hash");
+                if (seenHashes.add(hash) && !storedHashes.contains(hash)) {
+                    toInsert.add(doc);
+                }
+            }
+            batchDocumentWriter.write(toInsert);
+            toInsert.forEach(doc -> {
+                insertedIds.add(doc.getId());
+                changedSections.add((String) doc.getMetadata().get("section"));
+            });
+        }
+
+        /**
+         * Delete the stored documents that were not seen and announce the changed sections
+         */
+        public SyncResult finish() {
+            List<String> staleIds = new ArrayList<>();
+            stored.forEach((id, hash) -> {
+                if (hash == null || !seenHashes.contains(hash)) {
+                    staleIds.add(id);
+                }
+            });
+            staleIds.addAll(findLegacyDuplicates(seenHashes));
+            // Never delete a row this sync has just written
+            staleIds.removeAll(insertedIds);
+
+            if (!staleIds.isEmpty()) {
+                vectorStore.delete(staleIds);
+                // Stale rows are not loaded, so their sections are unknown; invalidate everything
+                changedSections.add(null);
+            }
+            changedSections.forEach(section ->
+                eventPublisher.publishEvent(new KnowledgeSectionChangedEvent(section, null)));
+
+            SyncResult result = new SyncResult(seenHashes.size() - insertedIds.size(), insertedIds.size(),
+                staleIds.size());
+            log.info("Synced source={}: unchanged={}, inserted={}, deleted={}",
+                    source, result.unchanged(), result.inserted(), result.deleted());
+            return result;
+        }
+    }
+
+    /**
+     * A knowledge entry to upsert: a Q&A pair when question is set (content is the
+     * answer), otherwise content of the given type (general_info when not given),
+     * identified within its section/subsection by key
+     */
+    public record KnowledgeEntry(String type, String section, String subsection, String question, String key,
+                                 String content) {
+
+        public KnowledgeEntry {
+            if (type == null || type.isBlank()) {
+                type = question != null ? "qa_pair" : "general_info";
+            }
+        }
+    }
+
+    /**
+     * Outcome of an admin write: the entry or document ids affected, rows written and rows deleted
+     */
+    public record WriteResult(List<String> ids, int written, int deleted) {
+    }
+
+    /**
+     * Outcome of a source sync
+     */
+    public record SyncResult(int unchanged, int inserted, int deleted) {
     }
 
     /**
@@ -0,0 +1,344 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.IngestionProperties;
+import com.befiler.assistant.config.RagProperties;
+import com.befiler.assistant.repository.VectorStoreRepository;
+import com.befiler.assistant.repository.VectorStoreRepository.StoredDocument;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Index of the stored Q&A questions for answering common questions without
+ * retrieval or generation. A query matches on its normalized text, or on a
+ * question embedding above the configured similarity, within the requested section.
+ * Built after the knowledge loader. Section changes are collected for
+ * faq.refresh-delay and then applied in the background, re-reading only the changed
+ * sections; question embeddings are carried over so only new questions are embedded.
+ * Embeddings are kept per section in one contiguous block, so a scoped query scores
+ * only its own section.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@RequiredArgsConstructor
+@Slf4j
+public class FaqIndex implements ApplicationRunner {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern EDGE_PUNCTUATION = Pattern.compile("^[\\p{Punct}\\s]+|[\\p{Punct}\\s]+$");
+    private static final String ANSWER_MARKER = "\n\nAnswer: ";
+
+    private final VectorStoreRepository vectorStoreRepository;
+    private final LimitedEmbeddingClient embeddingClient;
+    private final UpstreamLimiters upstreamLimiters;
+    private final RagProperties ragProperties;
+    private final IngestionProperties ingestionProperties;
+
+    // Refreshes run one at a time, off the thread that published the change
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofVirtual().name("faq-refresh").factory());
+    private final Set<String> pendingSections = new LinkedHashSet<>();
+    private boolean rebuildPending;
+    private boolean refreshScheduled;
+
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), Map.of());
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (isEnabled()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Queue the section for the next refresh; the first change schedules it, later
+     * ones within faq.refresh-delay join it. A change without a section re-reads everything.
+     */
+    @EventListener
+    public void onSectionChanged(KnowledgeSectionChangedEvent event) {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (pendingSections) {
+            if (event.section() != null) {
+                pendingSections.add(event.section());
+            } else {
+                rebuildPending = true;
+            }
+            if (!refreshScheduled) {
+                refreshScheduled = true;
+                refresher.schedule(this::refreshPending,
+                    ragProperties.getFaq().getRefreshDelay().toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return ragProperties.getFaq().isEnabled();
+    }
+
+    /**
+     * Curated answer for the same question, ignoring case, spacing and edge punctuation
+     */
+    public Optional<Match> exactMatch(String query, String section, String subsection) {
+        List<Entry> candidates = snapshot.byQuestion().get(normalize(query));
+        if (candidates == null) {
+            return Optional.empty();
+        }
+        return candidates.stream()
+            .filter(entry -> inScope(entry, section, subsection))
+            .findFirst()
+            .map(entry -> entry.toMatch(1.0f));
+    }
+
+    /**
+     * Curated answer for the most similar stored question above the threshold
+     */
+    public Optional<Match> similarMatch(float[] queryEmbedding, String section, String subsection) {
+        return similarMatch(queryEmbedding, section, subsection, ragProperties.getFaq().getSimilarityThreshold());
+    }
+
+    /**
+     * Same as similarMatch, with a caller-chosen similarity threshold
+     */
+    public Optional<Match> similarMatch(float[] queryEmbedding, String section, String subsection, double threshold) {
+        Snapshot current = snapshot;
+        Match best = null;
+        if (section != null && !section.isBlank()) {
+            SectionQuestions questions = current.bySection().get(section);
+            if (questions != null) {
+                best = questions.best(queryEmbedding, subsection, (float) threshold);
+            }
+        } else {
+            for (SectionQuestions questions : current.bySection().values()) {
+                Match match = questions.best(queryEmbedding, subsection,
+                    best != null ? best.similarity() : (float) threshold);
+                if (match != null) {
+                    best = match;
+                }
+            }
+        }
+        return Optional.ofNullable(best);
+    }
+
+    /**
+     * Re-read every Q&A pair; used at startup
+     */
+    synchronized void rebuild() {
+        try {
+            List<StoredDocument> qaPairs = upstreamLimiters.vectorStore().call(
+                () -> vectorStoreRepository.findQaPairs());
+            apply(qaPairs, null);
+        } catch (Exception e) {
+            log.warn("FAQ index rebuild failed, keeping the previous index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Re-read the Q&A pairs of the given sections and swap them in; other sections are kept
+     */
+    synchronized void refresh(Set<String> sections) {
+        try {
+            List<StoredDocument> qaPairs = upstreamLimiters.vectorStore().call(
+                () -> vectorStoreRepository.findQaPairs(sections));
+            apply(qaPairs, sections);
+        } catch (Exception e) {
+            log.warn("FAQ index refresh of {} failed, keeping the previous index: {}", sections, e.getMessage());
+        }
+    }
+
+    private void refreshPending() {
+        Set<String> sections;
+        boolean everything;
+        synchronized (pendingSections) {
+            sections = new LinkedHashSet<>(pendingSections);
+            everything = rebuildPending;
+            pendingSections.clear();
+            rebuildPending = false;
+            refreshScheduled = false;
+        }
+        if (everything) {
+            rebuild();
+        } else {
+            refresh(sections);
+        }
+    }
+
+    /**
+     * Build entries for the rows read and publish a new snapshot; sections null means
+     * the rows are the whole index, otherwise they replace only those sections
+     */
+    private void apply(List<StoredDocument> qaPairs, Set<String> sections) {
+        Snapshot current = snapshot;
+        Map<String, float[]> known = new HashMap<>();
+        current.bySection().values().forEach(questions -> questions.entries()
+            .forEach(entry -> known.put(normalize(entry.question()), entry.embedding())));
+
+        // Normalized key -> question as written, embedded like user queries are
+        Map<String, String> missing = new LinkedHashMap<>();
+        for (StoredDocument doc : qaPairs) {
+            String key = normalize(question(doc));
+            if (!key.isEmpty() && !known.containsKey(key)) {
+                missing.putIfAbsent(key, question(doc));
+            }
+        }
+        List<String> keys = new ArrayList<>(missing.keySet());
+        int batchSize = Math.max(1, ingestionProperties.getEmbeddingBatchSize());
+        for (int from = 0; from < keys.size(); from += batchSize) {
+            List<String> batch = keys.subList(from, Math.min(from + batchSize, keys.size()));
+            List<List<Double>> embeddings = embeddingClient.embed(batch.stream().map(missing::get).toList());
+            for (int i = 0; i < batch.size(); i++) {
+                known.put(batch.get(i), VectorMath.toNormalizedFloats(embeddings.get(i)));
+            }
+        }
+
+        Map<String, List<Entry>> entriesBySection = new HashMap<>();
+        if (sections != null) {
+            current.bySection().forEach((section, questions) -> {
+                if (!sections.contains(section)) {
+                    entriesBySection.put(section, questions.entries());
+                }
+            });
+        }
+        int read = 0;
+        for (StoredDocument doc : qaPairs) {
+            String question = question(doc);
+            String answer = answer(doc.content());
+            String key = normalize(question);
+            if (key.isEmpty() || answer == null) {
+                continue;
+            }
+            String section = (String) doc.metadata().get("section");
+            Entry entry = new Entry(question, answer, section, (String) doc.metadata().get("subsection"),
+                known.get(key));
+            entriesBySection.computeIfAbsent(section != null ? section : "", s -> new ArrayList<>()).add(entry);
+            read++;
+        }
+
+        Map<String, SectionQuestions> bySection = new HashMap<>();
+        Map<String, List<Entry>> byQuestion = new HashMap<>();
+        int total = 0;
+        for (Map.Entry<String, List<Entry>> section : entriesBySection.entrySet()) {
+            bySection.put(section.getKey(), SectionQuestions.of(section.getValue()));
+            for (Entry entry : section.getValue()) {
+                byQuestion.computeIfAbsent(normalize(entry.question()), k -> new ArrayList<>()).add(entry);
+            }
+            total += section.getValue().size();
+        }
+        snapshot = new Snapshot(byQuestion, bySection);
+        log.info("FAQ index {}: {} questions read, {} newly embedded, {} in total",
+                sections == null ? "built" : "refreshed " + sections, read, missing.size(), total);
+    }
+
+    static boolean inScope(Entry entry, String section, String subsection) {
+        if (section != null && !section.isBlank() && !section.equals(entry.section())) {
+            return false;
+        }
+        return subsection == null || subsection.isBlank()
+            || entry.subsection() == null || entry.subsection().isEmpty()
+            || subsection.equals(entry.subsection());
+    }
+
+    private static String question(StoredDocument doc) {
+        Object question = doc.metadata().get("question");
+        return question != null ? question.toString() : "";
+    }
+
+    /**
+     * Answer part of a Q&A document, as written by DocumentService
+     */
+    private static String answer(String content) {
+        int start = content.indexOf(ANSWER_MARKER);
+        return start < 0 ? null : content.substring(start + ANSWER_MARKER.length());
+    }
+
+    static String normalize(String text) {
+        String collapsed = WHITESPACE.matcher(text.toLowerCase(Locale.ROOT)).replaceAll(" ");
+        return EDGE_PUNCTUATION.matcher(collapsed).replaceAll("");
+    }
+
+    record Entry(String question, String answer, String section, String subsection, float[] embedding) {
+
+        Match toMatch(float similarity) {
+            return new Match(question, answer, section, subsection, similarity);
+        }
+    }
+
+    /**
+     * One section's entries with their embeddings laid out row after row, so scoring
+     * a query is a single pass over one array
+     */
+    private record SectionQuestions(List<Entry> entries, float[] embeddings, int dimensions) {
+
+        static SectionQuestions of(List<Entry> entries) {
+            int dimensions = entries.isEmpty() || entries.get(0).embedding() == null
+                ? 0
+                : entries.get(0).embedding().length;
+            float[] embeddings = new float[entries.size() * dimensions];
+            for (int i = 0; i < entries.size(); i++) {
+                float[] embedding = entries.get(i).embedding();
+                if (embedding != null && embedding.length == dimensions) {
+                    System.arraycopy(embedding, 0, embeddings, i * dimensions, dimensions);
+                }
+            }
+            return new SectionQuestions(List.copyOf(entries), embeddings, dimensions);
+        }
+
+        /**
+         * Best entry in scope scoring at least threshold, or null
+         */
+        Match best(float[] query, String subsection, float threshold) {
+            if (query.length != dimensions) {
+                return null;
+            }
+            Entry best = null;
+            float bestScore = threshold;
+            for (int i = 0; i < entries.size(); i++) {
+                int offset = i * dimensions;
+                float score = 0;
+                for (int d = 0; d < dimensions; d++) {
+                    score += embeddings[offset + d] * query[d];
+                }
+                if (score >= bestScore && inScope(entries.get(i), null, subsection)) {
+                    best = entries.get(i);
+                    bestScore = score;
+                }
+            }
+            return best == null ? null : best.toMatch(bestScore);
+        }
+    }
+
+    private record Snapshot(Map<String, List<Entry>> byQuestion, Map<String, SectionQuestions> bySection) {
+    }
+
+    /**
+     * Stored question that matched and its curated answer
+     */
+    public record Match(String question, String answer, String section, String subsection, float similarity) {
+    }
+}
@@ -0,0 +1,209 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.IngestionProperties;
+import com.befiler.assistant.model.IngestionJobStatus;
+import com.befiler.assistant.model.IngestionJobStatus.State;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs bulk document ingestion outside the HTTP request.
+ * Jobs go to a bounded queue served by a fixed number of workers; when the queue
+ * is full, submission is rejected so callers back off. Each job is written in
+ * chunks, and a chunk that fails on upstream throttling is retried with jittered
+ * exponential backoff without redoing the chunks before it.
+ */
+@Service
+@Slf4j
+public class IngestionJobService {
+
+    private final DocumentService documentService;
+    private final IngestionProperties.Jobs settings;
+    private final ThreadPoolExecutor workers;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    private final Counter documentsIngested;
+    private final Counter embeddingTokens;
+    private final Counter chunkRetries;
+    private final Timer jobDuration;
+
+    public IngestionJobService(DocumentService documentService,
+                               IngestionProperties ingestionProperties,
+                               MeterRegistry meterRegistry) {
+        this.documentService = documentService;
+        this.settings = ingestionProperties.getJobs();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(settings.getWorkers(), settings.getWorkers(),
+            0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(settings.getQueueCapacity()),
+            runnable -> {
+                Thread thread = new Thread(runnable, "ingestion-worker-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+
+        this.documentsIngested = Counter.builder("rag.ingestion.documents")
+            .description("Documents embedded and stored by ingestion jobs")
+            .register(meterRegistry);
+        this.embeddingTokens = Counter.builder("rag.ingestion.embedding.tokens")
+            .description("Estimated tokens sent for embedding by ingestion jobs")
+            .register(meterRegistry);
+        this.chunkRetries = Counter.builder("rag.ingestion.chunk.retries")
+            .description("Chunk writes retried after transient upstream failures")
+            .register(meterRegistry);
+        this.jobDuration = Timer.builder("rag.ingestion.job.duration")
+            .register(meterRegistry);
+        meterRegistry.gauge("rag.ingestion.queue.depth", workers, w -> w.getQueue().size());
+    }
+
+    /**
+     * Queue a batch of documents sharing the same metadata
+     *
+     * @throws RejectedExecutionException when the job queue is full
+     */
+    public IngestionJobStatus submitDocuments(List<String> contents, String type, String section,
+                                              String subsection, Map<String, Object> metadata) {
+        evictExpired();
+
+        Job job = new Job(UUID.randomUUID().toString(), contents.size());
+        jobs.put(job.id, job);
+        try {
+            workers.execute(() -> run(job, contents, type, section, subsection, metadata));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            throw e;
+        }
+        log.info("Ingestion job queued: id={}, documents={}, section={}", job.id, contents.size(), section);
+        return job.snapshot();
+    }
+
+    public Optional<IngestionJobStatus> getStatus(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(Job::snapshot);
+    }
+
+    private void run(Job job, List<String> contents, String type, String section,
+                     String subsection, Map<String, Object> metadata) {
+        job.startedAt = Instant.now();
+        job.state = State.RUNNING;
+        long start = System.nanoTime();
+
+        for (int from = 0; from < contents.size(); from += settings.getChunkSize()) {
+            List<String> chunk = contents.subList(from, Math.min(from + settings.getChunkSize(), contents.size()));
+            try {
+                writeChunkWithRetry(job, documentService.buildDocuments(chunk, type, section, subsection, metadata),
+                    section, subsection);
+                job.processed.addAndGet(chunk.size());
+                documentsIngested.increment(chunk.size());
+                embeddingTokens.increment(chunk.stream().mapToInt(BatchDocumentWriter::estimateTokens).sum());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                job.failed.addAndGet(contents.size() - job.processed.get() - job.failed.get());
+                job.error = "Interrupted";
+                break;
+            } catch (Exception e) {
+                log.error("Ingestion job {} failed chunk at offset {}", job.id, from, e);
+                job.failed.addAndGet(chunk.size());
+                job.error = e.getMessage();
+            }
+        }
+
+        job.finishedAt = Instant.now();
+        jobDuration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (job.failed.get() == 0) {
+            job.state = State.SUCCEEDED;
+        } else {
+            job.state = job.processed.get() > 0 ? State.PARTIALLY_FAILED : State.FAILED;
+        }
+        log.info("Ingestion job finished: id={}, state={}, processed={}, failed={}, retries={}",
+                job.id, job.state, job.processed.get(), job.failed.get(), job.retries.get());
+    }
+
+    private void writeChunkWithRetry(Job job, List<Document> documents, String section, String subsection)
+            throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                documentService.writeDocuments(documents, section, subsection);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= settings.getMaxRetries() || !UpstreamErrors.isTransient(e)) {
+                    throw e;
+                }
+                job.retries.incrementAndGet();
+                chunkRetries.increment();
+                Duration backoff = backoff(attempt);
+                log.warn("Ingestion job {} throttled, retrying chunk in {} ms (attempt {})",
+                        job.id, backoff.toMillis(), attempt + 1);
+                Thread.sleep(backoff.toMillis());
+            }
+        }
+    }
+
+    /**
+     * Exponential backoff with jitter in [base/2, base]
+     */
+    private Duration backoff(int attempt) {
+        long base = Math.min(settings.getMaxBackoff().toMillis(),
+            settings.getInitialBackoff().toMillis() << Math.min(attempt, 20));
+        return Duration.ofMillis(base / 2 + ThreadLocalRandom.current().nextLong(base / 2 + 1));
+    }
+
+    private void evictExpired() {
+        Instant cutoff = Instant.now().minus(settings.getRetention());
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private static final class Job {
+        private final String id;
+        private final int total;
+        private final Instant submittedAt = Instant.now();
+        private final AtomicInteger processed = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger retries = new AtomicInteger();
+        private volatile State state = State.QUEUED;
+        private volatile Instant startedAt;
+        private volatile Instant finishedAt;
+        private volatile String error;
+
+        private Job(String id, int total) {
+            this.id = id;
+            this.total = total;
+        }
+
+        private IngestionJobStatus snapshot() {
+            double rate = 0;
+            if (startedAt != null) {
+                Instant end = finishedAt != null ? finishedAt : Instant.now();
+                double seconds = Math.max(Duration.between(startedAt, end).toMillis(), 1) / 1000.0;
+                rate = processed.get() / seconds;
+            }
+            return new IngestionJobStatus(id, state, total, processed.get(), failed.get(), retries.get(),
+                submittedAt, startedAt, finishedAt, rate, error);
+        }
+    }
+}
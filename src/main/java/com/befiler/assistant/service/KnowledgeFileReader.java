@@ -0,0 +1,233 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.KnowledgeProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Component;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Streams knowledge base files into documents, handing each one on as soon as it
+ * is complete, so a file is never held in memory as a whole. Formats:
+ * <ul>
+ *   <li>Markdown (.md): "# Section", optional "## Subsection" and "### Question"
+ *       headings. Text under a section or subsection heading is its general
+ *       information; text under a question heading is the answer.</li>
+ *   <li>YAML (.yaml, .yml): one YAML document per section with section, subsection,
+ *       generalInfo and qaPairs (question, answer); separate sections with "---".</li>
+ *   <li>JSON Lines (.jsonl): one object per line with section, subsection and either
+ *       question and answer, or content for a general information paragraph.</li>
+ * </ul>
+ * Malformed input fails with the file and line, rather than being skipped.
+ */
+@Component
+@RequiredArgsConstructor
+public class KnowledgeFileReader {
+
+    private static final int READ_BUFFER = 64 * 1024;
+    private static final int MAX_YAML_DOCUMENT_CODE_POINTS = 64 * 1024 * 1024;
+
+    private final DocumentService documentService;
+    private final KnowledgeProperties knowledgeProperties;
+    private final ObjectMapper objectMapper;
+
+    public static boolean isKnowledgeFile(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".md") || name.endsWith(".yaml") || name.endsWith(".yml") || name.endsWith(".jsonl");
+    }
+
+    public void read(Path file, Consumer<Document> sink) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        try (BufferedReader reader = open(file)) {
+            if (name.endsWith(".md")) {
+                readMarkdown(file, reader, sink);
+            } else if (name.endsWith(".yaml") || name.endsWith(".yml")) {
+                readYaml(file, reader, sink);
+            } else if (name.endsWith(".jsonl")) {
+                readJsonLines(file, reader, sink);
+            } else {
+                throw new IllegalArgumentException("Unsupported knowledge file: " + file);
+            }
+        }
+    }
+
+    private void readMarkdown(Path file, BufferedReader reader, Consumer<Document> sink) throws IOException {
+        String section = null;
+        String subsection = null;
+        String question = null;
+        List<String> body = new ArrayList<>();
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            int level = headingLevel(line);
+            if (level == 0) {
+                body.add(line);
+                continue;
+            }
+            emitMarkdown(file, lineNumber, section, subsection, question, body, sink);
+            body.clear();
+            String title = line.substring(level).trim();
+            switch (level) {
+                case 1 -> {
+                    section = title;
+                    subsection = null;
+                    question = null;
+                }
+                case 2 -> {
+                    subsection = title;
+                    question = null;
+                }
+                default -> question = title;
+            }
+        }
+        emitMarkdown(file, lineNumber, section, subsection, question, body, sink);
+    }
+
+    private void emitMarkdown(Path file, int lineNumber, String section, String subsection, String question,
+                              List<String> body, Consumer<Document> sink) {
+        String text = String.join("\n", body);
+        if (text.isBlank()) {
+            return;
+        }
+        if (section == null) {
+            throw new IllegalArgumentException(file + ":" + lineNumber + ": text before the first '# Section' heading");
+        }
+        if (question != null) {
+            sink.accept(documentService.qaPairDocument(question, content(text), section, subsection));
+        } else {
+            documentService.generalInfoDocuments(content(text), section, subsection).forEach(sink);
+        }
+    }
+
+    /**
+     * Heading level for "# ", "## " and "### "; deeper headings are ordinary text
+     */
+    private static int headingLevel(String line) {
+        int level = 0;
+        while (level < line.length() && line.charAt(level) == '#') {
+            level++;
+        }
+        boolean heading = level >= 1 && level <= 3 && line.length() > level && line.charAt(level) == ' ';
+        return heading ? level : 0;
+    }
+
+    private void readYaml(Path file, BufferedReader reader, Consumer<Document> sink) {
+        LoaderOptions options = new LoaderOptions();
+        options.setCodePointLimit(MAX_YAML_DOCUMENT_CODE_POINTS);
+        Yaml yaml = new Yaml(new SafeConstructor(options));
+        int index = 0;
+        // loadAll parses lazily, one YAML document per iteration
+        for (Object loaded : yaml.loadAll(reader)) {
+            index++;
+            if (loaded == null) {
+                continue;
+            }
+            String location = file + " (document " + index + ")";
+            if (!(loaded instanceof Map<?, ?> document)) {
+                throw new IllegalArgumentException(location + ": expected a mapping");
+            }
+            String section = required(document, "section", location);
+            String subsection = optional(document, "subsection");
+            String generalInfo = optional(document, "generalInfo");
+            if (generalInfo != null && !generalInfo.isBlank()) {
+                documentService.generalInfoDocuments(content(generalInfo), section, subsection).forEach(sink);
+            }
+            Object qaPairs = document.get("qaPairs");
+            if (qaPairs instanceof List<?> pairs) {
+                for (Object pair : pairs) {
+                    if (!(pair instanceof Map<?, ?> qa)) {
+                        throw new IllegalArgumentException(location + ": qaPairs entries need question and answer");
+                    }
+                    sink.accept(documentService.qaPairDocument(required(qa, "question", location),
+                        content(required(qa, "answer", location)), section, subsection));
+                }
+            } else if (qaPairs != null) {
+                throw new IllegalArgumentException(location + ": qaPairs must be a list");
+            }
+        }
+    }
+
+    private void readJsonLines(Path file, BufferedReader reader, Consumer<Document> sink) throws IOException {
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            String location = file + ":" + lineNumber;
+            KnowledgeRecord record;
+            try {
+                record = objectMapper.readValue(line, KnowledgeRecord.class);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException(location + ": " + e.getOriginalMessage());
+            }
+            if (record.section() == null || record.section().isBlank()) {
+                throw new IllegalArgumentException(location + ": missing section");
+            }
+            if (record.question() != null && record.answer() != null) {
+                sink.accept(documentService.qaPairDocument(record.question(), content(record.answer()),
+                    record.section(), record.subsection()));
+            } else if (record.content() != null && !record.content().isBlank()) {
+                documentService.generalInfoDocuments(content(record.content()), record.section(),
+                    record.subsection()).forEach(sink);
+            } else {
+                throw new IllegalArgumentException(location + ": needs question and answer, or content");
+            }
+        }
+    }
+
+    /**
+     * Large files are memory-mapped; both paths decode UTF-8 through a small buffer
+     */
+    private BufferedReader open(Path file) throws IOException {
+        InputStream in = Files.size(file) >= knowledgeProperties.getMmapThreshold().toBytes()
+            ? new MappedFileInputStream(file)
+            : Files.newInputStream(file);
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), READ_BUFFER);
+    }
+
+    /**
+     * Stored form of a paragraph or answer: surrounding blank space removed, one trailing newline
+     */
+    private static String content(String text) {
+        return text.strip() + "\n";
+    }
+
+    private static String required(Map<?, ?> map, String key, String location) {
+        String value = optional(map, key);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException(location + ": missing " + key);
+        }
+        return value;
+    }
+
+    private static String optional(Map<?, ?> map, String key) {
+        Object value = map.get(key);
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * One line of a .jsonl knowledge file
+     */
+    record KnowledgeRecord(String section, String subsection, String question, String answer, String content) {
+    }
+}
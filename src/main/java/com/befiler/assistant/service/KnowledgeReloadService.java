@@ -0,0 +1,310 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.KnowledgeProperties;
+import com.befiler.assistant.model.KnowledgeReloadStatus;
+import com.befiler.assistant.model.KnowledgeReloadStatus.State;
+import com.befiler.assistant.repository.VectorStoreRepository;
+import com.befiler.assistant.repository.VectorStoreRepository.EmbeddedDocument;
+import com.befiler.assistant.repository.VectorStoreRepository.SourceEntry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reloads the knowledge base files while the service keeps answering.
+ * A reload reads every file, diffs the content hashes against the stored rows per
+ * section and, for each changed section only, embeds the new chunks in the background
+ * and then swaps them in atomically (insert new, delete stale, one transaction).
+ * Unchanged sections, and their cached answers, are not touched.
+ * Each section swap is a numbered version. The rows it replaced are copied, in the same
+ * transaction, to the vector_store_history table, so the section can be rolled back
+ * with SQL and without calling the embedding API; only the inserted ids stay on the heap.
+ * A rollback only changes the store: the next reload applies the files again.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class KnowledgeReloadService {
+
+    private static final int MAX_STATUSES = 20;
+
+    private final KnowledgeFileReader knowledgeFileReader;
+    private final KnowledgeProperties knowledgeProperties;
+    private final VectorStoreRepository vectorStoreRepository;
+    private final BatchDocumentWriter batchDocumentWriter;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // One reload at a time, in request order
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+        Thread.ofVirtual().name("knowledge-reload").factory());
+    // Held while the store is being changed, by reloads and rollbacks alike
+    private final ReentrantLock swapLock = new ReentrantLock();
+    private final AtomicLong versions = new AtomicLong();
+    private final Deque<Reload> reloads = new ArrayDeque<>();
+    private final Map<String, Deque<SectionVersion>> sectionVersions = new ConcurrentHashMap<>();
+    // Guarded by swapLock
+    private boolean historyReady;
+    private Reload queued;
+
+    /**
+     * Queue a reload. While one is still waiting to start, further requests join it;
+     * a request made during a running reload queues another, since files may have
+     * changed after the running one read them.
+     */
+    public synchronized KnowledgeReloadStatus requestReload(String trigger) {
+        if (queued != null) {
+            return queued.snapshot();
+        }
+        Reload reload = new Reload(versions.incrementAndGet(), trigger);
+        queued = reload;
+        reloads.addFirst(reload);
+        while (reloads.size() > MAX_STATUSES) {
+            reloads.removeLast();
+        }
+        executor.execute(() -> run(reload));
+        log.info("Knowledge reload {} queued ({})", reload.version, trigger);
+        return reload.snapshot();
+    }
+
+    /**
+     * Most recent reloads, newest first
+     */
+    public synchronized List<KnowledgeReloadStatus> recentReloads() {
+        return reloads.stream().map(Reload::snapshot).toList();
+    }
+
+    /**
+     * Undo the latest swap of a section, restoring the rows it replaced from the history table
+     */
+    public Optional<SectionRollback> rollback(String section) {
+        swapLock.lock();
+        try {
+            Deque<SectionVersion> history = sectionVersions.get(section);
+            SectionVersion latest = history != null ? history.peekFirst() : null;
+            if (latest == null) {
+                return Optional.empty();
+            }
+            List<Document> restored = batchDocumentWriter.restore(() -> {
+                List<EmbeddedDocument> rows = vectorStoreRepository.restoreArchived(latest.version(), section);
+                vectorStoreRepository.deleteArchived(latest.version(), section);
+                return rows.stream().map(KnowledgeReloadService::toDocument).toList();
+            }, latest.insertedIds());
+            history.removeFirst();
+            eventPublisher.publishEvent(new KnowledgeSectionChangedEvent(section, null));
+            log.info("Knowledge section '{}' rolled back from version {}: {} restored, {} removed",
+                    section, latest.version(), restored.size(), latest.insertedIds().size());
+            return Optional.of(new SectionRollback(section, latest.version(), restored.size(),
+                latest.insertedIds().size()));
+        } finally {
+            swapLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(Reload reload) {
+        synchronized (this) {
+            if (queued == reload) {
+                queued = null;
+            }
+            reload.state = State.RUNNING;
+            reload.startedAt = Instant.now();
+        }
+        swapLock.lock();
+        try {
+            Delta delta = readDelta();
+            for (String section : delta.sections()) {
+                List<Document> inserts = delta.inserts().getOrDefault(section, List.of());
+                List<String> staleIds = delta.staleIds().getOrDefault(section, List.of());
+                try {
+                    applySection(reload.version, section, inserts, staleIds);
+                    synchronized (this) {
+                        reload.changedSections.add(section);
+                        reload.inserted += inserts.size();
+                        reload.deleted += staleIds.size();
+                    }
+                } catch (RuntimeException e) {
+                    // The section's transaction rolled back, so it still shows the previous version
+                    log.error("Knowledge reload {} failed for section '{}'; keeping its previous version",
+                            reload.version, section, e);
+                    synchronized (this) {
+                        reload.failedSections.add(section);
+                        reload.error = e.getMessage();
+                    }
+                }
+            }
+            finish(reload, reload.failedSections.isEmpty() ? State.SUCCEEDED : State.PARTIALLY_FAILED, reload.error);
+        } catch (IOException | RuntimeException e) {
+            log.error("Knowledge reload {} failed before any section was changed", reload.version, e);
+            finish(reload, State.FAILED, e.getMessage());
+        } finally {
+            swapLock.unlock();
+        }
+    }
+
+    /**
+     * Per section, the documents to insert and the stored ids that are no longer in the files.
+     * Only new content is held in memory; unchanged documents are reduced to their hash.
+     */
+    private Delta readDelta() throws IOException {
+        Path directory = knowledgeProperties.getDirectory();
+        if (!Files.isDirectory(directory)) {
+            // Reloading an empty set would delete the stored knowledge base
+            throw new IllegalStateException("Knowledge directory " + directory.toAbsolutePath() + " not found");
+        }
+        List<SourceEntry> stored = vectorStoreRepository.findEntriesBySource(KnowledgeLoaderService.SOURCE);
+        Set<String> storedHashes = new HashSet<>();
+        stored.forEach(entry -> storedHashes.add(entry.contentHash()));
+
+        Set<String> seenHashes = new HashSet<>();
+        Map<String, List<Document>> inserts = new LinkedHashMap<>();
+        for (Path file : KnowledgeLoaderService.knowledgeFiles(directory)) {
+            knowledgeFileReader.read(file, doc -> {
+                String hash = (String) doc.getMetadata().get("content_hash");
+                if (seenHashes.add(hash) && !storedHashes.contains(hash)) {
+                    doc.getMetadata().put("source", KnowledgeLoaderService.SOURCE);
+                    inserts.computeIfAbsent(sectionKey(doc.getMetadata().get("section")), key -> new ArrayList<>())
+                        .add(doc);
+                }
+            });
+        }
+
+        Map<String, List<String>> staleIds = new HashMap<>();
+        for (SourceEntry entry : stored) {
+            if (entry.contentHash() == null || !seenHashes.contains(entry.contentHash())) {
+                staleIds.computeIfAbsent(sectionKey(entry.section()), key -> new ArrayList<>()).add(entry.id());
+            }
+        }
+        Set<String> sections = new LinkedHashSet<>(inserts.keySet());
+        sections.addAll(staleIds.keySet());
+        return new Delta(sections, inserts, staleIds);
+    }
+
+    private void applySection(long version, String section, List<Document> inserts, List<String> staleIds) {
+        inserts.forEach(doc -> doc.getMetadata().put("knowledge_version", version));
+        int keep = Math.max(0, knowledgeProperties.getReload().getHistory());
+        if (keep == 0) {
+            batchDocumentWriter.swap(inserts, staleIds);
+        } else {
+            ensureHistory();
+            batchDocumentWriter.swap(inserts, staleIds,
+                () -> vectorStoreRepository.archive(version, section, staleIds));
+        }
+
+        Deque<SectionVersion> history = sectionVersions.computeIfAbsent(section, key -> new ArrayDeque<>());
+        if (keep > 0) {
+            history.addFirst(new SectionVersion(version, inserts.stream().map(Document::getId).toList()));
+        }
+        while (history.size() > keep) {
+            vectorStoreRepository.deleteArchived(history.removeLast().version(), section);
+        }
+        eventPublisher.publishEvent(new KnowledgeSectionChangedEvent(section, null));
+        log.info("Knowledge section '{}' now at version {}: {} inserted, {} deleted",
+                section, version, inserts.size(), staleIds.size());
+    }
+
+    /**
+     * Create (and empty) the history table before the first swap that archives into it
+     */
+    private void ensureHistory() {
+        if (!historyReady) {
+            vectorStoreRepository.resetHistory();
+            historyReady = true;
+        }
+    }
+
+    private synchronized void finish(Reload reload, State state, String error) {
+        reload.state = state;
+        reload.error = error;
+        reload.finishedAt = Instant.now();
+        log.info("Knowledge reload {} {}: sections changed={}, failed={}, inserted={}, deleted={}",
+                reload.version, state, reload.changedSections, reload.failedSections,
+                reload.inserted, reload.deleted);
+    }
+
+    private static String sectionKey(Object section) {
+        return Objects.toString(section, "");
+    }
+
+    private static Document toDocument(EmbeddedDocument row) {
+        List<Double> embedding = new ArrayList<>(row.embedding().length);
+        for (float value : row.embedding()) {
+            embedding.add((double) value);
+        }
+        Document doc = new Document(row.id(), row.content(), new HashMap<>(row.metadata()));
+        doc.setEmbedding(embedding);
+        return doc;
+    }
+
+    /**
+     * Outcome of a section rollback
+     */
+    public record SectionRollback(String section, long fromVersion, int restored, int removed) {
+    }
+
+    private record Delta(Set<String> sections, Map<String, List<Document>> inserts,
+                         Map<String, List<String>> staleIds) {
+    }
+
+    /**
+     * One applied swap and what it inserted; the rows it replaced are archived under its version
+     */
+    private record SectionVersion(long version, List<String> insertedIds) {
+    }
+
+    /**
+     * Mutable state of a reload, guarded by the service's monitor
+     */
+    private static final class Reload {
+
+        private final long version;
+        private final String trigger;
+        private final Instant requestedAt = Instant.now();
+        private final List<String> changedSections = new ArrayList<>();
+        private final List<String> failedSections = new ArrayList<>();
+        private State state = State.QUEUED;
+        private Instant startedAt;
+        private Instant finishedAt;
+        private int inserted;
+        private int deleted;
+        private String error;
+
+        private Reload(long version, String trigger) {
+            this.version = version;
+            this.trigger = trigger;
+        }
+
+        private KnowledgeReloadStatus snapshot() {
+            return new KnowledgeReloadStatus(version, trigger, state, requestedAt, startedAt, finishedAt,
+                List.copyOf(changedSections), List.copyOf(failedSections), inserted, deleted, error);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.befiler.assistant.service;
+
+/**
+ * Published by DocumentService after content is written into a section,
+ * so caches derived from the knowledge base can drop stale entries
+ */
+public record KnowledgeSectionChangedEvent(String section, String subsection) {
+}
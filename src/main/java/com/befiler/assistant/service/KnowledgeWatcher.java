@@ -0,0 +1,112 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.KnowledgeProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Requests a knowledge reload when files under the knowledge directory change.
+ * Changes are debounced: the reload starts once the directory has been quiet for
+ * befiler.knowledge.reload.debounce. Starts after startup, so it never races the
+ * initial load.
+ */
+@Component
+@ConditionalOnProperty(prefix = "befiler.knowledge.reload", name = "watch", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class KnowledgeWatcher {
+
+    private final KnowledgeProperties knowledgeProperties;
+    private final KnowledgeReloadService knowledgeReloadService;
+
+    private WatchService watchService;
+    private Thread thread;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() throws IOException {
+        Path directory = knowledgeProperties.getDirectory();
+        if (!Files.isDirectory(directory)) {
+            log.warn("Knowledge directory {} not found; not watching for changes", directory.toAbsolutePath());
+            return;
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        registerTree(directory);
+        thread = Thread.ofVirtual().name("knowledge-watcher").start(this::watch);
+        log.info("Watching {} for knowledge changes", directory.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public synchronized void stop() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void watch() {
+        long debounceNanos = knowledgeProperties.getReload().getDebounce().toNanos();
+        boolean pending = false;
+        try {
+            while (true) {
+                // Block until something changes; once a change is pending, wait only for the quiet period
+                WatchKey key = pending ? watchService.poll(debounceNanos, TimeUnit.NANOSECONDS) : watchService.take();
+                if (key == null) {
+                    knowledgeReloadService.requestReload("file change");
+                    pending = false;
+                    continue;
+                }
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        pending = true;
+                        continue;
+                    }
+                    Path changed = ((Path) key.watchable()).resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                        registerTree(changed);
+                        pending = true;
+                    } else if (KnowledgeFileReader.isKnowledgeFile(changed)
+                            || event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        // A deleted path may have been a directory of knowledge files
+                        pending = true;
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            log.debug("Knowledge watcher stopped");
+        } catch (IOException e) {
+            log.error("Knowledge watcher failed; reloads are only available through the admin API", e);
+        }
+    }
+
+    /**
+     * WatchService is not recursive, so every directory is registered on its own
+     */
+    private void registerTree(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path directory : (Iterable<Path>) paths.filter(Files::isDirectory)::iterator) {
+                directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.repository.VectorStoreRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sections present in the knowledge base: read from the store once startup is done
+ * and extended whenever content is written into a section. Lets request-supplied
+ * section names be checked against the corpus, e.g. before using them as metric tags.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class KnownSections {
+
+    // Guards against a corpus (or a bug) producing unbounded section names
+    static final int MAX_SECTIONS = 500;
+
+    private final VectorStoreRepository vectorStoreRepository;
+    private final Set<String> sections = ConcurrentHashMap.newKeySet();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        try {
+            vectorStoreRepository.findSections().forEach(this::add);
+            log.info("Known sections: {}", sections.size());
+        } catch (RuntimeException e) {
+            log.warn("Could not read the knowledge base sections: {}", e.getMessage());
+        }
+    }
+
+    @EventListener
+    public void onSectionChanged(KnowledgeSectionChangedEvent event) {
+        if (event.section() != null) {
+            add(event.section());
+        }
+    }
+
+    public void add(String section) {
+        if (sections.size() < MAX_SECTIONS) {
+            sections.add(section);
+        }
+    }
+
+    public boolean contains(String section) {
+        return sections.contains(section);
+    }
+}
@@ -0,0 +1,131 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.RagProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.document.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * CPU-only re-ranker: BM25 of the query against each candidate (statistics taken
+ * over the candidate set) blended with the retriever's relevance. Catches
+ * candidates that are semantically close but do not mention what was asked.
+ * Tokenizing dominates the cost and stays on the calling thread: for the configured
+ * candidate count it is well under a millisecond, less than handing slices to other
+ * threads would save. The candidates are returned as scored copies; the caller's
+ * documents are not modified.
+ */
+@Component
+@ConditionalOnProperty(prefix = "befiler.rag.rerank", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class LexicalReranker implements Reranker {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final Set<String> STOP_WORDS = Set.of(
+        "a", "an", "and", "are", "as", "at", "be", "by", "can", "do", "does", "for", "from", "how", "i",
+        "if", "in", "is", "it", "my", "of", "on", "or", "should", "the", "to", "what", "when", "which",
+        "who", "will", "with", "you", "your");
+
+    private final RagProperties ragProperties;
+
+    @Override
+    public List<Document> rerank(String query, List<Document> candidates) {
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        List<String> queryTerms = terms(query);
+        List<Map<String, Integer>> termFrequencies = candidates.stream()
+            .map(doc -> termFrequencies(doc.getContent()))
+            .toList();
+
+        double averageLength = termFrequencies.stream()
+            .mapToInt(LexicalReranker::length)
+            .average()
+            .orElse(1);
+        Map<String, Integer> documentFrequencies = new HashMap<>();
+        for (String term : queryTerms) {
+            int df = 0;
+            for (Map<String, Integer> tf : termFrequencies) {
+                if (tf.containsKey(term)) {
+                    df++;
+                }
+            }
+            documentFrequencies.put(term, df);
+        }
+
+        double[] bm25 = new double[candidates.size()];
+        double maxBm25 = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            bm25[i] = bm25(queryTerms, termFrequencies.get(i), documentFrequencies, candidates.size(), averageLength);
+            maxBm25 = Math.max(maxBm25, bm25[i]);
+        }
+
+        int rrfK = ragProperties.getHybrid().getRrfK();
+        double weight = ragProperties.getRerank().getLexicalWeight();
+        List<Document> reranked = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            Document doc = candidates.get(i);
+            double lexical = maxBm25 > 0 ? bm25[i] / maxBm25 : 0;
+            double relevance = Math.min(1.0, ContextAssembler.relevance(doc, i, rrfK));
+            Map<String, Object> metadata = new HashMap<>(doc.getMetadata());
+            metadata.put("rerank_score", weight * lexical + (1 - weight) * relevance);
+            Document scored = new Document(doc.getId(), doc.getContent(), metadata);
+            scored.setEmbedding(doc.getEmbedding());
+            reranked.add(scored);
+        }
+        reranked.sort(Comparator.comparingDouble(
+            (Document doc) -> ((Number) doc.getMetadata().get("rerank_score")).doubleValue()).reversed());
+        return reranked;
+    }
+
+    private static double bm25(List<String> queryTerms, Map<String, Integer> tf, Map<String, Integer> df,
+                               int documents, double averageLength) {
+        double lengthNorm = 1 - B + B * length(tf) / averageLength;
+        double score = 0;
+        for (String term : queryTerms) {
+            Integer frequency = tf.get(term);
+            if (frequency == null) {
+                continue;
+            }
+            int n = df.get(term);
+            double idf = Math.log(1 + (documents - n + 0.5) / (n + 0.5));
+            score += idf * frequency * (K1 + 1) / (frequency + K1 * lengthNorm);
+        }
+        return score;
+    }
+
+    private static Map<String, Integer> termFrequencies(String text) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : terms(text)) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        return frequencies;
+    }
+
+    private static int length(Map<String, Integer> termFrequencies) {
+        int length = 0;
+        for (int frequency : termFrequencies.values()) {
+            length += frequency;
+        }
+        return length;
+    }
+
+    private static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("\\W+")) {
+            if (word.length() > 1 && !STOP_WORDS.contains(word)) {
+                terms.add(word);
+            }
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,37 @@
+package com.befiler.assistant.service;
+
+import org.springframework.ai.chat.ChatClient;
+import org.springframework.ai.chat.ChatResponse;
+import org.springframework.ai.chat.StreamingChatClient;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+/**
+ * Chat client decorator that holds an upstream permit for the duration of each
+ * completion, including streamed ones until the stream terminates
+ */
+public class LimitedChatClient implements ChatClient, StreamingChatClient {
+
+    private final ChatClient delegate;
+    private final StreamingChatClient streamingDelegate;
+    private final UpstreamLimiter limiter;
+
+    public LimitedChatClient(ChatClient delegate, StreamingChatClient streamingDelegate, UpstreamLimiter limiter) {
+        this.delegate = delegate;
+        this.streamingDelegate = streamingDelegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        return limiter.call(() -> delegate.call(prompt));
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return Flux.defer(() -> {
+            limiter.acquire();
+            return streamingDelegate.stream(prompt).doFinally(signal -> limiter.release());
+        });
+    }
+}
@@ -0,0 +1,47 @@
+package com.befiler.assistant.service;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingClient;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.List;
+
+/**
+ * Embedding client decorator that bounds concurrent upstream embedding calls
+ */
+public class LimitedEmbeddingClient implements EmbeddingClient {
+
+    private final EmbeddingClient delegate;
+    private final UpstreamLimiter limiter;
+
+    public LimitedEmbeddingClient(EmbeddingClient delegate, UpstreamLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return limiter.call(() -> delegate.call(request));
+    }
+
+    @Override
+    public List<Double> embed(String text) {
+        return limiter.call(() -> delegate.embed(text));
+    }
+
+    @Override
+    public List<List<Double>> embed(List<String> texts) {
+        return limiter.call(() -> delegate.embed(texts));
+    }
+
+    @Override
+    public List<Double> embed(Document document) {
+        return limiter.call(() -> delegate.embed(document));
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+}
@@ -0,0 +1,38 @@
+package com.befiler.assistant.service;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Vector store decorator that bounds concurrent JDBC work so virtual threads
+ * queue here with a timeout instead of exhausting the connection pool
+ */
+public class LimitedVectorStore implements VectorStore {
+
+    private final VectorStore delegate;
+    private final UpstreamLimiter limiter;
+
+    public LimitedVectorStore(VectorStore delegate, UpstreamLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        limiter.run(() -> delegate.add(documents));
+    }
+
+    @Override
+    public Optional<Boolean> delete(List<String> idList) {
+        return limiter.call(() -> delegate.delete(idList));
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        return limiter.call(() -> delegate.similaritySearch(request));
+    }
+}
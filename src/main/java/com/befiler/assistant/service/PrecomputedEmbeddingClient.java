@@ -0,0 +1,114 @@
+package com.befiler.assistant.service;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingClient;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * EmbeddingClient decorator that serves embeddings computed ahead of time, in
+ * batched calls, for as long as they are pinned. Unlike the embedding cache it is
+ * always on and never evicts a pinned text, so a question batch embeds its questions
+ * once and every later lookup of the same text (FAQ index, answer cache, vector
+ * store) is answered locally. Texts are matched exactly.
+ */
+public class PrecomputedEmbeddingClient implements EmbeddingClient {
+
+    private final EmbeddingClient delegate;
+    private final ConcurrentHashMap<String, Pinned> pinned = new ConcurrentHashMap<>();
+
+    public PrecomputedEmbeddingClient(EmbeddingClient delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Serve these embeddings until the returned pin is closed. Pins of the same text
+     * are counted, so overlapping batches asking the same question do not unpin each other.
+     */
+    public Pin pin(Map<String, List<Double>> embeddings) {
+        embeddings.forEach((text, embedding) -> pinned.compute(text, (key, current) -> current == null
+            ? new Pinned(embedding, 1)
+            : new Pinned(current.embedding, current.pins + 1)));
+        return new Pin(List.copyOf(embeddings.keySet()));
+    }
+
+    @Override
+    public List<Double> embed(String text) {
+        Pinned hit = pinned.get(text);
+        return hit != null ? hit.embedding : delegate.embed(text);
+    }
+
+    /**
+     * Serves pinned texts locally and sends the rest upstream in one call
+     */
+    @Override
+    public List<List<Double>> embed(List<String> texts) {
+        List<List<Double>> results = new ArrayList<>(texts.size());
+        List<String> missing = new ArrayList<>();
+        for (String text : texts) {
+            Pinned hit = pinned.get(text);
+            results.add(hit != null ? hit.embedding : null);
+            if (hit == null) {
+                missing.add(text);
+            }
+        }
+        if (missing.isEmpty()) {
+            return results;
+        }
+        List<List<Double>> fetched = delegate.embed(missing);
+        for (int i = 0, next = 0; i < results.size(); i++) {
+            if (results.get(i) == null) {
+                results.set(i, fetched.get(next++));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public List<Double> embed(Document document) {
+        return delegate.embed(document);
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return delegate.call(request);
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    private void unpin(List<String> texts) {
+        texts.forEach(text -> pinned.computeIfPresent(text,
+            (key, current) -> current.pins > 1 ? new Pinned(current.embedding, current.pins - 1) : null));
+    }
+
+    private record Pinned(List<Double> embedding, int pins) {
+    }
+
+    /**
+     * Releases its texts once closed; closing again has no effect
+     */
+    public final class Pin implements AutoCloseable {
+
+        private List<String> texts;
+
+        private Pin(List<String> texts) {
+            this.texts = texts;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (texts != null) {
+                unpin(texts);
+                texts = null;
+            }
+        }
+    }
+}
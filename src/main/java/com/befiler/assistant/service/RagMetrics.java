@@ -0,0 +1,149 @@
+package com.befiler.assistant.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Per-stage latency and volume metrics for queries and ingestion, tagged by section.
+ * The section comes from the request, so only sections known from the corpus are
+ * used as tags and anything else is counted under "other"; this keeps the number of
+ * series bounded. Percentile histograms are published only on the section-less
+ * latency timers, so p95/p99 can be computed in Prometheus without a bucket set per section.
+ * <ul>
+ *   <li>rag.query (section, outcome) - whole request; rag.query.latency (outcome) with histogram</li>
+ *   <li>rag.query.stage (stage = rewrite | embed | search | expand | rerank | context | completion, section);
+ *       rag.query.stage.latency (stage) with histogram</li>
+ *   <li>rag.documents.retrieved / rag.documents.filtered (section) - candidates
+ *       returned by the store / dropped while packing the context</li>
+ *   <li>rag.tokens (kind = prompt | completion, section)</li>
+ *   <li>rag.retrieval.adaptive (outcome, section) - adaptive searches by how they ended;
+ *       rag.retrieval.candidates.saved / rag.retrieval.candidates.extra (section) - neighbours
+ *       requested below / above the fixed topK; rag.retrieval.searches (outcome) - store
+ *       searches issued per adaptive search</li>
+ *   <li>rag.context.tokens (policy = fixed | adaptive outcome, section) - prompt context size,
+ *       to compare the adaptive policy against the fixed one</li>
+ *   <li>rag.ingestion.stage (stage = embed | upsert | swap, section) and
+ *       rag.ingestion.documents (section)</li>
+ * </ul>
+ */
+@Component
+@RequiredArgsConstructor
+public class RagMetrics {
+
+    private static final String NO_SECTION = "none";
+    private static final String OTHER_SECTION = "other";
+
+    private final MeterRegistry meterRegistry;
+    private final KnownSections knownSections;
+
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void recordQuery(Timer.Sample sample, String section, String outcome) {
+        long nanos = sample.stop(Timer.builder("rag.query")
+            .tag("section", sectionTag(section))
+            .tag("outcome", outcome)
+            .register(meterRegistry));
+        Timer.builder("rag.query.latency")
+            .tag("outcome", outcome)
+            .publishPercentileHistogram()
+            .register(meterRegistry)
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public <T> T timeStage(String stage, String section, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            long nanos = System.nanoTime() - start;
+            stageTimer("rag.query.stage", stage, sectionTag(section)).record(nanos, TimeUnit.NANOSECONDS);
+            recordStageLatency(stage, nanos);
+        }
+    }
+
+    public void recordStage(Timer.Sample sample, String stage, String section) {
+        recordStageLatency(stage, sample.stop(stageTimer("rag.query.stage", stage, sectionTag(section))));
+    }
+
+    public void recordDocuments(String section, int retrieved, int packed) {
+        counter("rag.documents.retrieved", sectionTag(section)).increment(retrieved);
+        counter("rag.documents.filtered", sectionTag(section)).increment(Math.max(0, retrieved - packed));
+    }
+
+    public void recordTokens(String section, long promptTokens, long completionTokens) {
+        Counter.builder("rag.tokens").tag("kind", "prompt").tag("section", sectionTag(section))
+            .register(meterRegistry).increment(promptTokens);
+        Counter.builder("rag.tokens").tag("kind", "completion").tag("section", sectionTag(section))
+            .register(meterRegistry).increment(completionTokens);
+    }
+
+    public void recordAdaptiveSearch(String section, String outcome, int requested, int searches, int fixedTopK) {
+        Counter.builder("rag.retrieval.adaptive").tag("outcome", outcome).tag("section", sectionTag(section))
+            .register(meterRegistry).increment();
+        counter("rag.retrieval.candidates.saved", sectionTag(section)).increment(Math.max(0, fixedTopK - requested));
+        counter("rag.retrieval.candidates.extra", sectionTag(section)).increment(Math.max(0, requested - fixedTopK));
+        DistributionSummary.builder("rag.retrieval.searches")
+            .tag("outcome", outcome)
+            .register(meterRegistry)
+            .record(searches);
+    }
+
+    public void recordContextTokens(String section, String policy, int tokens) {
+        DistributionSummary.builder("rag.context.tokens")
+            .tag("policy", policy)
+            .tag("section", sectionTag(section))
+            .baseUnit("tokens")
+            .register(meterRegistry)
+            .record(tokens);
+    }
+
+    /**
+     * Ingestion sections come from the corpus being written, not from requests, so they are tagged as is
+     */
+    public void timeIngestion(String stage, String section, Runnable work) {
+        stageTimer("rag.ingestion.stage", stage, ingestionTag(section)).record(work);
+    }
+
+    public void recordIngested(String section, int documents) {
+        counter("rag.ingestion.documents", ingestionTag(section)).increment(documents);
+    }
+
+    private void recordStageLatency(String stage, long nanos) {
+        Timer.builder("rag.query.stage.latency")
+            .tag("stage", stage)
+            .publishPercentileHistogram()
+            .register(meterRegistry)
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer stageTimer(String name, String stage, String sectionTag) {
+        return Timer.builder(name).tag("section", sectionTag).tag("stage", stage).register(meterRegistry);
+    }
+
+    private Counter counter(String name, String sectionTag) {
+        return Counter.builder(name).tag("section", sectionTag).register(meterRegistry);
+    }
+
+    /**
+     * Request-supplied section as a bounded tag: known sections as is, anything else as "other"
+     */
+    String sectionTag(String section) {
+        if (section == null || section.isBlank()) {
+            return NO_SECTION;
+        }
+        return knownSections.contains(section) ? section : OTHER_SECTION;
+    }
+
+    private static String ingestionTag(String section) {
+        return section == null || section.isBlank() ? NO_SECTION : section;
+    }
+}
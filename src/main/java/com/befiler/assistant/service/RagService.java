@@ -1,18 +1,39 @@
 package com.befiler.assistant.service;
 
+import com.befiler.assistant.config.RagProperties;
+import com.befiler.assistant.config.ResilienceProperties;
+import com.befiler.assistant.model.BatchQueryResult;
+import com.befiler.assistant.model.ChatRequest;
+import com.befiler.assistant.model.ChatResponse;
+import com.befiler.assistant.model.ChatStreamMetadata;
+import com.befiler.assistant.model.RetrievalMode;
+import com.befiler.assistant.service.ConversationService.Conversation;
+import com.befiler.assistant.service.RetrievalPipeline.RetrievedContext;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.ChatClient;
+import org.springframework.ai.chat.StreamingChatClient;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.Usage;
 import org.springframework.ai.chat.prompt.Prompt;
-import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.embedding.EmbeddingClient;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
@@ -20,92 +41,434 @@ import java.util.stream.Collectors;
 public class RagService {
 
     private final ChatClient chatClient;
-    private final VectorStore vectorStore;
+    private final StreamingChatClient streamingChatClient;
+    private final RetrievalPipeline retrievalPipeline;
+    private final EmbeddingClient embeddingClient;
+    private final SemanticAnswerCache answerCache;
+    private final RagProperties ragProperties;
+    private final TokenCounter tokenCounter;
+    private final RagMetrics ragMetrics;
+    private final FaqIndex faqIndex;
+    private final ConversationService conversationService;
+    private final UpstreamGuards upstreamGuards;
+    private final ResilienceProperties resilienceProperties;
+    private final PrecomputedEmbeddingClient precomputedEmbeddingClient;
+    private final BatchThrottle batchThrottle;
 
     public String processQuery(String query, String section, String subsection) {
+        ChatRequest request = new ChatRequest();
+        request.setQuery(query);
+        request.setSection(section);
+        request.setSubsection(subsection);
+        return processQuery(request).getResponse();
+    }
+
+    public ChatResponse processQuery(ChatRequest request) {
+        String section = request.getSection();
+        String subsection = request.getSubsection();
+        Timer.Sample requestTimer = ragMetrics.start();
+        Conversation conversation = conversationService.open(request.getSessionId());
+        String sessionId = conversation != null ? conversation.getId() : null;
+        String query = request.getQuery();
         try {
-            // Search for relevant documents with metadata filtering
-            SearchRequest searchReq = SearchRequest.query(query).withTopK(8);
-
-            List<Document> relevantDocs = vectorStore.similaritySearch(
-                searchReq,
-                doc -> {
-                    String docSection = (String) doc.getMetadata().getOrDefault("section", "");
-                    String docSubsection = (String) doc.getMetadata().getOrDefault("subsection", "");
-                    boolean sectionMatch = section == null || section.equalsIgnoreCase(docSection);
-                    boolean subsectionMatch = subsection == null || subsection.equalsIgnoreCase(docSubsection);
-                    return sectionMatch && subsectionMatch;
-                }
-            );
-
-            // Separate and prioritize different document types
-            List<Document> generalInfo = relevantDocs.stream()
-                .filter(doc -> "general_info".equals(doc.getMetadata().get("type")))
-                .limit(2)
-                .toList();
-
-            List<Document> qaPairs = relevantDocs.stream()
-                .filter(doc -> "qa_pair".equals(doc.getMetadata().get("type")))
-                .limit(4)
-                .toList();
-
-            // Build context with structured formatting
-            StringBuilder contextBuilder = new StringBuilder();
-            
-            if (!generalInfo.isEmpty()) {
-                contextBuilder.append("GENERAL INFORMATION:\n");
-                generalInfo.forEach(doc -> {
-                    contextBuilder.append("- ").append(doc.getContent()).append("\n\n");
+            String history = conversationService.formatHistory(conversation);
+            query = standaloneQuery(history, request.getQuery(), section);
+
+            ChatResponse response = answer(request, query, history, requestTimer, null);
+            conversationService.append(conversation, request.getQuery(), response.getResponse());
+            response.setSessionId(sessionId);
+            return response;
+
+        } catch (Exception e) {
+            ragMetrics.recordQuery(requestTimer, section, "error");
+            log.error("RAG processing failed for query: {}", query, e);
+            return new ChatResponse("I'm sorry, I'm having trouble processing your request right now. " +
+                   "Please try rephrasing your question or contact support if the issue persists.",
+                   section, subsection, null, false, sessionId);
+        }
+    }
+
+    /**
+     * Answer many independent questions, handing each result to the consumer as soon
+     * as it is ready (from several threads at once). The questions are embedded up front
+     * in batched calls and those embeddings are pinned for the batch, retrievals run with
+     * bounded parallelism and completions are paced by the pacer all batches share, so a
+     * large batch reaches each upstream as an even load. The caller holds a
+     * BatchThrottle slot. Sessions are not used. Returns when every question is handled,
+     * or early once the consumer fails.
+     */
+    public void processBatch(List<ChatRequest> requests, Consumer<BatchQueryResult> results) {
+        RagProperties.Batch settings = ragProperties.getBatch();
+        BatchLimits limits = new BatchLimits(new Semaphore(settings.getSearchParallelism()),
+            batchThrottle.completions(), new AtomicBoolean());
+        // Questions mostly wait on permits and the pacer, so each gets its own virtual
+        // thread instead of tying up the shared upstream pool that retrieval fans out on
+        try (PrecomputedEmbeddingClient.Pin pin = embedQuestions(requests, settings.getEmbeddingBatchSize());
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < requests.size(); i++) {
+                int index = i;
+                ChatRequest request = requests.get(i);
+                executor.execute(() -> {
+                    BatchQueryResult result = batchItem(index, request, limits);
+                    if (result == null) {
+                        return;
+                    }
+                    try {
+                        results.accept(result);
+                    } catch (RuntimeException e) {
+                        if (limits.aborted().compareAndSet(false, true)) {
+                            log.warn("Batch aborted, results can no longer be delivered: {}", e.getMessage());
+                        }
+                    }
                 });
             }
-            
-            if (!qaPairs.isEmpty()) {
-                contextBuilder.append("RELEVANT Q&A:\n");
-                qaPairs.forEach(doc -> {
-                    contextBuilder.append("- ").append(doc.getContent()).append("\n\n");
+        }
+        log.info("RAG batch processed: queries={}, aborted={}", requests.size(), limits.aborted().get());
+    }
+
+    /**
+     * Streaming variant of processQuery. Retrieval runs on the calling thread so the
+     * metadata is available immediately; the completion is emitted token by token.
+     */
+    public StreamingAnswer streamQuery(ChatRequest request) {
+        String section = request.getSection();
+        String subsection = request.getSubsection();
+        Timer.Sample requestTimer = ragMetrics.start();
+        Conversation conversation = conversationService.open(request.getSessionId());
+        String sessionId = conversation != null ? conversation.getId() : null;
+        String history = conversationService.formatHistory(conversation);
+        String query = standaloneQuery(history, request.getQuery(), section);
+
+        Shortcut shortcut = shortcut(query, section, subsection);
+        if (shortcut.answer() != null) {
+            conversationService.append(conversation, request.getQuery(), shortcut.answer());
+            ragMetrics.recordQuery(requestTimer, section, shortcut.faqMatch() ? "faq" : "cached");
+            return new StreamingAnswer(
+                new ChatStreamMetadata(section, subsection, 0, 0, 0, !shortcut.faqMatch(), shortcut.faqMatch(),
+                    sessionId),
+                Flux.just(shortcut.answer()));
+        }
+        if (upstreamGuards.chat().isOpen()) {
+            Shortcut fallback = fallback(query, section, subsection, shortcut.queryEmbedding());
+            ragMetrics.recordQuery(requestTimer, section, "fallback");
+            return new StreamingAnswer(
+                new ChatStreamMetadata(section, subsection, 0, 0, 0, !fallback.faqMatch(), fallback.faqMatch(),
+                    sessionId),
+                Flux.just(fallback.answer()));
+        }
+
+        RetrievedContext retrieved = retrievalPipeline.retrieve(query, section, subsection, retrievalMode(request));
+        Prompt prompt = buildPrompt(request.getQuery(), section, subsection, retrieved.context(), history);
+        ChatStreamMetadata metadata = new ChatStreamMetadata(section, subsection, retrieved.generalInfo().size(),
+            retrieved.qaPairs().size(), retrieved.contextTokens(), false, false, sessionId);
+
+        float[] cacheKey = answerCache.isEnabled() && history.isEmpty() ? shortcut.queryEmbedding() : null;
+        Flux<String> tokens = Flux.defer(() -> {
+            StringBuilder answer = new StringBuilder();
+            Timer.Sample completionTimer = ragMetrics.start();
+            return streamingChatClient.stream(prompt)
+                .map(RagService::chunkContent)
+                .filter(Objects::nonNull)
+                .doOnNext(answer::append)
+                .doOnError(e -> ragMetrics.recordQuery(requestTimer, section, "error"))
+                .doOnComplete(() -> {
+                    log.info("RAG stream completed: section={}, subsection={}, docs_found={}",
+                            section, subsection, retrieved.documents().size());
+                    ragMetrics.recordStage(completionTimer, "completion", section);
+                    ragMetrics.recordQuery(requestTimer, section, "answered");
+                    recordTokens(section, prompt, null, answer.toString());
+                    if (cacheKey != null) {
+                        answerCache.put(section, subsection, cacheKey, answer.toString());
+                    }
+                    conversationService.append(conversation, request.getQuery(), answer.toString());
                 });
-            }
+        });
 
-            String context = contextBuilder.toString();
-
-            String systemPrompt = String.format("""
-                You are a helpful tax-filing assistant for Befiler.com, specializing in Pakistani tax law.
-                
-                Use the context below to answer the user's question. Prioritize accuracy and be specific.
-                If the context doesn't contain sufficient information, acknowledge this and suggest 
-                consulting with a tax professional or checking official FBR documentation.
-                
-                When answering:
-                1. Be direct and practical
-                2. Use simple language
-                3. Provide actionable advice when possible
-                4. Reference relevant sections/subsections when helpful
-                
-                Context:
-                %s
-                
-                Current section: %s
-                Current subsection: %s
-                """, context, section != null ? section : "General", subsection != null ? subsection : "N/A");
-
-            List<Message> messages = List.of(
-                new UserMessage(systemPrompt + "\n\nUser Question: " + query)
-            );
-
-            String response = chatClient.call(new Prompt(messages))
-                .getResult()
-                .getOutput()
-                .getContent();
-
-            log.info("RAG query processed: section={}, subsection={}, docs_found={}", 
-                    section, subsection, relevantDocs.size());
+        return new StreamingAnswer(metadata, tokens);
+    }
 
-            return response;
+    /**
+     * Answer a question, already made standalone: shortcuts, then retrieval and generation.
+     * A batch passes its limits to bound the searches and pace the completions.
+     */
+    private ChatResponse answer(ChatRequest request, String query, String history,
+                                Timer.Sample requestTimer, BatchLimits limits) {
+        String section = request.getSection();
+        String subsection = request.getSubsection();
+        Shortcut shortcut = shortcut(query, section, subsection);
+        if (shortcut.answer() != null) {
+            ragMetrics.recordQuery(requestTimer, section, shortcut.faqMatch() ? "faq" : "cached");
+            return new ChatResponse(shortcut.answer(), section, subsection, null, shortcut.faqMatch(), null);
+        }
+        float[] queryEmbedding = shortcut.queryEmbedding();
+        if (upstreamGuards.chat().isOpen()) {
+            Shortcut fallback = fallback(query, section, subsection, queryEmbedding);
+            ragMetrics.recordQuery(requestTimer, section, "fallback");
+            return new ChatResponse(fallback.answer(), section, subsection, null, fallback.faqMatch(), null);
+        }
+
+        RetrievedContext retrieved = limits == null
+            ? retrievalPipeline.retrieve(query, section, subsection, retrievalMode(request))
+            : limits.search(() -> retrievalPipeline.retrieve(query, section, subsection, retrievalMode(request)));
+
+        Prompt prompt = buildPrompt(request.getQuery(), section, subsection, retrieved.context(), history);
+        if (limits != null) {
+            limits.awaitCompletionSlot();
+        }
+        org.springframework.ai.chat.ChatResponse completion =
+            ragMetrics.timeStage("completion", section, () -> chatClient.call(prompt));
+        String response = completion.getResult().getOutput().getContent();
+        recordTokens(section, prompt, completion, response);
+
+        log.info("RAG query processed: section={}, subsection={}, docs_found={}, context_tokens={}",
+                section, subsection, retrieved.documents().size(), retrieved.contextTokens());
+
+        // Answers shaped by earlier turns are not reusable for other users
+        if (answerCache.isEnabled() && history.isEmpty()) {
+            answerCache.put(section, subsection, queryEmbedding, response);
+        }
+        ragMetrics.recordQuery(requestTimer, section, "answered");
+        return new ChatResponse(response, section, subsection, retrieved.contextTokens());
+    }
 
+    /**
+     * Result line for one batch question; null when the batch was aborted before it ran
+     */
+    private BatchQueryResult batchItem(int index, ChatRequest request, BatchLimits limits) {
+        Timer.Sample requestTimer = ragMetrics.start();
+        try {
+            ChatResponse response = answer(request, request.getQuery(), "", requestTimer, limits);
+            return new BatchQueryResult(index, request.getQuery(), response, null);
+        } catch (CancellationException e) {
+            return null;
         } catch (Exception e) {
-            log.error("RAG processing failed for query: {}", query, e);
-            return "I'm sorry, I'm having trouble processing your request right now. " +
-                   "Please try rephrasing your question or contact support if the issue persists.";
+            ragMetrics.recordQuery(requestTimer, request.getSection(), "error");
+            log.warn("RAG batch query {} failed: {}", index, e.getMessage());
+            return new BatchQueryResult(index, request.getQuery(), null, e.getMessage());
+        }
+    }
+
+    /**
+     * Embed the batch's distinct questions in a few upstream calls and pin the results,
+     * so the FAQ lookup, answer cache and vector search of each question reuse them
+     * whether or not the embedding cache is enabled
+     */
+    private PrecomputedEmbeddingClient.Pin embedQuestions(List<ChatRequest> requests, int batchSize) {
+        List<String> queries = requests.stream()
+            .map(ChatRequest::getQuery)
+            .filter(Objects::nonNull)
+            .distinct()
+            .toList();
+        Map<String, List<Double>> embeddings = new HashMap<>();
+        int size = Math.max(1, batchSize);
+        for (int from = 0; from < queries.size(); from += size) {
+            List<String> chunk = queries.subList(from, Math.min(from + size, queries.size()));
+            try {
+                List<List<Double>> embedded = ragMetrics.timeStage("embed", null, () -> embeddingClient.embed(chunk));
+                for (int i = 0; i < chunk.size(); i++) {
+                    embeddings.put(chunk.get(i), embedded.get(i));
+                }
+            } catch (Exception e) {
+                log.warn("Batch pre-embedding failed, remaining questions will be embedded one by one: {}",
+                        e.getMessage());
+                break;
+            }
+        }
+        return precomputedEmbeddingClient.pin(embeddings);
+    }
+
+    /**
+     * Answers that need neither retrieval nor generation, in order: the curated
+     * answer of a stored Q&A with the same question, of one with a near-identical
+     * question, then a cached answer to a near-identical earlier query.
+     * The query embedding is computed at most once and returned for the cache put.
+     */
+    private Shortcut shortcut(String query, String section, String subsection) {
+        if (faqIndex.isEnabled()) {
+            Optional<FaqIndex.Match> exact = faqIndex.exactMatch(query, section, subsection);
+            if (exact.isPresent()) {
+                log.info("RAG query answered from FAQ (exact): section={}, subsection={}", section, subsection);
+                return new Shortcut(exact.get().answer(), true, null);
+            }
+        }
+        if (!faqIndex.isEnabled() && !answerCache.isEnabled()) {
+            return new Shortcut(null, false, null);
+        }
+
+        float[] queryEmbedding = embedQuery(query, section);
+        if (faqIndex.isEnabled()) {
+            Optional<FaqIndex.Match> similar = faqIndex.similarMatch(queryEmbedding, section, subsection);
+            if (similar.isPresent()) {
+                log.info("RAG query answered from FAQ: section={}, subsection={}, similarity={}",
+                        section, subsection, similar.get().similarity());
+                return new Shortcut(similar.get().answer(), true, queryEmbedding);
+            }
         }
+        if (answerCache.isEnabled()) {
+            Optional<String> cached = answerCache.lookup(section, subsection, queryEmbedding);
+            if (cached.isPresent()) {
+                log.info("RAG query answered from cache: section={}, subsection={}", section, subsection);
+                return new Shortcut(cached.get(), false, queryEmbedding);
+            }
+        }
+        return new Shortcut(null, false, queryEmbedding);
+    }
+
+    /**
+     * While the chat circuit is open: the closest FAQ or cached answer under the looser
+     * fallback threshold. Without one the query fails fast with CircuitOpenException
+     * instead of waiting on an upstream that is known to be failing.
+     */
+    private Shortcut fallback(String query, String section, String subsection, float[] queryEmbedding) {
+        double threshold = resilienceProperties.getFallbackSimilarityThreshold();
+        if (queryEmbedding != null) {
+            if (faqIndex.isEnabled()) {
+                Optional<FaqIndex.Match> faq = faqIndex.similarMatch(queryEmbedding, section, subsection, threshold);
+                if (faq.isPresent()) {
+                    log.info("RAG query answered from FAQ while chat is unavailable: section={}, similarity={}",
+                            section, faq.get().similarity());
+                    return new Shortcut(faq.get().answer(), true, queryEmbedding);
+                }
+            }
+            if (answerCache.isEnabled()) {
+                Optional<String> cached = answerCache.lookup(section, subsection, queryEmbedding, threshold);
+                if (cached.isPresent()) {
+                    log.info("RAG query answered from cache while chat is unavailable: section={}", section);
+                    return new Shortcut(cached.get(), false, queryEmbedding);
+                }
+            }
+        }
+        throw new CircuitOpenException("chat");
+    }
+
+    Prompt buildPrompt(String query, String section, String subsection, String context) {
+        return buildPrompt(query, section, subsection, context, "");
+    }
+
+    /**
+     * Prompt with the bounded conversation history placed between the context and the question
+     */
+    Prompt buildPrompt(String query, String section, String subsection, String context, String history) {
+        String systemPrompt = String.format("""
+            You are a helpful tax-filing assistant for Befiler.com, specializing in Pakistani tax law.
+
+            Use the context below to answer the user's question. Prioritize accuracy and be specific.
+            If the context doesn't contain sufficient information, acknowledge this and suggest
+            consulting with a tax professional or checking official FBR documentation.
+
+            When answering:
+            1. Be direct and practical
+            2. Use simple language
+            3. Provide actionable advice when possible
+            4. Reference relevant sections/subsections when helpful
+
+            Context:
+            %s
+
+            Current section: %s
+            Current subsection: %s
+            """, context, section != null ? section : "General", subsection != null ? subsection : "N/A");
+
+        String conversation = history.isEmpty() ? "" : "\n\nConversation so far:\n" + history;
+        List<Message> messages = List.of(
+            new UserMessage(systemPrompt + conversation + "\n\nUser Question: " + query)
+        );
+        return new Prompt(messages);
+    }
+
+    /**
+     * Follow-up rewritten into a standalone question for the shortcuts and retrieval
+     */
+    private String standaloneQuery(String history, String query, String section) {
+        if (history.isEmpty()) {
+            return query;
+        }
+        String standalone = ragMetrics.timeStage("rewrite", section, () ->
+            conversationService.standaloneQuery(history, query));
+        if (!standalone.equals(query)) {
+            log.debug("Follow-up rewritten: '{}' -> '{}'", query, standalone);
+        }
+        return standalone;
+    }
+
+    /**
+     * Query embedding for the FAQ index and answer cache. With the embedding cache
+     * enabled the store reuses it, so the search stage then measures the search alone.
+     */
+    private float[] embedQuery(String query, String section) {
+        return ragMetrics.timeStage("embed", section, () ->
+            VectorMath.toNormalizedFloats(embeddingClient.embed(query)));
+    }
+
+    /**
+     * Token usage as reported by the model, or counted locally when the response
+     * carries none (streamed completions)
+     */
+    private void recordTokens(String section, Prompt prompt,
+                              org.springframework.ai.chat.ChatResponse completion, String answer) {
+        Usage usage = completion != null && completion.getMetadata() != null
+            ? completion.getMetadata().getUsage() : null;
+        long promptTokens = usage != null && usage.getPromptTokens() != null && usage.getPromptTokens() > 0
+            ? usage.getPromptTokens() : tokenCounter.count(prompt.getContents());
+        long completionTokens = usage != null && usage.getGenerationTokens() != null && usage.getGenerationTokens() > 0
+            ? usage.getGenerationTokens() : tokenCounter.count(answer);
+        ragMetrics.recordTokens(section, promptTokens, completionTokens);
+    }
+
+    private RetrievalMode retrievalMode(ChatRequest request) {
+        return request.getRetrievalMode() != null ? request.getRetrievalMode() : ragProperties.getRetrievalMode();
+    }
+
+    private static String chunkContent(org.springframework.ai.chat.ChatResponse chunk) {
+        if (chunk.getResult() == null || chunk.getResult().getOutput() == null) {
+            return null;
+        }
+        return chunk.getResult().getOutput().getContent();
+    }
+
+    /**
+     * Outcome of the FAQ and answer-cache lookups; answer is null when neither matched
+     */
+    private record Shortcut(String answer, boolean faqMatch, float[] queryEmbedding) {
+    }
+
+    /**
+     * Per-batch bounds on the upstream stages; aborted stops questions that have not
+     * reached the chat model yet
+     */
+    private record BatchLimits(Semaphore searches, RatePacer completions, AtomicBoolean aborted) {
+
+        <T> T search(Supplier<T> work) {
+            checkAborted();
+            try {
+                searches.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while waiting for a search slot");
+            }
+            try {
+                return work.get();
+            } finally {
+                searches.release();
+            }
+        }
+
+        void awaitCompletionSlot() {
+            checkAborted();
+            completions.await();
+            checkAborted();
+        }
+
+        private void checkAborted() {
+            if (aborted.get()) {
+                throw new CancellationException("Batch aborted");
+            }
+        }
+    }
+
+    /**
+     * Retrieval metadata plus the lazily-started token stream
+     */
+    public record StreamingAnswer(ChatStreamMetadata metadata, Flux<String> tokens) {
     }
 }
@@ -0,0 +1,42 @@
+package com.befiler.assistant.service;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Spaces calls evenly at a fixed rate: each caller is given the next free slot
+ * and parks until it. Unlike a token bucket there is no burst, so a batch
+ * reaches the upstream as a steady trickle rather than in waves.
+ */
+public class RatePacer {
+
+    private final long intervalNanos;
+    private final AtomicLong nextSlot;
+
+    public RatePacer(double permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.nextSlot = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Wait for this caller's slot
+     */
+    public void await() {
+        long now = System.nanoTime();
+        long slot = nextSlot.getAndAccumulate(now, (next, current) -> Math.max(next, current) + intervalNanos);
+        long start = Math.max(slot, now);
+        long wait;
+        while ((wait = start - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while waiting for a rate slot");
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.befiler.assistant.service;
+
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+
+/**
+ * Re-orders retrieved candidates before context packing. Implementations return
+ * copies carrying their score in the "rerank_score" metadata key (0..1, higher is
+ * better), which ContextAssembler prefers over the retriever's own relevance.
+ */
+public interface Reranker {
+
+    List<Document> rerank(String query, List<Document> candidates);
+}
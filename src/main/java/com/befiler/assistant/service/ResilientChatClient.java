@@ -0,0 +1,53 @@
+package com.befiler.assistant.service;
+
+import org.springframework.ai.chat.ChatClient;
+import org.springframework.ai.chat.ChatResponse;
+import org.springframework.ai.chat.StreamingChatClient;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Chat client decorator applying the chat upstream's resilience policy.
+ * Streams are not retried or hedged, since tokens may already have reached the
+ * client; they fail fast while the circuit is open and time out when the
+ * upstream stops producing tokens for longer than the deadline.
+ */
+public class ResilientChatClient implements ChatClient, StreamingChatClient {
+
+    private final ChatClient delegate;
+    private final StreamingChatClient streamingDelegate;
+    private final UpstreamGuard guard;
+
+    public ResilientChatClient(ChatClient delegate, StreamingChatClient streamingDelegate, UpstreamGuard guard) {
+        this.delegate = delegate;
+        this.streamingDelegate = streamingDelegate;
+        this.guard = guard;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        return guard.call(() -> delegate.call(prompt));
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return Flux.defer(() -> {
+            guard.acquirePermission();
+            return streamingDelegate.stream(prompt)
+                .timeout(guard.policy().getTimeout())
+                .onErrorMap(TimeoutException.class,
+                    e -> new UpstreamTimeoutException(guard.getName(), guard.policy().getTimeout()))
+                .doOnComplete(guard::onSuccess)
+                .doOnError(e -> {
+                    if (e instanceof UpstreamBusyException) {
+                        guard.onIgnored();
+                    } else {
+                        guard.onFailure(e);
+                    }
+                })
+                .doOnCancel(guard::onIgnored);
+        });
+    }
+}
@@ -0,0 +1,48 @@
+package com.befiler.assistant.service;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingClient;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.List;
+
+/**
+ * Embedding client decorator applying the embedding upstream's deadline, retry,
+ * hedging and circuit-breaker policy
+ */
+public class ResilientEmbeddingClient implements EmbeddingClient {
+
+    private final EmbeddingClient delegate;
+    private final UpstreamGuard guard;
+
+    public ResilientEmbeddingClient(EmbeddingClient delegate, UpstreamGuard guard) {
+        this.delegate = delegate;
+        this.guard = guard;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return guard.call(() -> delegate.call(request));
+    }
+
+    @Override
+    public List<Double> embed(String text) {
+        return guard.call(() -> delegate.embed(text));
+    }
+
+    @Override
+    public List<List<Double>> embed(List<String> texts) {
+        return guard.call(() -> delegate.embed(texts));
+    }
+
+    @Override
+    public List<Double> embed(Document document) {
+        return guard.call(() -> delegate.embed(document));
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+}
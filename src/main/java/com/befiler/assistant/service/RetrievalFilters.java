@@ -0,0 +1,57 @@
+package com.befiler.assistant.service;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder.Op;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds metadata filter expressions so section/subsection/type scoping
+ * runs inside the vector store query instead of after it
+ */
+public final class RetrievalFilters {
+
+    private static final FilterExpressionBuilder BUILDER = new FilterExpressionBuilder();
+
+    private RetrievalFilters() {
+    }
+
+    /**
+     * Scope by section and subsection only
+     */
+    public static Filter.Expression scope(String section, String subsection) {
+        return scope(section, subsection, null);
+    }
+
+    /**
+     * Scope by section, subsection and document type. Null or blank values
+     * are left unconstrained; returns null when nothing is constrained.
+     */
+    public static Filter.Expression scope(String section, String subsection, String type) {
+        List<Op> clauses = new ArrayList<>();
+        if (hasText(section)) {
+            clauses.add(BUILDER.eq("section", section));
+        }
+        if (hasText(subsection)) {
+            clauses.add(BUILDER.eq("subsection", subsection));
+        }
+        if (hasText(type)) {
+            clauses.add(BUILDER.eq("type", type));
+        }
+        if (clauses.isEmpty()) {
+            return null;
+        }
+
+        Op combined = clauses.get(0);
+        for (int i = 1; i < clauses.size(); i++) {
+            combined = BUILDER.and(combined, clauses.get(i));
+        }
+        return combined.build();
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+}
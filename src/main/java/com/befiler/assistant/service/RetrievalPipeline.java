@@ -0,0 +1,76 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.RagProperties;
+import com.befiler.assistant.model.RetrievalMode;
+import com.befiler.assistant.service.ContextAssembler.AssembledContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Retrieval half of answering a question: search, optional re-ranking, neighbour
+ * expansion and context packing, with each stage timed. Knows nothing of sessions,
+ * shortcuts or the chat model, so it can be exercised on its own.
+ */
+@Component
+@RequiredArgsConstructor
+public class RetrievalPipeline {
+
+    private final DocumentRetriever documentRetriever;
+    private final ContextAssembler contextAssembler;
+    private final RagProperties ragProperties;
+    private final RagMetrics ragMetrics;
+    private final ObjectProvider<Reranker> reranker;
+
+    /**
+     * Search for relevant documents and pack them into a token-budgeted context.
+     * With a re-ranker, a wider candidate set is retrieved and re-ordered first;
+     * plain vector retrieval without one is sized per request (see adaptiveSearch).
+     * Matched chunks are then expanded with their neighbours when configured.
+     */
+    public RetrievedContext retrieve(String query, String section, String subsection, RetrievalMode mode) {
+        Reranker activeReranker = reranker.getIfAvailable();
+        int candidates = activeReranker != null
+            ? Math.max(ragProperties.getTopK(), ragProperties.getRerank().getCandidates())
+            : ragProperties.getTopK();
+        String policy = "fixed";
+        List<Document> retrievedDocs;
+        if (activeReranker == null && mode == RetrievalMode.VECTOR && ragProperties.getAdaptive().isEnabled()) {
+            DocumentRetriever.AdaptiveResult adaptive = ragMetrics.timeStage("search", section, () ->
+                documentRetriever.adaptiveSearch(query, section, subsection));
+            ragMetrics.recordAdaptiveSearch(section, adaptive.outcome(), adaptive.requested(),
+                adaptive.searches(), candidates);
+            policy = adaptive.outcome();
+            retrievedDocs = adaptive.documents();
+        } else {
+            retrievedDocs = ragMetrics.timeStage("search", section, () ->
+                documentRetriever.retrieve(query, section, subsection, mode, candidates));
+        }
+        List<Document> rankedDocs = activeReranker == null ? retrievedDocs
+            : ragMetrics.timeStage("rerank", section, () -> activeReranker.rerank(query, retrievedDocs));
+        // Ranking works on the focused chunks; only the final set is widened
+        List<Document> relevantDocs = ragProperties.getChunks().getExpandNeighbours() > 0
+            ? ragMetrics.timeStage("expand", section, () -> documentRetriever.expandNeighbours(rankedDocs))
+            : rankedDocs;
+        AssembledContext assembled = ragMetrics.timeStage("context", section, () ->
+            contextAssembler.assemble(relevantDocs));
+        ragMetrics.recordDocuments(section, relevantDocs.size(),
+            assembled.generalInfo().size() + assembled.qaPairs().size());
+        ragMetrics.recordContextTokens(section, policy, assembled.tokens());
+        return new RetrievedContext(relevantDocs, assembled.generalInfo(), assembled.qaPairs(),
+            assembled.context(), assembled.tokens());
+    }
+
+    /**
+     * Documents selected for a query and the context string built from them
+     */
+    public record RetrievedContext(List<Document> documents,
+                                   List<Document> generalInfo,
+                                   List<Document> qaPairs,
+                                   String context,
+                                   int contextTokens) {
+    }
+}
@@ -0,0 +1,217 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.CacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Semantic response cache in front of RagService.
+ * Answers are keyed by (section, subsection, query embedding) and reused when a new
+ * query in the same scope is within the configured cosine similarity threshold.
+ * Bounded by LRU order and TTL; entries are invalidated when DocumentService writes
+ * into a section they could have drawn context from.
+ * Entries are also kept per scope in arrays that are replaced, never modified, under
+ * the lock, so a lookup scores only its own scope and does so without holding the lock;
+ * the lock is taken again only to refresh the LRU position of a hit. A lookup that is
+ * already scanning when its section changes may still return the answer from before.
+ */
+@Component
+@Slf4j
+public class SemanticAnswerCache {
+
+    private final CacheProperties.Answers settings;
+    private final Clock clock;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter invalidations;
+
+    // Access-ordered so iteration starts from the least recently used entry
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Scope key -> its entries; written only while holding the entries lock
+    private final Map<String, Entry[]> byScope = new ConcurrentHashMap<>();
+    private long nextId;
+
+    public SemanticAnswerCache(CacheProperties cacheProperties, MeterRegistry meterRegistry) {
+        this.settings = cacheProperties.getAnswers();
+        this.clock = Clock.systemUTC();
+        this.hits = Counter.builder("rag.answer.cache")
+            .tag("result", "hit")
+            .description("Answers served from the semantic cache")
+            .register(meterRegistry);
+        this.misses = Counter.builder("rag.answer.cache")
+            .tag("result", "miss")
+            .description("Queries that required full RAG processing")
+            .register(meterRegistry);
+        this.invalidations = Counter.builder("rag.answer.cache.invalidations")
+            .description("Cached answers dropped because their section changed")
+            .register(meterRegistry);
+        meterRegistry.gauge("rag.answer.cache.size", entries, Map::size);
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    /**
+     * Find the most similar cached answer in the same scope, if it clears the threshold
+     */
+    public Optional<String> lookup(String section, String subsection, float[] queryEmbedding) {
+        return lookup(section, subsection, queryEmbedding, settings.getSimilarityThreshold());
+    }
+
+    /**
+     * Same as lookup, with a caller-chosen similarity threshold
+     */
+    public Optional<String> lookup(String section, String subsection, float[] queryEmbedding, double threshold) {
+        String scope = scopeKey(section, subsection);
+        Instant now = clock.instant();
+
+        Entry best = null;
+        float bestScore = (float) threshold;
+        boolean expired = false;
+        for (Entry entry : byScope.getOrDefault(scope, new Entry[0])) {
+            if (entry.expiresAt().isBefore(now)) {
+                expired = true;
+                continue;
+            }
+            if (entry.embedding().length != queryEmbedding.length) {
+                continue;
+            }
+            float score = VectorMath.dot(entry.embedding(), queryEmbedding);
+            if (score >= bestScore) {
+                best = entry;
+                bestScore = score;
+            }
+        }
+        if (expired) {
+            removeExpired(scope, now);
+        }
+
+        if (best == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        synchronized (entries) {
+            // Touch to refresh LRU position
+            entries.get(best.id());
+        }
+        hits.increment();
+        log.debug("Semantic cache hit: scope={}, similarity={}", scope, bestScore);
+        return Optional.of(best.answer());
+    }
+
+    public void put(String section, String subsection, float[] queryEmbedding, String answer) {
+        synchronized (entries) {
+            long id = nextId++;
+            Entry entry = new Entry(id, scopeKey(section, subsection), normalizedSection(section),
+                queryEmbedding, answer, clock.instant().plus(settings.getTtl()));
+            entries.put(id, entry);
+            addToScope(entry);
+            while (entries.size() > settings.getMaxEntries()) {
+                Iterator<Entry> eldest = entries.values().iterator();
+                Entry evicted = eldest.next();
+                eldest.remove();
+                rebuildScope(evicted.scope());
+            }
+        }
+    }
+
+    /**
+     * Drop answers that could have used content from the changed section.
+     * Unscoped answers searched every section, so they are always dropped.
+     */
+    @EventListener
+    public void onSectionChanged(KnowledgeSectionChangedEvent event) {
+        String section = normalizedSection(event.section());
+        int removed = 0;
+        synchronized (entries) {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (section.isEmpty() || entry.section().isEmpty() || entry.section().equals(section)) {
+                    it.remove();
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                byScope.clear();
+                entries.values().forEach(this::addToScope);
+            }
+        }
+        if (removed > 0) {
+            invalidations.increment(removed);
+            log.info("Invalidated {} cached answers for section={}", removed, event.section());
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            byScope.clear();
+        }
+    }
+
+    private void removeExpired(String scope, Instant now) {
+        synchronized (entries) {
+            for (Entry entry : byScope.getOrDefault(scope, new Entry[0])) {
+                if (entry.expiresAt().isBefore(now)) {
+                    entries.remove(entry.id());
+                }
+            }
+            rebuildScope(scope);
+        }
+    }
+
+    /**
+     * The scope's array with the entry appended; called with the lock held
+     */
+    private void addToScope(Entry entry) {
+        byScope.merge(entry.scope(), new Entry[] {entry}, (current, added) -> {
+            Entry[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = entry;
+            return grown;
+        });
+    }
+
+    /**
+     * Replace a scope's array with its entries still in the map; called with the lock held
+     */
+    private void rebuildScope(String scope) {
+        Entry[] current = byScope.get(scope);
+        if (current == null) {
+            return;
+        }
+        Entry[] remaining = Arrays.stream(current)
+            .filter(entry -> entries.containsKey(entry.id()))
+            .toArray(Entry[]::new);
+        if (remaining.length == 0) {
+            byScope.remove(scope);
+        } else {
+            byScope.put(scope, remaining);
+        }
+    }
+
+    private static String scopeKey(String section, String subsection) {
+        return normalizedSection(section) + "|" + normalizedSection(subsection);
+    }
+
+    private static String normalizedSection(String value) {
+        return value == null ? "" : value.trim().toLowerCase();
+    }
+
+    private record Entry(long id, String scope, String section, float[] embedding,
+                         String answer, Instant expiresAt) {
+    }
+}
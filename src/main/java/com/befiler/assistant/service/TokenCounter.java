@@ -0,0 +1,20 @@
+package com.befiler.assistant.service;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import org.springframework.stereotype.Component;
+
+/**
+ * Local tokenizer (cl100k_base, as used by the OpenAI chat and embedding models)
+ * for budgeting prompt size without an upstream call
+ */
+@Component
+public class TokenCounter {
+
+    private final Encoding encoding = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+
+    public int count(String text) {
+        return text == null || text.isEmpty() ? 0 : encoding.countTokens(text);
+    }
+}
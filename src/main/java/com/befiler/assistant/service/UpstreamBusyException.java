@@ -0,0 +1,11 @@
+package com.befiler.assistant.service;
+
+/**
+ * Thrown when an upstream's concurrency limit stays saturated past the acquire timeout
+ */
+public class UpstreamBusyException extends RuntimeException {
+
+    public UpstreamBusyException(String upstream) {
+        super("Upstream " + upstream + " is at its concurrency limit");
+    }
+}
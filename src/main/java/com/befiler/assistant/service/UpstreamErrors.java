@@ -0,0 +1,107 @@
+package com.befiler.assistant.service;
+
+import org.springframework.ai.openai.api.OpenAiApi.OpenAiApiException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Classifies upstream failures as transient (worth retrying) or not
+ */
+public final class UpstreamErrors {
+
+    // OpenAiApiException carries the HTTP status only as the "<status> - <body>" message prefix
+    private static final Pattern OPENAI_STATUS = Pattern.compile("^\\s*(\\d{3})\\b");
+
+    private UpstreamErrors() {
+    }
+
+    /**
+     * True for throttling (429), server errors (5xx), I/O timeouts, missed deadlines,
+     * open circuits and local concurrency-limit rejections anywhere in the cause chain.
+     * HTTP errors from the OpenAI clients arrive as OpenAiApiException and are classified
+     * by the status at the start of their message.
+     */
+    public static boolean isTransient(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof UpstreamBusyException || t instanceof ResourceAccessException
+                    || t instanceof UpstreamTimeoutException || t instanceof CircuitOpenException) {
+                return true;
+            }
+            if (t instanceof RestClientResponseException response) {
+                int status = response.getStatusCode().value();
+                return isTransientStatus(status);
+            }
+            if (t instanceof OpenAiApiException) {
+                int status = openAiStatus(t.getMessage());
+                if (status > 0) {
+                    return isTransientStatus(status);
+                }
+            }
+            String message = t.getMessage();
+            if (message != null) {
+                String lower = message.toLowerCase(Locale.ROOT);
+                if (lower.contains("429") || lower.contains("too many requests") || lower.contains("rate limit")) {
+                    return true;
+                }
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True for HTTP 4xx responses other than 408 and 429, from the blocking or the
+     * streaming client: the upstream rejected this request, which says nothing about
+     * its health
+     */
+    public static boolean isClientError(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            int status = status(t);
+            if (status > 0) {
+                return status >= 400 && status < 500 && status != 408 && status != 429;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * HTTP status carried by the exception, or -1
+     */
+    private static int status(Throwable t) {
+        if (t instanceof RestClientResponseException response) {
+            return response.getStatusCode().value();
+        }
+        if (t instanceof WebClientResponseException response) {
+            return response.getStatusCode().value();
+        }
+        if (t instanceof OpenAiApiException) {
+            return openAiStatus(t.getMessage());
+        }
+        return -1;
+    }
+
+    private static boolean isTransientStatus(int status) {
+        return status == 429 || status >= 500;
+    }
+
+    /**
+     * HTTP status of an OpenAiApiException, or -1 when the message does not start with one
+     */
+    static int openAiStatus(String message) {
+        if (message == null) {
+            return -1;
+        }
+        Matcher matcher = OPENAI_STATUS.matcher(message);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+}
@@ -0,0 +1,204 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.ResilienceProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Resilience policy for one upstream: a deadline per call, retries with jittered
+ * backoff on transient errors, an optional hedged second request when the first
+ * is slow, and a circuit breaker that fails fast while the upstream is unhealthy.
+ * Attempts run on the given executor so the caller can stop waiting at the deadline.
+ * Requests the upstream rejects as invalid (4xx other than 408 and 429) are not
+ * retried and do not count towards opening the circuit.
+ */
+@Slf4j
+public class UpstreamGuard {
+
+    enum Outcome { SUCCESS, FAILURE, TIMEOUT, REJECTED, CLIENT_ERROR }
+
+    private final String name;
+    private final ResilienceProperties.Policy policy;
+    private final ExecutorService executor;
+    private final CircuitBreaker circuitBreaker;
+    private final Map<Outcome, Counter> outcomes = new EnumMap<>(Outcome.class);
+    private final Counter retries;
+    private final Counter hedges;
+
+    public UpstreamGuard(String name, ResilienceProperties.Policy policy, ExecutorService executor,
+                         MeterRegistry meterRegistry) {
+        this.name = name;
+        this.policy = policy;
+        this.executor = executor;
+        this.circuitBreaker = new CircuitBreaker(name, policy.getCircuitBreaker(), meterRegistry);
+        for (Outcome outcome : Outcome.values()) {
+            outcomes.put(outcome, Counter.builder("rag.upstream.calls")
+                .tag("upstream", name)
+                .tag("outcome", outcome.name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry));
+        }
+        this.retries = Counter.builder("rag.upstream.retries").tag("upstream", name).register(meterRegistry);
+        this.hedges = Counter.builder("rag.upstream.hedges").tag("upstream", name).register(meterRegistry);
+    }
+
+    /**
+     * Run an idempotent call under the policy; it may be issued more than once
+     */
+    public <T> T call(Supplier<T> call) {
+        acquirePermission();
+        long deadline = System.nanoTime() + policy.getTimeout().toNanos();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                T result = attempt(call, deadline);
+                onSuccess();
+                return result;
+            } catch (UpstreamBusyException | CancellationException e) {
+                // Local saturation or a caller giving up says nothing about the upstream
+                circuitBreaker.onIgnored();
+                throw e;
+            } catch (RuntimeException e) {
+                long backoff = backoffNanos(attempt);
+                if (e instanceof UpstreamTimeoutException || attempt >= policy.getMaxRetries()
+                        || !UpstreamErrors.isTransient(e) || System.nanoTime() + backoff >= deadline) {
+                    onFailure(e);
+                    throw e;
+                }
+                retries.increment();
+                log.debug("Upstream {} attempt {} failed, retrying in {} ms: {}",
+                        name, attempt + 1, TimeUnit.NANOSECONDS.toMillis(backoff), e.getMessage());
+                sleep(backoff);
+            }
+        }
+    }
+
+    /**
+     * Fail fast with CircuitOpenException unless the breaker lets a call through.
+     * For calls driven outside call(), such as streams, which then report their outcome.
+     */
+    public void acquirePermission() {
+        if (!circuitBreaker.tryAcquire()) {
+            outcomes.get(Outcome.REJECTED).increment();
+            throw new CircuitOpenException(name);
+        }
+    }
+
+    public void onSuccess() {
+        outcomes.get(Outcome.SUCCESS).increment();
+        circuitBreaker.onSuccess();
+    }
+
+    /**
+     * Record a failed call; a client error is counted but leaves the breaker alone
+     */
+    public void onFailure(Throwable error) {
+        if (UpstreamErrors.isClientError(error)) {
+            outcomes.get(Outcome.CLIENT_ERROR).increment();
+            circuitBreaker.onIgnored();
+            return;
+        }
+        outcomes.get(error instanceof UpstreamTimeoutException ? Outcome.TIMEOUT : Outcome.FAILURE).increment();
+        circuitBreaker.onFailure();
+    }
+
+    public void onIgnored() {
+        circuitBreaker.onIgnored();
+    }
+
+    public boolean isOpen() {
+        return circuitBreaker.isOpen();
+    }
+
+    public ResilienceProperties.Policy policy() {
+        return policy;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * One attempt, hedged when enabled: the first of the two requests to succeed wins
+     * and the other is cancelled
+     */
+    private <T> T attempt(Supplier<T> call, long deadline) {
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        List<Future<?>> running = new ArrayList<>(2);
+        running.add(executor.submit(() -> complete(call, winner, pending)));
+        try {
+            long hedgeDelay = policy.getHedgeDelay() != null ? policy.getHedgeDelay().toNanos() : 0;
+            if (hedgeDelay > 0 && hedgeDelay < deadline - System.nanoTime()) {
+                try {
+                    return winner.get(hedgeDelay, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException slow) {
+                    pending.incrementAndGet();
+                    hedges.increment();
+                    running.add(executor.submit(() -> complete(call, winner, pending)));
+                }
+            }
+            return winner.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new UpstreamTimeoutException(name, policy.getTimeout());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for upstream " + name);
+        } finally {
+            running.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private static <T> void complete(Supplier<T> call, CompletableFuture<T> winner, AtomicInteger pending) {
+        try {
+            winner.complete(call.get());
+        } catch (Throwable t) {
+            // The attempt fails only when every request it issued has failed
+            if (pending.decrementAndGet() == 0) {
+                winner.completeExceptionally(t);
+            }
+        }
+    }
+
+    /**
+     * Exponential backoff with jitter in [base/2, base]
+     */
+    private long backoffNanos(int attempt) {
+        long base = Math.min(policy.getMaxBackoff().toNanos(),
+            policy.getInitialBackoff().toNanos() << Math.min(attempt, 20));
+        return base / 2 + ThreadLocalRandom.current().nextLong(base / 2 + 1);
+    }
+
+    private void sleep(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            circuitBreaker.onIgnored();
+            throw new CancellationException("Interrupted while backing off from upstream " + name);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.ResilienceProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Resilience policies for the OpenAI upstreams. Attempts always run on virtual
+ * threads: they only wait on I/O, and running them on the bounded platform pool
+ * could starve the fan-out tasks that are themselves waiting for them.
+ */
+public class UpstreamGuards implements AutoCloseable {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final UpstreamGuard chat;
+    private final UpstreamGuard embedding;
+
+    public UpstreamGuards(ResilienceProperties properties, MeterRegistry meterRegistry) {
+        this.chat = new UpstreamGuard("chat", properties.getChat(), executor, meterRegistry);
+        this.embedding = new UpstreamGuard("embedding", properties.getEmbedding(), executor, meterRegistry);
+    }
+
+    public UpstreamGuard chat() {
+        return chat;
+    }
+
+    public UpstreamGuard embedding() {
+        return embedding;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,82 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.UpstreamProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bounded concurrency for one upstream (chat, embedding, vector store).
+ * With virtual threads there is no thread pool to cap in-flight calls, so each
+ * upstream gets its own permit count; callers wait up to the acquire timeout
+ * and then fail fast with UpstreamBusyException.
+ */
+public class UpstreamLimiter {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final Duration acquireTimeout;
+    private final Semaphore permits;
+    private final Counter rejections;
+
+    public UpstreamLimiter(String name, UpstreamProperties.Limit limit, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.maxConcurrent = limit.getMaxConcurrent();
+        this.acquireTimeout = limit.getAcquireTimeout();
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.rejections = Counter.builder("rag.upstream.rejections")
+            .tag("upstream", name)
+            .description("Calls rejected because the upstream concurrency limit stayed saturated")
+            .register(meterRegistry);
+        Gauge.builder("rag.upstream.in_flight", permits, p -> maxConcurrent - p.availablePermits())
+            .tag("upstream", name)
+            .register(meterRegistry);
+    }
+
+    public <T> T call(Supplier<T> call) {
+        acquire();
+        try {
+            return call.get();
+        } finally {
+            release();
+        }
+    }
+
+    public void run(Runnable call) {
+        acquire();
+        try {
+            call.run();
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Take a permit for work that outlives the calling frame (e.g. a token stream).
+     * Every successful acquire must be paired with release().
+     */
+    public void acquire() {
+        try {
+            if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                rejections.increment();
+                throw new UpstreamBusyException(name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UpstreamBusyException(name);
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,33 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.UpstreamProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * One limiter per upstream, shared by the client decorators and by code that
+ * talks to an upstream directly (e.g. bulk JDBC writes)
+ */
+public class UpstreamLimiters {
+
+    private final UpstreamLimiter chat;
+    private final UpstreamLimiter embedding;
+    private final UpstreamLimiter vectorStore;
+
+    public UpstreamLimiters(UpstreamProperties properties, MeterRegistry meterRegistry) {
+        this.chat = new UpstreamLimiter("chat", properties.getChat(), meterRegistry);
+        this.embedding = new UpstreamLimiter("embedding", properties.getEmbedding(), meterRegistry);
+        this.vectorStore = new UpstreamLimiter("vector-store", properties.getVectorStore(), meterRegistry);
+    }
+
+    public UpstreamLimiter chat() {
+        return chat;
+    }
+
+    public UpstreamLimiter embedding() {
+        return embedding;
+    }
+
+    public UpstreamLimiter vectorStore() {
+        return vectorStore;
+    }
+}
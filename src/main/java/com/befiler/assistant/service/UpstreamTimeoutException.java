@@ -0,0 +1,13 @@
+package com.befiler.assistant.service;
+
+import java.time.Duration;
+
+/**
+ * Thrown when an upstream call, retries included, does not finish within its deadline
+ */
+public class UpstreamTimeoutException extends RuntimeException {
+
+    public UpstreamTimeoutException(String upstream, Duration timeout) {
+        super("Upstream " + upstream + " did not answer within " + timeout.toMillis() + " ms");
+    }
+}
@@ -0,0 +1,50 @@
+package com.befiler.assistant.service;
+
+import java.util.List;
+
+/**
+ * Primitive float helpers for comparing embeddings without boxed Double lists
+ */
+public final class VectorMath {
+
+    private VectorMath() {
+    }
+
+    public static float[] toFloats(List<Double> embedding) {
+        float[] vector = new float[embedding.size()];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = embedding.get(i).floatValue();
+        }
+        return vector;
+    }
+
+    /**
+     * Copy to float[] and scale to unit length, so cosine similarity becomes a dot product
+     */
+    public static float[] toNormalizedFloats(List<Double> embedding) {
+        return normalize(toFloats(embedding));
+    }
+
+    public static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm == 0) {
+            return vector;
+        }
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    public static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
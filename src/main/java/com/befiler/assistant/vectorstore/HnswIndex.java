@@ -0,0 +1,359 @@
+package com.befiler.assistant.vectorstore;
+
+import com.befiler.assistant.config.VectorStoreProperties.Quantization;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+/**
+ * Hierarchical navigable small world graph over unit-length vectors.
+ * All vectors live in one contiguous VectorStorage block (float, int8 or binary),
+ * neighbour lists are int[] with the count in slot 0, so nothing on the search
+ * path is boxed. Similarity is the dot product, i.e. cosine for normalized input,
+ * or its quantized approximation.
+ * Not thread-safe; callers guard mutation with a write lock.
+ */
+final class HnswIndex {
+
+    private static final int MAX_LEVEL = 16;
+    private static final Comparator<Candidate> BEST_FIRST = (a, b) -> Float.compare(b.similarity, a.similarity);
+    private static final Comparator<Candidate> WORST_FIRST = (a, b) -> Float.compare(a.similarity, b.similarity);
+
+    private final int dimensions;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random;
+
+    private VectorStorage vectors;
+    private int[][][] links;
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    HnswIndex(int dimensions, int m, int efConstruction, int initialCapacity) {
+        this(dimensions, m, efConstruction, initialCapacity, Quantization.NONE);
+    }
+
+    HnswIndex(int dimensions, int m, int efConstruction, int initialCapacity, Quantization quantization) {
+        this.dimensions = dimensions;
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.random = new Random(42);
+        int capacity = Math.max(16, initialCapacity);
+        this.vectors = VectorStorage.create(quantization, dimensions, capacity);
+        this.links = new int[capacity][][];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int dimensions() {
+        return dimensions;
+    }
+
+    Quantization quantization() {
+        return vectors.quantization();
+    }
+
+    /**
+     * Approximate resident size of the vector block and the neighbour lists
+     */
+    long memoryBytes() {
+        long bytes = (long) size * vectors.bytesPerVector();
+        for (int node = 0; node < size; node++) {
+            for (int[] level : links[node]) {
+                bytes += (long) level.length * Integer.BYTES;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Insert a unit-length vector and return its node number
+     */
+    int add(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + vector.length);
+        }
+        ensureCapacity(size + 1);
+        int node = size;
+        vectors.set(node, vector);
+        VectorStorage.Scorer scorer = vectors.scorer(vector);
+
+        int level = randomLevel();
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[1 + (l == 0 ? maxM0 : m)];
+        }
+        size++;
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        int ep = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            ep = greedyClosest(scorer, ep, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Candidate> found = sortedBestFirst(searchLayer(scorer, ep, efConstruction, l));
+            for (int i = 0; i < Math.min(m, found.size()); i++) {
+                int neighbour = found.get(i).node;
+                link(node, neighbour, l);
+                link(neighbour, node, l);
+            }
+            ep = found.get(0).node;
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+        return node;
+    }
+
+    /**
+     * Approximate k nearest accepted nodes, best first. The layer-0 beam is
+     * max(ef, k) wide; rejected nodes are still traversed but not returned.
+     */
+    List<Candidate> search(float[] query, int k, int ef, IntPredicate accept) {
+        if (entryPoint < 0) {
+            return List.of();
+        }
+        VectorStorage.Scorer scorer = vectors.scorer(query);
+        int ep = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            ep = greedyClosest(scorer, ep, l);
+        }
+        List<Candidate> result = new ArrayList<>(k);
+        for (Candidate candidate : sortedBestFirst(searchLayer(scorer, ep, Math.max(ef, k), 0))) {
+            if (accept.test(candidate.node)) {
+                result.add(candidate);
+                if (result.size() == k) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Exact k nearest accepted nodes; used when a filter leaves few candidates
+     */
+    List<Candidate> exactSearch(float[] query, int k, IntPredicate accept) {
+        VectorStorage.Scorer scorer = vectors.scorer(query);
+        PriorityQueue<Candidate> best = new PriorityQueue<>(WORST_FIRST);
+        for (int node = 0; node < size; node++) {
+            if (!accept.test(node)) {
+                continue;
+            }
+            float similarity = scorer.similarity(node);
+            if (best.size() < k) {
+                best.add(new Candidate(node, similarity));
+            } else if (similarity > best.peek().similarity) {
+                best.poll();
+                best.add(new Candidate(node, similarity));
+            }
+        }
+        return sortedBestFirst(best);
+    }
+
+    /**
+     * Exact k nearest of the given nodes, for callers that already know the few
+     * nodes a filter accepts
+     */
+    List<Candidate> exactSearch(float[] query, int k, int[] nodes) {
+        VectorStorage.Scorer scorer = vectors.scorer(query);
+        PriorityQueue<Candidate> best = new PriorityQueue<>(WORST_FIRST);
+        for (int node : nodes) {
+            float similarity = scorer.similarity(node);
+            if (best.size() < k) {
+                best.add(new Candidate(node, similarity));
+            } else if (similarity > best.peek().similarity) {
+                best.poll();
+                best.add(new Candidate(node, similarity));
+            }
+        }
+        return sortedBestFirst(best);
+    }
+
+    float[] vector(int node) {
+        return vectors.decode(node);
+    }
+
+    private PriorityQueue<Candidate> searchLayer(VectorStorage.Scorer scorer, int entry, int ef, int level) {
+        BitSet visited = new BitSet(size);
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(BEST_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<>(WORST_FIRST);
+
+        Candidate start = new Candidate(entry, scorer.similarity(entry));
+        visited.set(entry);
+        candidates.add(start);
+        results.add(start);
+
+        while (!candidates.isEmpty()) {
+            Candidate current = candidates.poll();
+            if (results.size() >= ef && current.similarity < results.peek().similarity) {
+                break;
+            }
+            int[] neighbours = links[current.node][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int neighbour = neighbours[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float similarity = scorer.similarity(neighbour);
+                if (results.size() < ef || similarity > results.peek().similarity) {
+                    Candidate candidate = new Candidate(neighbour, similarity);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private int greedyClosest(VectorStorage.Scorer scorer, int entry, int level) {
+        int best = entry;
+        float bestSimilarity = scorer.similarity(entry);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbours = links[best][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                float similarity = scorer.similarity(neighbours[i]);
+                if (similarity > bestSimilarity) {
+                    bestSimilarity = similarity;
+                    best = neighbours[i];
+                    improved = true;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Add a directed edge; when the list is full keep only the closest neighbours
+     */
+    private void link(int from, int to, int level) {
+        int[] neighbours = links[from][level];
+        int count = neighbours[0];
+        int capacity = neighbours.length - 1;
+        if (count < capacity) {
+            neighbours[count + 1] = to;
+            neighbours[0] = count + 1;
+            return;
+        }
+
+        VectorStorage.Scorer fromScorer = vectors.scorer(vector(from));
+        PriorityQueue<Candidate> keep = new PriorityQueue<>(WORST_FIRST);
+        keep.add(new Candidate(to, fromScorer.similarity(to)));
+        for (int i = 1; i <= count; i++) {
+            keep.add(new Candidate(neighbours[i], fromScorer.similarity(neighbours[i])));
+            if (keep.size() > capacity) {
+                keep.poll();
+            }
+        }
+        int i = 1;
+        for (Candidate candidate : keep) {
+            neighbours[i++] = candidate.node;
+        }
+        neighbours[0] = keep.size();
+    }
+
+    private int randomLevel() {
+        double level = -Math.log(1.0 - random.nextDouble()) * levelMultiplier;
+        return Math.min((int) level, MAX_LEVEL);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= links.length) {
+            return;
+        }
+        int capacity = Math.max(required, links.length * 2);
+        vectors.grow(capacity);
+        links = Arrays.copyOf(links, capacity);
+    }
+
+    private static List<Candidate> sortedBestFirst(PriorityQueue<Candidate> queue) {
+        List<Candidate> sorted = new ArrayList<>(queue);
+        sorted.sort(BEST_FIRST);
+        return sorted;
+    }
+
+    /**
+     * Graph section of a snapshot: parameters, quantization, the contiguous vector
+     * block, then per-node neighbour lists
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(dimensions);
+        out.writeInt(m);
+        out.writeInt(efConstruction);
+        out.writeInt(size);
+        out.writeInt(entryPoint);
+        out.writeInt(maxLevel);
+        out.writeInt(vectors.quantization().ordinal());
+        vectors.writeTo(out, size);
+        for (int node = 0; node < size; node++) {
+            out.writeInt(links[node].length);
+            for (int[] level : links[node]) {
+                out.writeInt(level.length);
+                for (int value : level) {
+                    out.writeInt(value);
+                }
+            }
+        }
+    }
+
+    static HnswIndex readFrom(ByteBuffer in) {
+        int dimensions = in.getInt();
+        int m = in.getInt();
+        int efConstruction = in.getInt();
+        int size = in.getInt();
+        int entryPoint = in.getInt();
+        int maxLevel = in.getInt();
+        Quantization quantization = Quantization.values()[in.getInt()];
+        HnswIndex index = new HnswIndex(dimensions, m, efConstruction, size, quantization);
+        index.size = size;
+        index.entryPoint = entryPoint;
+        index.maxLevel = maxLevel;
+
+        // Bulk copy of the vector block straight out of the mapped file
+        index.vectors.readFrom(in, size);
+
+        for (int node = 0; node < size; node++) {
+            int[][] levels = new int[in.getInt()][];
+            for (int l = 0; l < levels.length; l++) {
+                int[] neighbours = new int[in.getInt()];
+                in.asIntBuffer().get(neighbours);
+                in.position(in.position() + neighbours.length * Integer.BYTES);
+                levels[l] = neighbours;
+            }
+            index.links[node] = levels;
+        }
+        return index;
+    }
+
+    record Candidate(int node, float similarity) {
+    }
+}
@@ -0,0 +1,590 @@
+package com.befiler.assistant.vectorstore;
+
+import com.befiler.assistant.config.VectorStoreProperties;
+import com.befiler.assistant.config.VectorStoreProperties.Quantization;
+import com.befiler.assistant.repository.VectorStoreRepository;
+import com.befiler.assistant.service.UpstreamLimiter;
+import com.befiler.assistant.service.VectorMath;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingClient;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * VectorStore that answers similarity searches from an in-process HNSW graph.
+ * pgvector stays the system of record: writes go through to it and are applied
+ * to the graph, and the graph is restored from a memory-mapped snapshot (or
+ * rebuilt from pgvector when the snapshot does not match the table) at startup.
+ * Deletes are tombstones; replaced documents get a new node. Once tombstones pass
+ * hnsw.compaction-threshold of the graph it is rebuilt from the live nodes, and
+ * snapshots only ever hold live nodes.
+ * With quantization the graph holds int8 or binary codes and the best
+ * topK * rerankFactor candidates are re-ranked with the exact float embeddings,
+ * read from a memory-mapped file beside the snapshot (see RerankVectors), or
+ * from pgvector when hnsw.rerank-vectors-path is empty.
+ */
+@Slf4j
+public class InMemoryHnswVectorStore implements VectorStore, InitializingBean, DisposableBean {
+
+    private static final int SNAPSHOT_MAGIC = 0x484E5357;
+    private static final int SNAPSHOT_VERSION = 5;
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private final VectorStore delegate;
+    private final VectorStoreRepository vectorStoreRepository;
+    private final EmbeddingClient embeddingClient;
+    private final EmbeddingClient documentEmbeddingClient;
+    private final UpstreamLimiter vectorStoreLimiter;
+    private final VectorStoreProperties.Hnsw settings;
+    private final ObjectMapper objectMapper;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private HnswIndex index;
+    private final List<String> ids = new ArrayList<>();
+    private final List<String> contents = new ArrayList<>();
+    private final List<Map<String, Object>> metadata = new ArrayList<>();
+    private final Map<String, Integer> nodesById = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private final RerankVectors rerankVectors;
+
+    public InMemoryHnswVectorStore(VectorStore delegate,
+                                   VectorStoreRepository vectorStoreRepository,
+                                   EmbeddingClient embeddingClient,
+                                   EmbeddingClient documentEmbeddingClient,
+                                   UpstreamLimiter vectorStoreLimiter,
+                                   VectorStoreProperties.Hnsw settings,
+                                   ObjectMapper objectMapper) {
+        this.delegate = delegate;
+        this.vectorStoreRepository = vectorStoreRepository;
+        this.embeddingClient = embeddingClient;
+        this.documentEmbeddingClient = documentEmbeddingClient;
+        this.vectorStoreLimiter = vectorStoreLimiter;
+        this.settings = settings;
+        this.objectMapper = objectMapper;
+        this.index = newIndex(0);
+        this.rerankVectors = openRerankVectors(settings);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        long start = System.nanoTime();
+        Map<String, String> storedVersions = vectorStoreRepository.findAllVersions();
+        long fingerprint = fingerprint(storedVersions);
+
+        if (loadSnapshot(fingerprint)) {
+            log.info("HNSW index restored from snapshot: {} documents in {} ms",
+                    nodesById.size(), (System.nanoTime() - start) / 1_000_000);
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            index = newIndex(storedVersions.size());
+            vectorStoreRepository.forEachEmbedded(row ->
+                insertLocked(row.id(), row.content(), row.metadata(), VectorMath.normalize(row.embedding())));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("HNSW index built from pgvector: {} documents in {} ms",
+                nodesById.size(), (System.nanoTime() - start) / 1_000_000);
+        writeSnapshot();
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        writeSnapshot();
+        if (rerankVectors != null) {
+            rerankVectors.close();
+        }
+    }
+
+    /**
+     * Write-through add: documents without embeddings are embedded in one batch,
+     * upserted into pgvector and then indexed
+     */
+    @Override
+    public void add(List<Document> documents) {
+        List<Document> missing = documents.stream()
+            .filter(doc -> doc.getEmbedding() == null || doc.getEmbedding().isEmpty())
+            .toList();
+        if (!missing.isEmpty()) {
+            List<List<Double>> embeddings = documentEmbeddingClient.embed(
+                missing.stream().map(Document::getContent).toList());
+            for (int i = 0; i < missing.size(); i++) {
+                missing.get(i).setEmbedding(embeddings.get(i));
+            }
+        }
+        vectorStoreLimiter.run(() -> vectorStoreRepository.upsertAll(documents, documents.size()));
+        index(documents);
+    }
+
+    /**
+     * Apply documents already stored in pgvector (with embeddings) to the graph
+     */
+    public void index(List<Document> documents) {
+        lock.writeLock().lock();
+        try {
+            for (Document doc : documents) {
+                insertLocked(doc.getId(), doc.getContent(), new HashMap<>(doc.getMetadata()),
+                    VectorMath.toNormalizedFloats(doc.getEmbedding()));
+            }
+            compactIfNeededLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Apply an insert-and-delete already committed to pgvector as one change,
+     * so no search sees the graph halfway between the two
+     */
+    public void replace(List<Document> added, Collection<String> removedIds) {
+        lock.writeLock().lock();
+        try {
+            for (Document doc : added) {
+                insertLocked(doc.getId(), doc.getContent(), new HashMap<>(doc.getMetadata()),
+                    VectorMath.toNormalizedFloats(doc.getEmbedding()));
+            }
+            for (String id : removedIds) {
+                Integer node = nodesById.remove(id);
+                if (node != null) {
+                    deleted.set(node);
+                }
+            }
+            compactIfNeededLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Boolean> delete(List<String> idList) {
+        Optional<Boolean> result = delegate.delete(idList);
+        lock.writeLock().lock();
+        try {
+            for (String id : idList) {
+                Integer node = nodesById.remove(id);
+                if (node != null) {
+                    deleted.set(node);
+                }
+            }
+            compactIfNeededLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return result;
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        float[] query = VectorMath.toNormalizedFloats(embeddingClient.embed(request.getQuery()));
+        int topK = request.getTopK();
+        boolean quantized = settings.getQuantization() != Quantization.NONE;
+        int candidates = quantized ? topK * Math.max(1, settings.getRerankFactor()) : topK;
+
+        List<Hit> hits;
+        lock.readLock().lock();
+        try {
+            IntPredicate accept = node -> !deleted.get(node)
+                && MetadataFilter.matches(request.getFilterExpression(), metadata.get(node));
+
+            int[] few = request.hasFilterExpression()
+                ? acceptedUpTo(accept, settings.getExactSearchThreshold())
+                : null;
+            List<HnswIndex.Candidate> found = few != null
+                ? index.exactSearch(query, candidates, few)
+                : approximateSearch(query, candidates, accept);
+
+            if (quantized && rerankVectors != null) {
+                found = rerankLocked(query, found, topK);
+            }
+
+            hits = new ArrayList<>(found.size());
+            for (HnswIndex.Candidate candidate : found) {
+                int node = candidate.node();
+                hits.add(new Hit(ids.get(node), contents.get(node), metadata.get(node), candidate.similarity()));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (quantized && rerankVectors == null) {
+            hits = rerank(query, hits, topK);
+        }
+
+        List<Document> results = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            if (hit.similarity() < request.getSimilarityThreshold()) {
+                continue;
+            }
+            Map<String, Object> docMetadata = new HashMap<>(hit.metadata());
+            docMetadata.put("distance", 1.0f - hit.similarity());
+            results.add(new Document(hit.id(), hit.content(), docMetadata));
+        }
+        return results;
+    }
+
+    /**
+     * Re-score quantized candidates with their local float copies; a few hundred dot
+     * products, cheap enough to run under the read lock so node numbers stay valid
+     */
+    private List<HnswIndex.Candidate> rerankLocked(float[] query, List<HnswIndex.Candidate> found, int topK) {
+        List<HnswIndex.Candidate> rescored = new ArrayList<>(found.size());
+        for (HnswIndex.Candidate candidate : found) {
+            rescored.add(new HnswIndex.Candidate(candidate.node(),
+                rerankVectors.similarity(candidate.node(), query)));
+        }
+        rescored.sort(Comparator.comparingDouble(HnswIndex.Candidate::similarity).reversed());
+        return rescored.size() > topK ? rescored.subList(0, topK) : rescored;
+    }
+
+    /**
+     * Re-score quantized candidates with the exact float embeddings from pgvector,
+     * when no local copies are kept: one extra round trip per search.
+     * Only topK * rerankFactor rows are read, outside the index lock.
+     */
+    private List<Hit> rerank(float[] query, List<Hit> hits, int topK) {
+        List<String> candidateIds = hits.stream().map(Hit::id).toList();
+        Map<String, float[]> embeddings =
+            vectorStoreLimiter.call(() -> vectorStoreRepository.findEmbeddings(candidateIds));
+
+        List<Hit> rescored = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            float[] embedding = embeddings.get(hit.id());
+            if (embedding != null) {
+                float similarity = VectorMath.dot(VectorMath.normalize(embedding), query);
+                rescored.add(new Hit(hit.id(), hit.content(), hit.metadata(), similarity));
+            }
+        }
+        rescored.sort(Comparator.comparingDouble(Hit::similarity).reversed());
+        return rescored.size() > topK ? rescored.subList(0, topK) : rescored;
+    }
+
+    /**
+     * Widen the beam until enough accepted nodes are found, the whole graph was in
+     * reach or the beam reaches hnsw.max-ef-search. Only filters accepting more than
+     * exact-search-threshold nodes get here, so a capped beam still finds most of them.
+     */
+    private List<HnswIndex.Candidate> approximateSearch(float[] query, int topK, IntPredicate accept) {
+        int maxEf = Math.max(settings.getMaxEfSearch(), topK);
+        int ef = Math.min(Math.max(settings.getEfSearch(), topK), maxEf);
+        while (true) {
+            List<HnswIndex.Candidate> found = index.search(query, topK, ef, accept);
+            if (found.size() >= topK || ef >= index.size() || ef >= maxEf) {
+                return found;
+            }
+            ef = Math.min(ef * 2, maxEf);
+        }
+    }
+
+    /**
+     * The accepted nodes when there are at most limit of them, otherwise null. The
+     * scan stops at the first node past the limit, so broad filters (a section
+     * holding much of the corpus) cost about limit checks rather than one per node.
+     */
+    private int[] acceptedUpTo(IntPredicate accept, int limit) {
+        int[] nodes = new int[Math.min(limit, index.size())];
+        int count = 0;
+        for (int node = 0; node < index.size(); node++) {
+            if (accept.test(node)) {
+                if (count == nodes.length) {
+                    return null;
+                }
+                nodes[count++] = node;
+            }
+        }
+        return Arrays.copyOf(nodes, count);
+    }
+
+    private void insertLocked(String id, String content, Map<String, Object> docMetadata, float[] unitVector) {
+        Integer previous = nodesById.get(id);
+        if (previous != null) {
+            deleted.set(previous);
+        }
+        int node = index.add(unitVector);
+        if (rerankVectors != null) {
+            rerankVectors.set(node, unitVector);
+        }
+        ids.add(id);
+        contents.add(content);
+        metadata.add(docMetadata);
+        nodesById.put(id, node);
+    }
+
+    /**
+     * Tombstoned nodes are still traversed by every search, so once they pass the
+     * configured fraction of the graph it is rebuilt from the live nodes. Decoding and
+     * re-encoding a stored vector is lossless for every quantization, so no pgvector
+     * read is needed. Runs under the write lock; the cost is spread over the deletes
+     * that triggered it.
+     */
+    private void compactIfNeededLocked() {
+        int tombstones = deleted.cardinality();
+        if (tombstones > 0 && tombstones >= settings.getCompactionThreshold() * index.size()) {
+            compactLocked();
+        }
+    }
+
+    private void compactLocked() {
+        long start = System.nanoTime();
+        int before = index.size();
+        HnswIndex compacted = newIndex(nodesById.size());
+        List<String> liveIds = new ArrayList<>(nodesById.size());
+        List<String> liveContents = new ArrayList<>(nodesById.size());
+        List<Map<String, Object>> liveMetadata = new ArrayList<>(nodesById.size());
+        if (rerankVectors != null) {
+            rerankVectors.invalidate();
+        }
+        for (int node = 0; node < before; node++) {
+            if (deleted.get(node)) {
+                continue;
+            }
+            int added = compacted.add(index.vector(node));
+            if (rerankVectors != null) {
+                // Live nodes only move down, so copying in node order never overwrites one still to be moved
+                rerankVectors.move(node, added);
+            }
+            liveIds.add(ids.get(node));
+            liveContents.add(contents.get(node));
+            liveMetadata.add(metadata.get(node));
+            nodesById.put(ids.get(node), added);
+        }
+        index = compacted;
+        ids.clear();
+        ids.addAll(liveIds);
+        contents.clear();
+        contents.addAll(liveContents);
+        metadata.clear();
+        metadata.addAll(liveMetadata);
+        deleted.clear();
+        log.info("HNSW index compacted: {} -> {} nodes in {} ms",
+                before, index.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    int nodeCount() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private HnswIndex newIndex(int capacity) {
+        return new HnswIndex(settings.getDimensions(), settings.getM(), settings.getEfConstruction(), capacity,
+            settings.getQuantization());
+    }
+
+    /**
+     * Local float copies for re-ranking, only kept for quantized storage
+     */
+    private static RerankVectors openRerankVectors(VectorStoreProperties.Hnsw settings) {
+        if (settings.getQuantization() == Quantization.NONE
+                || settings.getRerankVectorsPath() == null || settings.getRerankVectorsPath().isBlank()) {
+            return null;
+        }
+        try {
+            return new RerankVectors(Path.of(settings.getRerankVectorsPath()), settings.getDimensions());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open HNSW re-rank vectors " + settings.getRerankVectorsPath(), e);
+        }
+    }
+
+    private boolean snapshotsEnabled() {
+        return settings.getSnapshotPath() != null && !settings.getSnapshotPath().isBlank();
+    }
+
+    /**
+     * Snapshot layout: magic, version, content fingerprint, re-rank vector generation
+     * (0 without them), graph section (see HnswIndex),
+     * then per node id, content and metadata JSON. Tombstones are compacted away first,
+     * so only live nodes are written.
+     */
+    private void writeSnapshot() {
+        if (!snapshotsEnabled()) {
+            return;
+        }
+        Path path = Path.of(settings.getSnapshotPath());
+        lock.writeLock().lock();
+        try {
+            if (!deleted.isEmpty()) {
+                compactLocked();
+            }
+            Path parent = path.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, "hnsw", ".tmp");
+            long generation = 0;
+            if (rerankVectors != null) {
+                generation = System.currentTimeMillis();
+                rerankVectors.commit(generation);
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(fingerprint(liveVersionsLocked()));
+                out.writeLong(generation);
+                index.writeTo(out);
+                for (int node = 0; node < index.size(); node++) {
+                    writeString(out, ids.get(node));
+                    writeString(out, contents.get(node));
+                    writeString(out, objectMapper.writeValueAsString(metadata.get(node)));
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("HNSW snapshot written: {} ({} nodes)", path, index.size());
+        } catch (IOException e) {
+            log.warn("Could not write HNSW snapshot {}: {}", path, e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean loadSnapshot(long expectedFingerprint) {
+        if (!snapshotsEnabled() || !Files.isRegularFile(Path.of(settings.getSnapshotPath()))) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(Path.of(settings.getSnapshotPath()), StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != SNAPSHOT_MAGIC || in.getInt() != SNAPSHOT_VERSION) {
+                log.warn("Ignoring HNSW snapshot with unknown format");
+                return false;
+            }
+            if (in.getLong() != expectedFingerprint) {
+                log.info("HNSW snapshot is stale, rebuilding from pgvector");
+                return false;
+            }
+
+            long generation = in.getLong();
+            if (rerankVectors != null && (generation == 0 || rerankVectors.generation() != generation)) {
+                log.info("HNSW re-rank vectors do not match the snapshot, rebuilding from pgvector");
+                return false;
+            }
+
+            lock.writeLock().lock();
+            try {
+                HnswIndex restored = HnswIndex.readFrom(in);
+                if (restored.dimensions() != settings.getDimensions()
+                        || restored.quantization() != settings.getQuantization()) {
+                    log.info("HNSW snapshot settings changed, rebuilding from pgvector");
+                    return false;
+                }
+                if (rerankVectors != null) {
+                    rerankVectors.mapNodes(restored.size());
+                }
+                index = restored;
+                for (int node = 0; node < restored.size(); node++) {
+                    String id = readString(in);
+                    ids.add(id);
+                    contents.add(readString(in));
+                    metadata.add(objectMapper.readValue(readString(in), METADATA_TYPE));
+                    nodesById.put(id, node);
+                }
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read HNSW snapshot, rebuilding from pgvector: {}", e.getMessage());
+            ids.clear();
+            contents.clear();
+            metadata.clear();
+            nodesById.clear();
+            deleted.clear();
+            index = newIndex(0);
+            return false;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Id to content version of every live node, matching VectorStoreRepository.findAllVersions
+     */
+    private Map<String, String> liveVersionsLocked() {
+        Map<String, String> versions = new HashMap<>();
+        nodesById.forEach((id, node) -> versions.put(id, contentVersion(contents.get(node), metadata.get(node))));
+        return versions;
+    }
+
+    private static String contentVersion(String content, Map<String, Object> docMetadata) {
+        Object contentHash = docMetadata.get("content_hash");
+        if (contentHash != null) {
+            return contentHash.toString();
+        }
+        try {
+            byte[] md5 = MessageDigest.getInstance("MD5").digest(
+                (content == null ? "" : content).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(md5);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+
+    /**
+     * Order-independent fingerprint of document ids and their content versions,
+     * so a document whose content changed under the same id invalidates the snapshot
+     */
+    private static long fingerprint(Map<String, String> versions) {
+        try {
+            List<String> sorted = new ArrayList<>(versions.keySet());
+            sorted.sort(null);
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String id : sorted) {
+                digest.update(id.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(versions.get(id).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return ByteBuffer.wrap(digest.digest()).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record Hit(String id, String content, Map<String, Object> metadata, float similarity) {
+    }
+}
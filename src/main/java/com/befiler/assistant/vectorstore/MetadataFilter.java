@@ -0,0 +1,79 @@
+package com.befiler.assistant.vectorstore;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Evaluates portable filter expressions against document metadata in memory,
+ * mirroring what the pgvector store compiles to jsonpath
+ */
+final class MetadataFilter {
+
+    private MetadataFilter() {
+    }
+
+    static boolean matches(Filter.Expression expression, Map<String, Object> metadata) {
+        if (expression == null) {
+            return true;
+        }
+        return switch (expression.type()) {
+            case AND -> matches(operand(expression.left()), metadata) && matches(operand(expression.right()), metadata);
+            case OR -> matches(operand(expression.left()), metadata) || matches(operand(expression.right()), metadata);
+            case EQ -> valueEquals(actual(expression, metadata), expected(expression));
+            case NE -> !valueEquals(actual(expression, metadata), expected(expression));
+            case GT -> compare(actual(expression, metadata), expected(expression)) > 0;
+            case GTE -> compare(actual(expression, metadata), expected(expression)) >= 0;
+            case LT -> compare(actual(expression, metadata), expected(expression)) < 0;
+            case LTE -> compare(actual(expression, metadata), expected(expression)) <= 0;
+            case IN -> contains(expected(expression), actual(expression, metadata));
+            case NIN -> !contains(expected(expression), actual(expression, metadata));
+            case NOT -> !matches(operand(expression.left()), metadata);
+        };
+    }
+
+    private static Filter.Expression operand(Filter.Operand operand) {
+        if (operand instanceof Filter.Group group) {
+            return group.content();
+        }
+        return (Filter.Expression) operand;
+    }
+
+    private static Object actual(Filter.Expression expression, Map<String, Object> metadata) {
+        return metadata.get(((Filter.Key) expression.left()).key());
+    }
+
+    private static Object expected(Filter.Expression expression) {
+        return ((Filter.Value) expression.right()).value();
+    }
+
+    private static boolean valueEquals(Object actual, Object expected) {
+        if (actual instanceof Number a && expected instanceof Number e) {
+            return a.doubleValue() == e.doubleValue();
+        }
+        return Objects.equals(actual, expected);
+    }
+
+    private static boolean contains(Object expected, Object actual) {
+        if (expected instanceof Collection<?> values) {
+            return values.stream().anyMatch(value -> valueEquals(actual, value));
+        }
+        return valueEquals(actual, expected);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object actual, Object expected) {
+        if (actual == null) {
+            return -1;
+        }
+        if (actual instanceof Number a && expected instanceof Number e) {
+            return Double.compare(a.doubleValue(), e.doubleValue());
+        }
+        if (actual instanceof Comparable comparable && actual.getClass().isInstance(expected)) {
+            return comparable.compareTo(expected);
+        }
+        return actual.toString().compareTo(String.valueOf(expected));
+    }
+}
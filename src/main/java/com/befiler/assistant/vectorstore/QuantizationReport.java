@@ -0,0 +1,165 @@
+package com.befiler.assistant.vectorstore;
+
+import com.befiler.assistant.config.VectorStoreProperties;
+import com.befiler.assistant.config.VectorStoreProperties.Quantization;
+import com.befiler.assistant.repository.VectorStoreRepository;
+import com.befiler.assistant.service.VectorMath;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/**
+ * Compares HNSW storage modes on the live corpus: recall@k against an exact
+ * float scan, search latency and resident index size.
+ * Queries are sampled stored embeddings with the query document itself excluded
+ * (leave-one-out), so no embedding calls are made. Re-ranking uses float vectors
+ * held locally, as the store does with hnsw.rerank-vectors-path set; with it empty
+ * the store adds one pgvector round trip per search, which is not measured here
+ * (rerankRoundTrip reports whether it applies).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class QuantizationReport {
+
+    private final VectorStoreRepository vectorStoreRepository;
+    private final VectorStoreProperties vectorStoreProperties;
+
+    public Report run(int queries, int k) {
+        VectorStoreProperties.Hnsw settings = vectorStoreProperties.getHnsw();
+        List<float[]> vectors = new ArrayList<>();
+        vectorStoreRepository.forEachEmbedded(row -> vectors.add(VectorMath.normalize(row.embedding())));
+        if (vectors.size() < 2) {
+            return new Report(vectors.size(), 0, k, rerankRoundTrip(settings), List.of());
+        }
+
+        int[] queryNodes = sample(vectors.size(), Math.min(queries, vectors.size()));
+        List<Set<Integer>> truth = new ArrayList<>(queryNodes.length);
+        for (int queryNode : queryNodes) {
+            truth.add(exactTopK(vectors, queryNode, k));
+        }
+
+        List<ModeResult> results = new ArrayList<>();
+        for (Quantization quantization : Quantization.values()) {
+            results.add(measure(quantization, settings, vectors, queryNodes, truth, k));
+        }
+        return new Report(vectors.size(), queryNodes.length, k, rerankRoundTrip(settings), results);
+    }
+
+    private static boolean rerankRoundTrip(VectorStoreProperties.Hnsw settings) {
+        return settings.getRerankVectorsPath() == null || settings.getRerankVectorsPath().isBlank();
+    }
+
+    private ModeResult measure(Quantization quantization, VectorStoreProperties.Hnsw settings, List<float[]> vectors,
+                               int[] queryNodes, List<Set<Integer>> truth, int k) {
+        long buildStart = System.nanoTime();
+        HnswIndex index = new HnswIndex(settings.getDimensions(), settings.getM(), settings.getEfConstruction(),
+            vectors.size(), quantization);
+        vectors.forEach(index::add);
+        long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+
+        boolean quantized = quantization != Quantization.NONE;
+        int candidates = quantized ? k * Math.max(1, settings.getRerankFactor()) : k;
+        long[] latencies = new long[queryNodes.length];
+        int rawHits = 0;
+        int rerankedHits = 0;
+
+        for (int q = 0; q < queryNodes.length; q++) {
+            int queryNode = queryNodes[q];
+            float[] query = vectors.get(queryNode);
+            IntPredicate notSelf = node -> node != queryNode;
+
+            long start = System.nanoTime();
+            List<HnswIndex.Candidate> found = index.search(query, candidates, settings.getEfSearch(), notSelf);
+            List<Integer> ranked = quantized ? rerank(vectors, query, found, k) : nodes(found, k);
+            latencies[q] = System.nanoTime() - start;
+
+            rawHits += overlap(nodes(found, k), truth.get(q));
+            rerankedHits += overlap(ranked, truth.get(q));
+        }
+
+        Arrays.sort(latencies);
+        double total = (double) queryNodes.length * k;
+        ModeResult result = new ModeResult(quantization, index.memoryBytes() / (1024.0 * 1024.0),
+            buildMillis, rawHits / total, rerankedHits / total,
+            percentile(latencies, 0.50) / 1000.0, percentile(latencies, 0.95) / 1000.0);
+        log.info("Quantization report: {}", result);
+        return result;
+    }
+
+    private static List<Integer> rerank(List<float[]> vectors, float[] query, List<HnswIndex.Candidate> found, int k) {
+        return found.stream()
+            .sorted(Comparator.comparingDouble(
+                (HnswIndex.Candidate c) -> VectorMath.dot(vectors.get(c.node()), query)).reversed())
+            .limit(k)
+            .map(HnswIndex.Candidate::node)
+            .toList();
+    }
+
+    private static Set<Integer> exactTopK(List<float[]> vectors, int queryNode, int k) {
+        float[] query = vectors.get(queryNode);
+        Integer[] order = new Integer[vectors.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble((Integer node) -> VectorMath.dot(vectors.get(node), query))
+            .reversed());
+        Set<Integer> top = new HashSet<>();
+        for (int i = 0; i < order.length && top.size() < k; i++) {
+            if (order[i] != queryNode) {
+                top.add(order[i]);
+            }
+        }
+        return top;
+    }
+
+    private static List<Integer> nodes(List<HnswIndex.Candidate> found, int k) {
+        return found.stream().limit(k).map(HnswIndex.Candidate::node).toList();
+    }
+
+    private static int overlap(List<Integer> nodes, Set<Integer> truth) {
+        return (int) nodes.stream().filter(truth::contains).count();
+    }
+
+    /**
+     * Evenly spaced sample, deterministic so runs are comparable
+     */
+    private static int[] sample(int size, int count) {
+        int[] nodes = new int[count];
+        for (int i = 0; i < count; i++) {
+            nodes[i] = (int) ((long) i * size / count);
+        }
+        return nodes;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    /**
+     * One row per storage mode; recall is the fraction of the exact top-k found
+     */
+    public record ModeResult(Quantization quantization,
+                             double indexMegabytes,
+                             long buildMillis,
+                             double recallBeforeRerank,
+                             double recall,
+                             double p50Micros,
+                             double p95Micros) {
+    }
+
+    /**
+     * rerankRoundTrip: whether the store re-ranks quantized candidates with a pgvector
+     * read, adding one round trip to every search on top of the latencies below
+     */
+    public record Report(int documents, int queries, int k, boolean rerankRoundTrip, List<ModeResult> modes) {
+    }
+}
@@ -0,0 +1,139 @@
+package com.befiler.assistant.vectorstore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Full-precision copies of quantized HNSW vectors, used to re-rank candidates.
+ * They live in a memory-mapped file indexed by node rather than on the heap: the
+ * OS keeps the pages of often re-ranked nodes resident and may evict the rest, so
+ * quantization keeps its heap savings without a pgvector read per search.
+ * The header records the generation of the snapshot the file matches; moving nodes
+ * (compaction) clears it until the next snapshot is written.
+ */
+final class RerankVectors implements Closeable {
+
+    private static final int MAGIC = 0x484E5346;
+    private static final int HEADER_BYTES = 16;
+    private static final int NODES_PER_SEGMENT = 8192;
+
+    private final FileChannel channel;
+    private final int dimensions;
+    private final int vectorBytes;
+    private final MappedByteBuffer header;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    RerankVectors(Path path, int dimensions) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        this.channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.dimensions = dimensions;
+        this.vectorBytes = dimensions * Float.BYTES;
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+    }
+
+    /**
+     * Snapshot generation the file holds, or 0 when it matches none
+     */
+    long generation() {
+        return header.getInt(0) == MAGIC ? header.getLong(8) : 0;
+    }
+
+    /**
+     * Record that the file now matches the snapshot of this generation, after
+     * flushing every vector to disk
+     */
+    void commit(long generation) {
+        segments.forEach(MappedByteBuffer::force);
+        header.putInt(0, MAGIC);
+        header.putLong(8, generation);
+        header.force();
+    }
+
+    void invalidate() {
+        header.putLong(8, 0);
+    }
+
+    void set(int node, float[] vector) {
+        MappedByteBuffer segment = segment(node);
+        int offset = offset(node);
+        for (int i = 0; i < dimensions; i++) {
+            segment.putFloat(offset + i * Float.BYTES, vector[i]);
+        }
+    }
+
+    /**
+     * Map the segments holding the first count nodes, e.g. after restoring a snapshot,
+     * so searches never map under the read lock
+     */
+    void mapNodes(int count) {
+        if (count > 0) {
+            segment(count - 1);
+        }
+    }
+
+    /**
+     * Copy a node's vector to a lower node number; used while compacting
+     */
+    void move(int from, int to) {
+        if (from == to) {
+            return;
+        }
+        MappedByteBuffer source = segment(from);
+        MappedByteBuffer target = segment(to);
+        int sourceOffset = offset(from);
+        int targetOffset = offset(to);
+        for (int i = 0; i < dimensions; i++) {
+            target.putFloat(targetOffset + i * Float.BYTES, source.getFloat(sourceOffset + i * Float.BYTES));
+        }
+    }
+
+    /**
+     * Exact similarity of a stored node to a unit-length query
+     */
+    float similarity(int node, float[] query) {
+        MappedByteBuffer segment = segments.get(node / NODES_PER_SEGMENT);
+        int offset = offset(node);
+        float sum = 0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += segment.getFloat(offset + i * Float.BYTES) * query[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void close() throws IOException {
+        segments.clear();
+        channel.close();
+    }
+
+    private int offset(int node) {
+        return (node % NODES_PER_SEGMENT) * vectorBytes;
+    }
+
+    /**
+     * Segments are mapped as the node count grows; mapping past the end extends the file
+     */
+    private MappedByteBuffer segment(int node) {
+        int index = node / NODES_PER_SEGMENT;
+        try {
+            while (segments.size() <= index) {
+                long position = HEADER_BYTES + (long) segments.size() * NODES_PER_SEGMENT * vectorBytes;
+                segments.add(channel.map(FileChannel.MapMode.READ_WRITE, position,
+                    (long) NODES_PER_SEGMENT * vectorBytes));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return segments.get(index);
+    }
+}
@@ -0,0 +1,305 @@
+package com.befiler.assistant.vectorstore;
+
+import com.befiler.assistant.config.VectorStoreProperties.Quantization;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Contiguous per-node vector storage for HnswIndex, in full precision or quantized.
+ * Scores are computed against a query prepared once per search, so the inner loop
+ * works on primitives only.
+ */
+sealed interface VectorStorage permits VectorStorage.Float32, VectorStorage.Int8, VectorStorage.Binary {
+
+    /**
+     * Similarity of a stored node to a prepared query; larger is closer
+     */
+    @FunctionalInterface
+    interface Scorer {
+        float similarity(int node);
+    }
+
+    Quantization quantization();
+
+    int dimensions();
+
+    int bytesPerVector();
+
+    void grow(int capacity);
+
+    /**
+     * Store a unit-length vector for the node
+     */
+    void set(int node, float[] vector);
+
+    /**
+     * Best reconstruction of the stored vector
+     */
+    float[] decode(int node);
+
+    Scorer scorer(float[] query);
+
+    void writeTo(DataOutputStream out, int size) throws IOException;
+
+    void readFrom(ByteBuffer in, int size);
+
+    static VectorStorage create(Quantization quantization, int dimensions, int capacity) {
+        return switch (quantization) {
+            case NONE -> new Float32(dimensions, capacity);
+            case INT8 -> new Int8(dimensions, capacity);
+            case BINARY -> new Binary(dimensions, capacity);
+        };
+    }
+
+    /**
+     * Full-precision floats, 4 bytes per dimension
+     */
+    final class Float32 implements VectorStorage {
+
+        private final int dimensions;
+        private float[] values;
+
+        Float32(int dimensions, int capacity) {
+            this.dimensions = dimensions;
+            this.values = new float[capacity * dimensions];
+        }
+
+        @Override
+        public Quantization quantization() {
+            return Quantization.NONE;
+        }
+
+        @Override
+        public int dimensions() {
+            return dimensions;
+        }
+
+        @Override
+        public int bytesPerVector() {
+            return dimensions * Float.BYTES;
+        }
+
+        @Override
+        public void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity * dimensions);
+        }
+
+        @Override
+        public void set(int node, float[] vector) {
+            System.arraycopy(vector, 0, values, node * dimensions, dimensions);
+        }
+
+        @Override
+        public float[] decode(int node) {
+            return Arrays.copyOfRange(values, node * dimensions, (node + 1) * dimensions);
+        }
+
+        @Override
+        public Scorer scorer(float[] query) {
+            return node -> {
+                int offset = node * dimensions;
+                float sum = 0;
+                for (int i = 0; i < dimensions; i++) {
+                    sum += values[offset + i] * query[i];
+                }
+                return sum;
+            };
+        }
+
+        @Override
+        public void writeTo(DataOutputStream out, int size) throws IOException {
+            for (int i = 0; i < size * dimensions; i++) {
+                out.writeFloat(values[i]);
+            }
+        }
+
+        @Override
+        public void readFrom(ByteBuffer in, int size) {
+            in.asFloatBuffer().get(values, 0, size * dimensions);
+            in.position(in.position() + size * dimensions * Float.BYTES);
+        }
+    }
+
+    /**
+     * Symmetric int8 scalar quantization with one scale per vector, 1 byte per
+     * dimension. Queries stay in float (asymmetric scoring), which keeps most of
+     * the ranking quality.
+     */
+    final class Int8 implements VectorStorage {
+
+        private final int dimensions;
+        private byte[] codes;
+        private float[] scales;
+
+        Int8(int dimensions, int capacity) {
+            this.dimensions = dimensions;
+            this.codes = new byte[capacity * dimensions];
+            this.scales = new float[capacity];
+        }
+
+        @Override
+        public Quantization quantization() {
+            return Quantization.INT8;
+        }
+
+        @Override
+        public int dimensions() {
+            return dimensions;
+        }
+
+        @Override
+        public int bytesPerVector() {
+            return dimensions + Float.BYTES;
+        }
+
+        @Override
+        public void grow(int capacity) {
+            codes = Arrays.copyOf(codes, capacity * dimensions);
+            scales = Arrays.copyOf(scales, capacity);
+        }
+
+        @Override
+        public void set(int node, float[] vector) {
+            float max = 0;
+            for (float v : vector) {
+                max = Math.max(max, Math.abs(v));
+            }
+            float scale = max / 127f;
+            int offset = node * dimensions;
+            for (int i = 0; i < dimensions; i++) {
+                codes[offset + i] = scale == 0 ? 0 : (byte) Math.round(vector[i] / scale);
+            }
+            scales[node] = scale;
+        }
+
+        @Override
+        public float[] decode(int node) {
+            float[] vector = new float[dimensions];
+            int offset = node * dimensions;
+            for (int i = 0; i < dimensions; i++) {
+                vector[i] = codes[offset + i] * scales[node];
+            }
+            return vector;
+        }
+
+        @Override
+        public Scorer scorer(float[] query) {
+            return node -> {
+                int offset = node * dimensions;
+                float sum = 0;
+                for (int i = 0; i < dimensions; i++) {
+                    sum += codes[offset + i] * query[i];
+                }
+                return sum * scales[node];
+            };
+        }
+
+        @Override
+        public void writeTo(DataOutputStream out, int size) throws IOException {
+            out.write(codes, 0, size * dimensions);
+            for (int node = 0; node < size; node++) {
+                out.writeFloat(scales[node]);
+            }
+        }
+
+        @Override
+        public void readFrom(ByteBuffer in, int size) {
+            in.get(codes, 0, size * dimensions);
+            in.asFloatBuffer().get(scales, 0, size);
+            in.position(in.position() + size * Float.BYTES);
+        }
+    }
+
+    /**
+     * Sign-bit quantization, 1 bit per dimension. Similarity is derived from the
+     * Hamming distance, 1 - 2 * hamming / dimensions, computed with popcounts.
+     */
+    final class Binary implements VectorStorage {
+
+        private final int dimensions;
+        private final int words;
+        private long[] bits;
+
+        Binary(int dimensions, int capacity) {
+            this.dimensions = dimensions;
+            this.words = (dimensions + Long.SIZE - 1) / Long.SIZE;
+            this.bits = new long[capacity * words];
+        }
+
+        @Override
+        public Quantization quantization() {
+            return Quantization.BINARY;
+        }
+
+        @Override
+        public int dimensions() {
+            return dimensions;
+        }
+
+        @Override
+        public int bytesPerVector() {
+            return words * Long.BYTES;
+        }
+
+        @Override
+        public void grow(int capacity) {
+            bits = Arrays.copyOf(bits, capacity * words);
+        }
+
+        @Override
+        public void set(int node, float[] vector) {
+            encode(vector, bits, node * words);
+        }
+
+        @Override
+        public float[] decode(int node) {
+            float magnitude = (float) (1.0 / Math.sqrt(dimensions));
+            float[] vector = new float[dimensions];
+            int offset = node * words;
+            for (int i = 0; i < dimensions; i++) {
+                boolean positive = (bits[offset + i / Long.SIZE] & (1L << (i % Long.SIZE))) != 0;
+                vector[i] = positive ? magnitude : -magnitude;
+            }
+            return vector;
+        }
+
+        @Override
+        public Scorer scorer(float[] query) {
+            long[] queryBits = new long[words];
+            encode(query, queryBits, 0);
+            return node -> {
+                int offset = node * words;
+                int hamming = 0;
+                for (int w = 0; w < words; w++) {
+                    hamming += Long.bitCount(bits[offset + w] ^ queryBits[w]);
+                }
+                return 1f - 2f * hamming / dimensions;
+            };
+        }
+
+        private void encode(float[] vector, long[] target, int offset) {
+            Arrays.fill(target, offset, offset + words, 0L);
+            for (int i = 0; i < dimensions; i++) {
+                if (vector[i] > 0) {
+                    target[offset + i / Long.SIZE] |= 1L << (i % Long.SIZE);
+                }
+            }
+        }
+
+        @Override
+        public void writeTo(DataOutputStream out, int size) throws IOException {
+            for (int i = 0; i < size * words; i++) {
+                out.writeLong(bits[i]);
+            }
+        }
+
+        @Override
+        public void readFrom(ByteBuffer in, int size) {
+            in.asLongBuffer().get(bits, 0, size * words);
+            in.position(in.position() + size * words * Long.BYTES);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.befiler.assistant.repository;
+
+import com.befiler.assistant.repository.VectorStoreRepository.EntryKey;
+import com.befiler.assistant.service.DocumentIds;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VectorStoreRepositoryTest {
+
+    private final CapturingJdbcTemplate jdbcTemplate = new CapturingJdbcTemplate();
+    private final VectorStoreRepository repository = new VectorStoreRepository(jdbcTemplate, null);
+
+    @Test
+    void legacyQuestionsAreMatchedWithTheEntryIdNormalization() throws SQLException {
+        String question = "  What is the   filing DEADLINE? ";
+        String entryId = DocumentIds.entryId("qa_pair", "salary", "", question);
+
+        repository.findEntryRows(List.of(new EntryKey(entryId, "salary", null, question)));
+
+        // The stored question goes through the same trim, collapse and lower-casing in SQL
+        assertThat(jdbcTemplate.sql)
+            .contains("lower(btrim(regexp_replace(v.metadata->>'question', '\\s+', ' ', 'g'))) = k.question");
+        Map<Integer, Object[]> arrays = jdbcTemplate.boundArrays();
+        assertThat(arrays.get(1)).containsExactly(entryId);
+        assertThat(arrays.get(3)).containsExactly("salary");
+        assertThat(arrays.get(4)).containsExactly("");
+        assertThat(arrays.get(5)).containsExactly("what is the filing deadline?");
+        assertThat(DocumentIds.entryId("qa_pair", "salary", "", "what is the filing deadline?")).isEqualTo(entryId);
+    }
+
+    @Test
+    void entriesWithoutQuestionsBindNoLegacyKeys() throws SQLException {
+        String entryId = DocumentIds.entryId("general_info", "salary", "", "overview");
+
+        repository.findEntryRows(List.of(new EntryKey(entryId, "salary", null, null)));
+
+        assertThat(jdbcTemplate.boundArrays().get(5)).isEmpty();
+    }
+
+    /**
+     * Records the statement and its bound arrays instead of running it
+     */
+    private static final class CapturingJdbcTemplate extends JdbcTemplate {
+
+        private String sql;
+        private PreparedStatementSetter setter;
+
+        @Override
+        public <T> List<T> query(String sql, PreparedStatementSetter setter, RowMapper<T> rowMapper) {
+            this.sql = sql;
+            this.setter = setter;
+            return List.of();
+        }
+
+        Map<Integer, Object[]> boundArrays() throws SQLException {
+            Map<Integer, Object[]> arrays = new HashMap<>();
+            Connection connection = proxy(Connection.class, (method, args) ->
+                "createArrayOf".equals(method) ? proxy(Array.class, (arrayMethod, none) -> args[1]) : null);
+            PreparedStatement statement = proxy(PreparedStatement.class, (method, args) -> {
+                if ("getConnection".equals(method)) {
+                    return connection;
+                }
+                if ("setArray".equals(method)) {
+                    arrays.put((Integer) args[0], (Object[]) ((Array) args[1]).getArray());
+                }
+                return null;
+            });
+            setter.setValues(statement);
+            return arrays;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(String method, Object[] args) throws SQLException;
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+            (proxy, method, args) -> handler.handle(method.getName(), args)));
+    }
+}
@@ -0,0 +1,30 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.RagProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchThrottleTest {
+
+    @Test
+    void rejectsBatchesBeyondTheCapUntilOneFinishes() {
+        RagProperties ragProperties = new RagProperties();
+        ragProperties.getBatch().setMaxConcurrentBatches(2);
+        BatchThrottle throttle = new BatchThrottle(ragProperties);
+
+        Optional<BatchThrottle.Slot> first = throttle.tryStart();
+        Optional<BatchThrottle.Slot> second = throttle.tryStart();
+        assertThat(first).isPresent();
+        assertThat(second).isPresent();
+        assertThat(throttle.tryStart()).isEmpty();
+
+        first.get().close();
+        // Closing twice must not free a second slot
+        first.get().close();
+        assertThat(throttle.tryStart()).isPresent();
+        assertThat(throttle.tryStart()).isEmpty();
+    }
+}
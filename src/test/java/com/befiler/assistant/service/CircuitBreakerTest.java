@@ -0,0 +1,123 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.ResilienceProperties;
+import com.befiler.assistant.service.CircuitBreaker.State;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofMillis(50);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CircuitBreaker breaker = new CircuitBreaker("test", settings(), meterRegistry);
+
+    @Test
+    void staysClosedUntilTheMinimumNumberOfCalls() {
+        fail(3);
+
+        assertThat(breaker.state()).isEqualTo(State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void opensWhenTheFailureRateReachesTheThreshold() {
+        succeed(2);
+        fail(2);
+
+        assertThat(breaker.state()).isEqualTo(State.OPEN);
+        assertThat(breaker.isOpen()).isTrue();
+        assertThat(breaker.tryAcquire()).isFalse();
+        assertThat(meterRegistry.get("rag.upstream.circuit.transitions").tag("state", "open").counter().count())
+            .isEqualTo(1);
+    }
+
+    @Test
+    void staysClosedBelowTheThreshold() {
+        succeed(3);
+        fail(1);
+
+        assertThat(breaker.state()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    void oldOutcomesLeaveTheSlidingWindow() {
+        fail(1);
+        succeed(4);
+        fail(1);
+
+        // The window holds the last four calls: three successes and one failure
+        assertThat(breaker.state()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    void letsOneTrialCallThroughAfterTheOpenDuration() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_DURATION.toMillis() + 20);
+
+        assertThat(breaker.isOpen()).isFalse();
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.state()).isEqualTo(State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        breaker.onSuccess();
+        assertThat(breaker.state()).isEqualTo(State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void failedTrialReopens() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_DURATION.toMillis() + 20);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onFailure();
+
+        assertThat(breaker.state()).isEqualTo(State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void ignoredTrialFreesTheTrialSlot() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_DURATION.toMillis() + 20);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onIgnored();
+
+        assertThat(breaker.state()).isEqualTo(State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    private void open() {
+        fail(4);
+        assertThat(breaker.state()).isEqualTo(State.OPEN);
+    }
+
+    private void succeed(int calls) {
+        for (int i = 0; i < calls; i++) {
+            assertThat(breaker.tryAcquire()).isTrue();
+            breaker.onSuccess();
+        }
+    }
+
+    private void fail(int calls) {
+        for (int i = 0; i < calls; i++) {
+            assertThat(breaker.tryAcquire()).isTrue();
+            breaker.onFailure();
+        }
+    }
+
+    private static ResilienceProperties.CircuitBreaker settings() {
+        ResilienceProperties.CircuitBreaker settings = new ResilienceProperties.CircuitBreaker();
+        settings.setSlidingWindow(4);
+        settings.setMinimumCalls(4);
+        settings.setFailureRateThreshold(0.5);
+        settings.setOpenDuration(OPEN_DURATION);
+        return settings;
+    }
+}
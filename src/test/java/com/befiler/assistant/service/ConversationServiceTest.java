@@ -0,0 +1,119 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.ConversationProperties;
+import com.befiler.assistant.model.ConversationSession;
+import com.befiler.assistant.repository.ConversationSessionRepository;
+import com.befiler.assistant.service.ConversationService.Conversation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConversationServiceTest {
+
+    // In-memory sessions only: no repository, and nothing here calls the chat client or executor
+    private final ConversationService conversationService = new ConversationService(new ConversationProperties(),
+        null, null, new TokenCounter(), null, new SimpleMeterRegistry());
+
+    @Test
+    void issuedSessionIsResumed() {
+        Conversation issued = conversationService.open(null);
+
+        assertThat(conversationService.open(issued.getId())).isSameAs(issued);
+    }
+
+    @Test
+    void unknownSessionIdStartsASessionUnderANewId() {
+        Conversation conversation = conversationService.open("chosen-by-client");
+
+        assertThat(conversation.getId()).isNotEqualTo("chosen-by-client");
+        assertThat(conversationService.open("chosen-by-client")).isNotSameAs(conversation);
+        assertThat(conversationService.open(conversation.getId())).isSameAs(conversation);
+    }
+
+    @Test
+    void followUpsOpenWithAPronounOrNameNoTaxSubject() {
+        assertThat(ConversationService.isFollowUp("What about rental income?")).isTrue();
+        assertThat(ConversationService.isFollowUp("And for freelancers?")).isTrue();
+        assertThat(ConversationService.isFollowUp("Is it taxable?")).isTrue();
+
+        assertThat(ConversationService.isFollowUp("Who must file a tax return?")).isFalse();
+        // A pronoun later in a self-contained question does not make it a follow-up
+        assertThat(ConversationService.isFollowUp("How much tax is due on my salary if it is paid abroad?"))
+            .isFalse();
+    }
+
+    @Test
+    void turnsArePersistedInTheBackgroundWithOneWriteForABurst() {
+        ConversationProperties settings = new ConversationProperties();
+        settings.setPersistent(true);
+        List<ConversationSession> saved = new ArrayList<>();
+        QueuedExecutor executor = new QueuedExecutor();
+        ConversationService service = new ConversationService(settings, repository(saved), null,
+            new TokenCounter(), executor, new SimpleMeterRegistry());
+        Conversation conversation = service.open(null);
+
+        service.append(conversation, "Who must file?", "Everyone above the threshold.");
+        service.append(conversation, "When is the return due?", "By 30 September.");
+
+        assertThat(saved).isEmpty();
+        assertThat(executor.tasks).hasSize(1);
+        executor.tasks.remove(0).run();
+        assertThat(saved).singleElement()
+            .satisfies(session -> assertThat(session.getTurns()).hasSize(2));
+    }
+
+    private static ConversationSessionRepository repository(List<ConversationSession> saved) {
+        Class<ConversationSessionRepository> type = ConversationSessionRepository.class;
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            if (method.getName().equals("save")) {
+                saved.add((ConversationSession) args[0]);
+                return args[0];
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }));
+    }
+
+    /**
+     * Holds submitted tasks until the test runs them
+     */
+    private static final class QueuedExecutor extends AbstractExecutorService {
+
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
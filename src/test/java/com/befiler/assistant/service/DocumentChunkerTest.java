@@ -0,0 +1,113 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.IngestionProperties;
+import com.befiler.assistant.config.IngestionProperties.Chunking.Strategy;
+import com.befiler.assistant.service.DocumentChunker.Chunk;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DocumentChunkerTest {
+
+    private static final String TEXT = IntStream.range(0, 30)
+        .mapToObj(i -> "Sentence number " + i + " explains one rule about filing income tax returns.")
+        .collect(Collectors.joining(" "));
+
+    private final TokenCounter tokenCounter = new TokenCounter();
+
+    @Test
+    void textWithinTheLimitIsOneChunk() {
+        List<Chunk> chunks = chunker(Strategy.SENTENCE, 1000, 30).split(TEXT);
+
+        assertThat(chunks).containsExactly(new Chunk(TEXT, 0));
+    }
+
+    @Test
+    void disabledChunkingKeepsTheTextWhole() {
+        IngestionProperties properties = properties(Strategy.SENTENCE, 20, 5);
+        properties.getChunking().setEnabled(false);
+
+        assertThat(new DocumentChunker(properties, tokenCounter).split(TEXT)).hasSize(1);
+    }
+
+    @Test
+    void sentenceChunksHoldWholeSentences() {
+        List<Chunk> chunks = chunker(Strategy.SENTENCE, 40, 0).split(TEXT);
+
+        assertThat(chunks).hasSizeGreaterThan(1);
+        for (Chunk chunk : chunks) {
+            assertThat(chunk.text()).startsWith("Sentence number ");
+            assertThat(chunk.text().stripTrailing()).endsWith("returns.");
+        }
+    }
+
+    @Test
+    void tokenWindowChunksCutThroughSentences() {
+        List<Chunk> chunks = chunker(Strategy.TOKEN_WINDOW, 25, 0).split(TEXT);
+
+        assertThat(chunks).hasSizeGreaterThan(1);
+        assertThat(chunks).anyMatch(chunk -> !chunk.text().stripTrailing().endsWith("."));
+        // Units are whole words, so a window never splits one
+        assertThat(chunks).allMatch(chunk -> chunk.text().endsWith(" ") || chunk == chunks.get(chunks.size() - 1));
+    }
+
+    @Test
+    void overlongSentenceIsSplitIntoWords() {
+        String longSentence = "Income " + "from salary and business ".repeat(40) + "is taxable.";
+
+        List<Chunk> chunks = chunker(Strategy.SENTENCE, 30, 0).split(longSentence);
+
+        assertThat(chunks).hasSizeGreaterThan(1);
+        assertThat(DocumentChunker.stitch(chunks)).isEqualTo(longSentence);
+    }
+
+    @Test
+    void consecutiveChunksRepeatTheRecordedOverlap() {
+        List<Chunk> chunks = chunker(Strategy.SENTENCE, 60, 20).split(TEXT);
+
+        assertThat(chunks.get(0).overlapChars()).isZero();
+        for (int i = 1; i < chunks.size(); i++) {
+            Chunk previous = chunks.get(i - 1);
+            Chunk chunk = chunks.get(i);
+            assertThat(chunk.overlapChars()).isPositive();
+            assertThat(previous.text()).endsWith(chunk.text().substring(0, chunk.overlapChars()));
+        }
+    }
+
+    @Test
+    void stitchingRestoresTheOriginalText() {
+        for (Strategy strategy : Strategy.values()) {
+            for (int overlap : new int[] {0, 10, 30}) {
+                List<Chunk> chunks = chunker(strategy, 40, overlap).split(TEXT);
+
+                assertThat(chunks).as("%s with overlap %d", strategy, overlap).hasSizeGreaterThan(1);
+                assertThat(DocumentChunker.stitch(chunks)).as("%s with overlap %d", strategy, overlap)
+                    .isEqualTo(TEXT);
+            }
+        }
+    }
+
+    @Test
+    void overlapNeverStallsProgress() {
+        // An overlap as large as the chunk must still move forward by at least one unit
+        List<Chunk> chunks = chunker(Strategy.TOKEN_WINDOW, 10, 10).split(TEXT);
+
+        assertThat(DocumentChunker.stitch(chunks)).isEqualTo(TEXT);
+    }
+
+    private DocumentChunker chunker(Strategy strategy, int maxTokens, int overlapTokens) {
+        return new DocumentChunker(properties(strategy, maxTokens, overlapTokens), tokenCounter);
+    }
+
+    private static IngestionProperties properties(Strategy strategy, int maxTokens, int overlapTokens) {
+        IngestionProperties properties = new IngestionProperties();
+        properties.getChunking().setStrategy(strategy);
+        properties.getChunking().setMaxTokens(maxTokens);
+        properties.getChunking().setOverlapTokens(overlapTokens);
+        return properties;
+    }
+}
@@ -0,0 +1,362 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.IngestionProperties;
+import com.befiler.assistant.config.IngestionProperties.Chunking.Strategy;
+import com.befiler.assistant.config.RagProperties;
+import com.befiler.assistant.config.UpstreamProperties;
+import com.befiler.assistant.model.RetrievalMode;
+import com.befiler.assistant.repository.VectorStoreRepository;
+import com.befiler.assistant.repository.VectorStoreRepository.StoredDocument;
+import com.befiler.assistant.service.DocumentChunker.Chunk;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DocumentRetrieverTest {
+
+    private static final String PARENT_ID = "parent";
+    private static final String TEXT = IntStream.range(0, 30)
+        .mapToObj(i -> "Sentence number " + i + " explains one rule about filing income tax returns.")
+        .collect(Collectors.joining(" "));
+
+    private final List<Chunk> chunks = chunks();
+    private final Set<Integer> missing = new HashSet<>();
+    private final RagProperties ragProperties = new RagProperties();
+    private final StubVectorStore vectorStore = new StubVectorStore();
+    private final ExecutorService upstreamExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void shutdown() {
+        upstreamExecutor.shutdownNow();
+    }
+
+    @Test
+    void confidentBestMatchStopsAfterTheFirstSearch() {
+        vectorStore.put("a", "qa_pair", 0.95);
+        vectorStore.put("b", "qa_pair", 0.93);
+        vectorStore.put("c", "general_info", 0.80);
+        vectorStore.put("d", "general_info", 0.70);
+
+        DocumentRetriever.AdaptiveResult result = searcher().adaptiveSearch("query", null, null);
+
+        assertThat(result.outcome()).isEqualTo("early_stop");
+        assertThat(result.documents()).extracting(Document::getId).containsExactly("a", "b");
+        assertThat(result.searches()).isEqualTo(1);
+        assertThat(vectorStore.requests).hasSize(1);
+    }
+
+    @Test
+    void fewerMatchesThanRequestedAboveTheCutoffEndsTheSearch() {
+        vectorStore.put("a", "qa_pair", 0.80);
+        vectorStore.put("b", "general_info", 0.60);
+        vectorStore.put("c", "general_info", 0.40);
+
+        DocumentRetriever.AdaptiveResult result = searcher().adaptiveSearch("query", null, null);
+
+        assertThat(result.outcome()).isEqualTo("exhausted");
+        assertThat(result.documents()).extracting(Document::getId).containsExactly("a", "b");
+        assertThat(result.requested()).isEqualTo(6);
+        assertThat(vectorStore.requests).hasSize(1);
+    }
+
+    @Test
+    void bothTypesInTheFirstSearchNeedNoFill() {
+        for (int i = 0; i < 6; i++) {
+            vectorStore.put("qa-" + i, i == 3 ? "general_info" : "qa_pair", 0.85 - i * 0.01);
+        }
+
+        DocumentRetriever.AdaptiveResult result = searcher().adaptiveSearch("query", null, null);
+
+        // One general_info is below its cap of 2, but the type is present: no second search
+        assertThat(result.outcome()).isEqualTo("filled");
+        assertThat(result.documents()).hasSize(6);
+        assertThat(result.searches()).isEqualTo(1);
+        assertThat(vectorStore.requests).hasSize(1);
+    }
+
+    @Test
+    void missingTypeIsFilledWithOneTypeFilteredSearch() {
+        for (int i = 0; i < 7; i++) {
+            vectorStore.put("qa-" + i, "qa_pair", 0.85 - i * 0.01);
+        }
+        vectorStore.put("info-0", "general_info", 0.70);
+        vectorStore.put("info-1", "general_info", 0.65);
+        vectorStore.put("info-2", "general_info", 0.60);
+
+        DocumentRetriever.AdaptiveResult result = searcher().adaptiveSearch("query", null, null);
+
+        assertThat(result.outcome()).isEqualTo("type_fill");
+        assertThat(result.searches()).isEqualTo(2);
+        assertThat(result.requested()).isEqualTo(6 + 2);
+        assertThat(result.documents()).extracting(Document::getId)
+            .containsExactly("qa-0", "qa-1", "qa-2", "qa-3", "qa-4", "qa-5", "info-0", "info-1");
+        assertThat(vectorStore.requests).hasSize(2);
+        assertThat(typeOf(vectorStore.requests.get(1).getFilterExpression())).isEqualTo("general_info");
+    }
+
+    @Test
+    void overlappingWindowsMergeIntoTheBetterRankedMatch() {
+        List<Document> expanded = retriever(1).expandNeighbours(List.of(match(3), match(4)));
+
+        assertThat(expanded).hasSize(1);
+        assertExpanded(expanded.get(0), 3, 2, 5);
+    }
+
+    @Test
+    void touchingWindowsMerge() {
+        List<Document> expanded = retriever(1).expandNeighbours(List.of(match(5), match(2)));
+
+        assertThat(expanded).hasSize(1);
+        assertExpanded(expanded.get(0), 5, 1, 6);
+    }
+
+    @Test
+    void distantWindowsStaySeparateInRankOrder() {
+        List<Document> expanded = retriever(1).expandNeighbours(List.of(match(7), match(1)));
+
+        assertThat(expanded).hasSize(2);
+        assertExpanded(expanded.get(0), 7, 6, 8);
+        assertExpanded(expanded.get(1), 1, 0, 2);
+    }
+
+    @Test
+    void windowsStopAtTheEndsOfTheParent() {
+        List<Document> expanded = retriever(2).expandNeighbours(List.of(match(0), match(chunks.size() - 1)));
+
+        assertExpanded(expanded.get(0), 0, 0, 2);
+        assertExpanded(expanded.get(1), chunks.size() - 1, chunks.size() - 3, chunks.size() - 1);
+    }
+
+    @Test
+    void missingSiblingStopsTheWindow() {
+        missing.add(4);
+
+        List<Document> expanded = retriever(2).expandNeighbours(List.of(match(5)));
+
+        assertExpanded(expanded.get(0), 5, 5, 7);
+    }
+
+    @Test
+    void documentsThatAreNotChunksPassThrough() {
+        Document whole = new Document("whole", "A document stored in one piece.", new HashMap<>());
+
+        List<Document> expanded = retriever(1).expandNeighbours(List.of(whole, match(3)));
+
+        assertThat(expanded).hasSize(2);
+        assertThat(expanded.get(0)).isSameAs(whole);
+        assertExpanded(expanded.get(1), 3, 2, 4);
+    }
+
+    @Test
+    void zeroRadiusReturnsTheMatchesUnchanged() {
+        List<Document> matches = List.of(match(3), match(4));
+
+        assertThat(retriever(0).expandNeighbours(matches)).isSameAs(matches);
+    }
+
+    private void assertExpanded(Document document, int anchor, int from, int to) {
+        assertThat(document.getId()).isEqualTo(id(anchor));
+        assertThat(document.getMetadata())
+            .containsEntry("expanded_from", from)
+            .containsEntry("expanded_to", to);
+        assertThat(document.getContent()).isEqualTo(DocumentChunker.stitch(chunks.subList(from, to + 1)));
+    }
+
+    @Test
+    void queryVariantsKeepClausesWithEnoughWordsOrAQuestionShape() {
+        assertThat(DocumentRetriever.queryVariants("How is freelance income taxed and what about dividends?", 4, 3))
+            .containsExactly("How is freelance income taxed and what about dividends?",
+                "How is freelance income taxed", "what about dividends");
+        // List items are fragments: only the whole question and the full clause are searched
+        assertThat(DocumentRetriever.queryVariants("Tax on salary, bonus and pension", 4, 3))
+            .containsExactly("Tax on salary, bonus and pension", "Tax on salary");
+        assertThat(DocumentRetriever.queryVariants("salary and dividends", 4, 3))
+            .containsExactly("salary and dividends");
+    }
+
+    @Test
+    void queryVariantsStopAtTheLimit() {
+        assertThat(DocumentRetriever.queryVariants(
+            "Who must file? When is the return due? Is zakat deductible?", 3, 3))
+            .containsExactly("Who must file? When is the return due? Is zakat deductible?",
+                "Who must file", "When is the return due");
+    }
+
+    @Test
+    void fuseRanksDocumentsFoundByMoreSearchesFirst() {
+        Document a = new Document("a", "A", new HashMap<>());
+        Document b = new Document("b", "B", new HashMap<>());
+        Document c = new Document("c", "C", new HashMap<>());
+
+        List<Document> fused = DocumentRetriever.fuse(List.of(List.of(a, b), List.of(c, b)), 60, 2);
+
+        assertThat(fused).extracting(Document::getId).containsExactly("b", "a");
+        assertThat((double) fused.get(0).getMetadata().get("rrf_score")).isEqualTo(1.0 / 62 + 1.0 / 62);
+    }
+
+    @Test
+    void variantSlowerThanTheWholeQuestionIsDropped() {
+        String query = "How is freelance income taxed and what about dividends?";
+        vectorStore.respond(query, Duration.ofMillis(100), "whole");
+        vectorStore.respond("How is freelance income taxed", Duration.ZERO, "freelance");
+        vectorStore.respond("what about dividends", Duration.ofSeconds(5), "dividends");
+        long start = System.nanoTime();
+
+        List<Document> documents = searcher().retrieve(query, null, null, RetrievalMode.MULTI_QUERY, 5);
+
+        assertThat(documents).extracting(Document::getId).containsExactlyInAnyOrder("whole", "freelance");
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+    }
+
+    private DocumentRetriever searcher() {
+        // Only adaptive search is exercised: no embedding client or repository
+        return new DocumentRetriever(vectorStore, null, null,
+            new UpstreamLimiters(new UpstreamProperties(), new SimpleMeterRegistry()), upstreamExecutor, ragProperties);
+    }
+
+    private DocumentRetriever retriever(int radius) {
+        ragProperties.getChunks().setExpandNeighbours(radius);
+        VectorStoreRepository repository = new VectorStoreRepository(null, null) {
+            @Override
+            public List<StoredDocument> findChunks(Collection<String> parentIds) {
+                List<StoredDocument> stored = new ArrayList<>();
+                for (int i = 0; i < chunks.size(); i++) {
+                    if (parentIds.contains(PARENT_ID) && !missing.contains(i)) {
+                        stored.add(new StoredDocument(id(i), chunks.get(i).text(), metadata(i)));
+                    }
+                }
+                return stored;
+            }
+        };
+        // Only expansion is exercised: no vector store, embedding client or search executor
+        return new DocumentRetriever(null, null, repository,
+            new UpstreamLimiters(new UpstreamProperties(), new SimpleMeterRegistry()), null, ragProperties);
+    }
+
+    private Document match(int index) {
+        return new Document(id(index), chunks.get(index).text(), metadata(index));
+    }
+
+    private Map<String, Object> metadata(int index) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("parent_id", PARENT_ID);
+        metadata.put("chunk_index", index);
+        metadata.put("chunk_count", chunks.size());
+        metadata.put("chunk_overlap", chunks.get(index).overlapChars());
+        return metadata;
+    }
+
+    private static String id(int index) {
+        return "chunk-" + index;
+    }
+
+    /**
+     * Value of the type equality in a scope filter, or null
+     */
+    private static String typeOf(Filter.Expression expression) {
+        if (expression == null) {
+            return null;
+        }
+        if (expression.type() == Filter.ExpressionType.EQ && expression.left() instanceof Filter.Key key
+            && key.key().equals("type")) {
+            return (String) ((Filter.Value) expression.right()).value();
+        }
+        if (expression.type() == Filter.ExpressionType.AND) {
+            String left = typeOf((Filter.Expression) expression.left());
+            return left != null ? left : typeOf((Filter.Expression) expression.right());
+        }
+        return null;
+    }
+
+    private static List<Chunk> chunks() {
+        IngestionProperties properties = new IngestionProperties();
+        properties.getChunking().setStrategy(Strategy.SENTENCE);
+        properties.getChunking().setMaxTokens(40);
+        properties.getChunking().setOverlapTokens(15);
+        List<Chunk> chunks = new DocumentChunker(properties, new TokenCounter()).split(TEXT);
+        assertThat(chunks).hasSizeGreaterThanOrEqualTo(10);
+        return chunks;
+    }
+
+    /**
+     * Documents with a fixed similarity to every query; applies topK, the similarity
+     * threshold and the type filter, and records the requests made. Queries given a
+     * response instead wait for its delay and return its one document.
+     */
+    private static final class StubVectorStore implements VectorStore {
+
+        private final List<Document> documents = new ArrayList<>();
+        private final List<SearchRequest> requests = new CopyOnWriteArrayList<>();
+        private final Map<String, Duration> delays = new HashMap<>();
+        private final Map<String, Document> responses = new HashMap<>();
+
+        void respond(String query, Duration delay, String id) {
+            delays.put(query, delay);
+            responses.put(query, new Document(id, "Content of " + id, new HashMap<>()));
+        }
+
+        void put(String id, String type, double similarity) {
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("type", type);
+            metadata.put("distance", (float) (1 - similarity));
+            documents.add(new Document(id, "Content of " + id, metadata));
+        }
+
+        @Override
+        public List<Document> similaritySearch(SearchRequest request) {
+            requests.add(request);
+            if (responses.containsKey(request.getQuery())) {
+                try {
+                    Thread.sleep(delays.get(request.getQuery()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("cancelled", e);
+                }
+                return List.of(responses.get(request.getQuery()));
+            }
+            String type = typeOf(request.getFilterExpression());
+            return documents.stream()
+                .filter(doc -> type == null || type.equals(doc.getMetadata().get("type")))
+                .filter(doc -> similarity(doc) >= request.getSimilarityThreshold())
+                .sorted(Comparator.comparingDouble(StubVectorStore::similarity).reversed())
+                .limit(request.getTopK())
+                .toList();
+        }
+
+        @Override
+        public void add(List<Document> documents) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<Boolean> delete(List<String> idList) {
+            throw new UnsupportedOperationException();
+        }
+
+        private static double similarity(Document doc) {
+            return 1 - ((Number) doc.getMetadata().get("distance")).doubleValue();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.IngestionProperties;
+import com.befiler.assistant.service.DocumentService.KnowledgeEntry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DocumentServiceTest {
+
+    // Storage collaborators are left out: every case here is rejected before anything is written
+    private final DocumentService documentService = new DocumentService(null, null, null, null,
+        new DocumentChunker(new IngestionProperties(), new TokenCounter()));
+
+    @Test
+    void qaEntriesAreKeyedByNormalizedQuestion() {
+        String id = DocumentService.entryId(qa("What is  the filing deadline?"));
+
+        assertThat(DocumentService.entryId(qa("what is the filing DEADLINE?"))).isEqualTo(id);
+        assertThat(DocumentService.entryId(qa("Who must file?"))).isNotEqualTo(id);
+    }
+
+    @Test
+    void paragraphsOfOneSectionGetDistinctIdsByKey() {
+        String first = DocumentService.entryId(paragraph("overview", "Salary is taxed at slab rates."));
+        String second = DocumentService.entryId(paragraph("allowances", "Allowances are taxable."));
+
+        assertThat(first).isNotEqualTo(second);
+        // The key, not the content, identifies the entry
+        assertThat(DocumentService.entryId(paragraph("overview", "Corrected text."))).isEqualTo(first);
+    }
+
+    @Test
+    void entryWithoutQuestionOrKeyIsRejected() {
+        assertThatThrownBy(() -> DocumentService.entryId(paragraph(null, "Salary is taxed at slab rates.")))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> DocumentService.entryId(paragraph(" ", "Salary is taxed at slab rates.")))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void entriesResolvingToTheSameIdAreRejectedBeforeWriting() {
+        List<KnowledgeEntry> entries = List.of(
+            paragraph("overview", "First version."),
+            paragraph("Overview", "Second version."));
+
+        assertThatThrownBy(() -> documentService.upsertEntries(entries))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("More than one entry");
+    }
+
+    private static KnowledgeEntry qa(String question) {
+        return new KnowledgeEntry(null, "salary", "deadlines", question, null, "30 September.");
+    }
+
+    private static KnowledgeEntry paragraph(String key, String content) {
+        return new KnowledgeEntry(null, "salary", "", null, key, content);
+    }
+}
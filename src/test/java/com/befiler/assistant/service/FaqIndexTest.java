@@ -0,0 +1,196 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.IngestionProperties;
+import com.befiler.assistant.config.RagProperties;
+import com.befiler.assistant.config.UpstreamProperties;
+import com.befiler.assistant.repository.VectorStoreRepository;
+import com.befiler.assistant.repository.VectorStoreRepository.StoredDocument;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingClient;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FaqIndexTest {
+
+    private final StubRepository repository = new StubRepository();
+    private final StubEmbeddingClient embeddings = new StubEmbeddingClient();
+    private final RagProperties ragProperties = new RagProperties();
+    private final FaqIndex faqIndex = newIndex();
+
+    @AfterEach
+    void shutdown() {
+        faqIndex.shutdown();
+    }
+
+    @Test
+    void normalizeIgnoresCaseSpacingAndEdgePunctuation() {
+        assertThat(FaqIndex.normalize("  When is the   Return DUE?! ")).isEqualTo("when is the return due");
+        assertThat(FaqIndex.normalize("Is 10% taxable?")).isEqualTo("is 10% taxable");
+    }
+
+    @Test
+    void entriesWithoutSubsectionAreInScopeForAllOfTheirSection() {
+        FaqIndex.Entry general = new FaqIndex.Entry("q", "a", "salary", "", null);
+        FaqIndex.Entry deadlines = new FaqIndex.Entry("q", "a", "salary", "deadlines", null);
+
+        assertThat(FaqIndex.inScope(general, "salary", "rates")).isTrue();
+        assertThat(FaqIndex.inScope(deadlines, "salary", "deadlines")).isTrue();
+        assertThat(FaqIndex.inScope(deadlines, "salary", "rates")).isFalse();
+        assertThat(FaqIndex.inScope(deadlines, "rental", null)).isFalse();
+        assertThat(FaqIndex.inScope(deadlines, null, null)).isTrue();
+    }
+
+    @Test
+    void similarMatchNeedsTheThreshold() {
+        repository.put("salary", "When is the return due?", 1.0, 0.0);
+        faqIndex.rebuild();
+
+        // cos = 0.98 clears the default 0.97, cos = 0.9 does not
+        assertThat(faqIndex.similarMatch(unit(0.98), "salary", null))
+            .hasValueSatisfying(match -> assertThat(match.question()).isEqualTo("When is the return due?"));
+        assertThat(faqIndex.similarMatch(unit(0.9), "salary", null)).isEmpty();
+        assertThat(faqIndex.similarMatch(unit(0.9), "salary", null, 0.85)).isPresent();
+    }
+
+    @Test
+    void similarMatchOnlyScoresTheRequestedSection() {
+        repository.put("salary", "When is the return due?", 1.0, 0.0);
+        repository.put("rental", "Are repairs deductible?", 0.0, 1.0);
+        faqIndex.rebuild();
+
+        assertThat(faqIndex.similarMatch(unit(1.0), "rental", null)).isEmpty();
+        assertThat(faqIndex.similarMatch(unit(1.0), null, null))
+            .hasValueSatisfying(match -> assertThat(match.section()).isEqualTo("salary"));
+    }
+
+    @Test
+    void sectionChangesAreCoalescedIntoOneRefreshOfThoseSections() throws InterruptedException {
+        repository.put("salary", "When is the return due?", 1.0, 0.0);
+        repository.put("rental", "Are repairs deductible?", 0.0, 1.0);
+        faqIndex.rebuild();
+        repository.put("salary", "Who must file?", 0.6, 0.8);
+
+        faqIndex.onSectionChanged(new KnowledgeSectionChangedEvent("salary", null));
+        faqIndex.onSectionChanged(new KnowledgeSectionChangedEvent("salary", "deadlines"));
+        faqIndex.onSectionChanged(new KnowledgeSectionChangedEvent("rental", null));
+        await(() -> faqIndex.exactMatch("who must file", "salary", null).isPresent());
+
+        assertThat(repository.fullReads).isEqualTo(1);
+        assertThat(repository.sectionReads).containsExactly(Set.of("salary", "rental"));
+        // Questions already embedded are carried over; only the new one was sent upstream
+        assertThat(embeddings.texts).hasSize(3).endsWith("Who must file?");
+    }
+
+    @Test
+    void refreshDropsQuestionsRemovedFromTheSection() throws InterruptedException {
+        repository.put("salary", "When is the return due?", 1.0, 0.0);
+        repository.put("rental", "Are repairs deductible?", 0.0, 1.0);
+        faqIndex.rebuild();
+        repository.rows.remove("salary");
+
+        faqIndex.onSectionChanged(new KnowledgeSectionChangedEvent("salary", null));
+        await(() -> faqIndex.exactMatch("when is the return due", null, null).isEmpty());
+
+        assertThat(faqIndex.exactMatch("are repairs deductible", null, null)).isPresent();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("refresh within 5s").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private FaqIndex newIndex() {
+        ragProperties.getFaq().setRefreshDelay(Duration.ofMillis(50));
+        UpstreamLimiters limiters = new UpstreamLimiters(new UpstreamProperties(), new SimpleMeterRegistry());
+        return new FaqIndex(repository, new LimitedEmbeddingClient(embeddings, limiters.embedding()), limiters,
+            ragProperties, new IngestionProperties());
+    }
+
+    private static float[] unit(double cosine) {
+        return new float[] {(float) cosine, (float) Math.sqrt(1 - cosine * cosine)};
+    }
+
+    /**
+     * Q&A rows by section, and the reads made
+     */
+    private static final class StubRepository extends VectorStoreRepository {
+
+        private final Map<String, List<StoredDocument>> rows = new ConcurrentHashMap<>();
+        private final List<Set<String>> sectionReads = new CopyOnWriteArrayList<>();
+        private volatile int fullReads;
+
+        StubRepository() {
+            super(null, null);
+        }
+
+        void put(String section, String question, double... embedding) {
+            StubEmbeddingClient.VECTORS.put(question, List.of(embedding[0], embedding[1]));
+            rows.computeIfAbsent(section, s -> new CopyOnWriteArrayList<>()).add(new StoredDocument(question,
+                "Question: " + question + "\n\nAnswer: Answer to " + question,
+                Map.of("section", section, "subsection", "", "question", question, "type", "qa_pair")));
+        }
+
+        @Override
+        public List<StoredDocument> findQaPairs() {
+            fullReads++;
+            return rows.values().stream().flatMap(List::stream).toList();
+        }
+
+        @Override
+        public List<StoredDocument> findQaPairs(Collection<String> sections) {
+            sectionReads.add(Set.copyOf(sections));
+            return sections.stream().flatMap(section -> rows.getOrDefault(section, List.of()).stream()).toList();
+        }
+    }
+
+    /**
+     * Embeds the questions registered with StubRepository.put, recording each text sent
+     */
+    private static final class StubEmbeddingClient implements EmbeddingClient {
+
+        private static final Map<String, List<Double>> VECTORS = new ConcurrentHashMap<>();
+
+        private final List<String> texts = new CopyOnWriteArrayList<>();
+
+        @Override
+        public List<List<Double>> embed(List<String> batch) {
+            texts.addAll(batch);
+            List<List<Double>> result = new ArrayList<>();
+            batch.forEach(text -> result.add(VECTORS.get(text)));
+            return result;
+        }
+
+        @Override
+        public List<Double> embed(String text) {
+            return embed(List.of(text)).get(0);
+        }
+
+        @Override
+        public List<Double> embed(Document document) {
+            return embed(document.getContent());
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
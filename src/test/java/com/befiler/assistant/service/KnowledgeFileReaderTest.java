@@ -0,0 +1,144 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.IngestionProperties;
+import com.befiler.assistant.config.KnowledgeProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KnowledgeFileReaderTest {
+
+    // Only document building is used: nothing is written
+    private final KnowledgeFileReader reader = new KnowledgeFileReader(
+        new DocumentService(null, null, null, null, new DocumentChunker(new IngestionProperties(), new TokenCounter())),
+        new KnowledgeProperties(), new ObjectMapper());
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void markdownHeadingsBecomeSectionsAndQuestions() throws IOException {
+        List<Document> documents = read("salary.md", """
+            # Salary
+            Salary is taxed at slab rates.
+
+            ## Deadlines
+            ### When is the return due?
+            By 30 September.
+            """);
+
+        assertThat(documents).hasSize(2);
+        assertThat(documents.get(0).getMetadata())
+            .containsEntry("type", "general_info")
+            .containsEntry("section", "Salary")
+            .containsEntry("subsection", "");
+        assertThat(documents.get(0).getContent()).isEqualTo("Salary is taxed at slab rates.\n");
+        assertThat(documents.get(1).getMetadata())
+            .containsEntry("type", "qa_pair")
+            .containsEntry("subsection", "Deadlines")
+            .containsEntry("question", "When is the return due?");
+    }
+
+    @Test
+    void markdownTextBeforeTheFirstSectionIsRejectedWithItsLine() throws IOException {
+        assertThatThrownBy(() -> read("salary.md", """
+            Stray introduction.
+            # Salary
+            Salary is taxed at slab rates.
+            """))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("salary.md:2")
+            .hasMessageContaining("before the first '# Section' heading");
+    }
+
+    @Test
+    void yamlDocumentsAreReadOnePerSection() throws IOException {
+        List<Document> documents = read("knowledge.yaml", """
+            section: Salary
+            generalInfo: Salary is taxed at slab rates.
+            qaPairs:
+              - question: Who must file?
+                answer: Everyone above the threshold.
+            ---
+            section: Rental income
+            subsection: Deductions
+            generalInfo: Repairs are deductible.
+            """);
+
+        assertThat(documents).extracting(doc -> doc.getMetadata().get("section"))
+            .containsExactly("Salary", "Salary", "Rental income");
+        assertThat(documents.get(2).getMetadata()).containsEntry("subsection", "Deductions");
+    }
+
+    @Test
+    void yamlErrorsNameTheDocument() throws IOException {
+        assertThatThrownBy(() -> read("knowledge.yaml", """
+            section: Salary
+            generalInfo: Salary is taxed at slab rates.
+            ---
+            generalInfo: No section here.
+            """))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("(document 2)")
+            .hasMessageContaining("missing section");
+
+        assertThatThrownBy(() -> read("knowledge.yml", "- just a list\n"))
+            .hasMessageContaining("expected a mapping");
+        assertThatThrownBy(() -> read("knowledge.yml", "section: Salary\nqaPairs: not a list\n"))
+            .hasMessageContaining("qaPairs must be a list");
+        assertThatThrownBy(() -> read("knowledge.yml", "section: Salary\nqaPairs:\n  - question: Who must file?\n"))
+            .hasMessageContaining("missing answer");
+    }
+
+    @Test
+    void jsonLinesSkipBlankLines() throws IOException {
+        List<Document> documents = read("knowledge.jsonl", """
+            {"section": "Salary", "question": "Who must file?", "answer": "Everyone above the threshold."}
+
+            {"section": "Salary", "subsection": "Rates", "content": "Salary is taxed at slab rates."}
+            """);
+
+        assertThat(documents).extracting(doc -> doc.getMetadata().get("type"))
+            .containsExactly("qa_pair", "general_info");
+    }
+
+    @Test
+    void jsonLinesErrorsNameTheLine() throws IOException {
+        assertThatThrownBy(() -> read("knowledge.jsonl", """
+            {"section": "Salary", "content": "Salary is taxed at slab rates."}
+            {"section": "Salary", "content":
+            """))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageStartingWith(dir.resolve("knowledge.jsonl") + ":2: ");
+
+        assertThatThrownBy(() -> read("knowledge.jsonl", "{\"content\": \"No section here.\"}\n"))
+            .hasMessageContaining(":1: missing section");
+        assertThatThrownBy(() -> read("knowledge.jsonl", "{\"section\": \"Salary\", \"question\": \"Who must file?\"}\n"))
+            .hasMessageContaining(":1: needs question and answer, or content");
+    }
+
+    @Test
+    void unsupportedExtensionIsRejected() throws IOException {
+        assertThat(KnowledgeFileReader.isKnowledgeFile(Path.of("notes.txt"))).isFalse();
+        assertThatThrownBy(() -> read("notes.txt", "Salary is taxed at slab rates.\n"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Unsupported knowledge file");
+    }
+
+    private List<Document> read(String name, String text) throws IOException {
+        Path file = Files.writeString(dir.resolve(name), text);
+        List<Document> documents = new ArrayList<>();
+        reader.read(file, documents::add);
+        return documents;
+    }
+}
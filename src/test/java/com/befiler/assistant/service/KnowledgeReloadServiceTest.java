@@ -0,0 +1,264 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.IngestionProperties;
+import com.befiler.assistant.config.KnowledgeProperties;
+import com.befiler.assistant.model.KnowledgeReloadStatus;
+import com.befiler.assistant.model.KnowledgeReloadStatus.State;
+import com.befiler.assistant.repository.VectorStoreRepository;
+import com.befiler.assistant.repository.VectorStoreRepository.EmbeddedDocument;
+import com.befiler.assistant.repository.VectorStoreRepository.SourceEntry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KnowledgeReloadServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private final StubRepository repository = new StubRepository();
+    private final StubWriter writer = new StubWriter(repository);
+    private final KnowledgeProperties knowledgeProperties = new KnowledgeProperties();
+    private final List<Object> events = new ArrayList<>();
+    private KnowledgeReloadService service;
+
+    @AfterEach
+    void shutdown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void reloadSwapsOnlyTheSectionsWhoseFilesChanged() throws Exception {
+        write("salary.md", "# Salary\nSalary is taxed at slab rates.\n");
+        write("rental.md", "# Rental\nRepairs are deductible.\n");
+        KnowledgeReloadStatus first = reload();
+        assertThat(first.getChangedSections()).containsExactlyInAnyOrder("Salary", "Rental");
+        Set<String> rentalIds = repository.idsOf("Rental");
+
+        write("salary.md", "# Salary\nSalary is taxed at the new slab rates.\n");
+        KnowledgeReloadStatus second = reload();
+
+        assertThat(second.getState()).isEqualTo(State.SUCCEEDED);
+        assertThat(second.getChangedSections()).containsExactly("Salary");
+        assertThat(second.getInserted()).isEqualTo(1);
+        assertThat(second.getDeleted()).isEqualTo(1);
+        assertThat(repository.idsOf("Rental")).isEqualTo(rentalIds);
+        assertThat(repository.contentsOf("Salary")).containsExactly("Salary is taxed at the new slab rates.\n");
+    }
+
+    @Test
+    void unchangedFilesSwapNothing() throws Exception {
+        write("salary.md", "# Salary\nSalary is taxed at slab rates.\n");
+        reload();
+        int swaps = writer.swaps;
+
+        KnowledgeReloadStatus again = reload();
+
+        assertThat(again.getChangedSections()).isEmpty();
+        assertThat(writer.swaps).isEqualTo(swaps);
+    }
+
+    @Test
+    void rollbackRestoresTheReplacedRowsFromTheHistoryTable() throws Exception {
+        write("salary.md", "# Salary\nSalary is taxed at slab rates.\n");
+        reload();
+        write("salary.md", "# Salary\nSalary is taxed at the new slab rates.\n");
+        reload();
+        assertThat(repository.history).containsOnlyKeys(new VersionKey(2, "Salary"));
+
+        KnowledgeReloadService.SectionRollback rollback = service.rollback("Salary").orElseThrow();
+
+        assertThat(rollback).isEqualTo(new KnowledgeReloadService.SectionRollback("Salary", 2, 1, 1));
+        assertThat(repository.contentsOf("Salary")).containsExactly("Salary is taxed at slab rates.\n");
+        assertThat(repository.history).isEmpty();
+        assertThat(events).contains(new KnowledgeSectionChangedEvent("Salary", null));
+
+        // Version 1 replaced nothing: rolling it back only removes what it inserted
+        assertThat(service.rollback("Salary")).hasValueSatisfying(older -> {
+            assertThat(older.restored()).isZero();
+            assertThat(older.removed()).isEqualTo(1);
+        });
+        assertThat(repository.idsOf("Salary")).isEmpty();
+        assertThat(service.rollback("Salary")).isEmpty();
+    }
+
+    @Test
+    void versionsBeyondTheHistoryLimitAreDroppedFromTheTable() throws Exception {
+        knowledgeProperties.getReload().setHistory(1);
+        for (String rate : List.of("slab", "new slab", "flat")) {
+            write("salary.md", "# Salary\nSalary is taxed at " + rate + " rates.\n");
+            reload();
+        }
+
+        assertThat(repository.history).containsOnlyKeys(new VersionKey(3, "Salary"));
+        assertThat(service.rollback("Salary")).isPresent();
+        assertThat(repository.contentsOf("Salary")).containsExactly("Salary is taxed at new slab rates.\n");
+        assertThat(service.rollback("Salary")).isEmpty();
+    }
+
+    @Test
+    void noHistoryKeepsNothingToRollBack() throws Exception {
+        knowledgeProperties.getReload().setHistory(0);
+        write("salary.md", "# Salary\nSalary is taxed at slab rates.\n");
+        reload();
+        write("salary.md", "# Salary\nSalary is taxed at the new slab rates.\n");
+        reload();
+
+        assertThat(repository.resets).isZero();
+        assertThat(repository.history).isEmpty();
+        assertThat(service.rollback("Salary")).isEmpty();
+    }
+
+    private void write(String name, String text) throws IOException {
+        Files.writeString(dir.resolve(name), text);
+    }
+
+    private KnowledgeReloadStatus reload() throws InterruptedException {
+        if (service == null) {
+            knowledgeProperties.setDirectory(dir);
+            // Only document building is used by the reader: nothing is written through DocumentService
+            KnowledgeFileReader reader = new KnowledgeFileReader(
+                new DocumentService(null, null, null, null,
+                    new DocumentChunker(new IngestionProperties(), new TokenCounter())),
+                knowledgeProperties, new ObjectMapper());
+            service = new KnowledgeReloadService(reader, knowledgeProperties, repository, writer, events::add);
+        }
+        long version = service.requestReload("test").getVersion();
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (true) {
+            KnowledgeReloadStatus status = service.recentReloads().stream()
+                .filter(reload -> reload.getVersion() == version)
+                .findFirst()
+                .orElseThrow();
+            if (status.getState() != State.QUEUED && status.getState() != State.RUNNING) {
+                return status;
+            }
+            assertThat(System.nanoTime()).as("reload within 5s").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private record VersionKey(long version, String section) {
+    }
+
+    /**
+     * The vector_store and vector_store_history tables as maps
+     */
+    private static final class StubRepository extends VectorStoreRepository {
+
+        private final Map<String, Document> rows = new LinkedHashMap<>();
+        private final Map<VersionKey, List<Document>> history = new HashMap<>();
+        private int resets;
+
+        StubRepository() {
+            super(null, null);
+        }
+
+        Set<String> idsOf(String section) {
+            return rows.values().stream()
+                .filter(doc -> section.equals(doc.getMetadata().get("section")))
+                .map(Document::getId)
+                .collect(Collectors.toSet());
+        }
+
+        List<String> contentsOf(String section) {
+            return rows.values().stream()
+                .filter(doc -> section.equals(doc.getMetadata().get("section")))
+                .map(Document::getContent)
+                .toList();
+        }
+
+        @Override
+        public synchronized List<SourceEntry> findEntriesBySource(String source) {
+            return rows.values().stream()
+                .filter(doc -> source.equals(doc.getMetadata().get("source")))
+                .map(doc -> new SourceEntry(doc.getId(), (String) doc.getMetadata().get("section"),
+                    (String) doc.getMetadata().get("content_hash")))
+                .toList();
+        }
+
+        @Override
+        public synchronized void resetHistory() {
+            resets++;
+            history.clear();
+        }
+
+        @Override
+        public synchronized int archive(long version, String section, Collection<String> ids) {
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            List<Document> archived = ids.stream().map(rows::get).toList();
+            history.put(new VersionKey(version, section), archived);
+            return archived.size();
+        }
+
+        @Override
+        public synchronized List<EmbeddedDocument> restoreArchived(long version, String section) {
+            List<Document> archived = history.getOrDefault(new VersionKey(version, section), List.of());
+            archived.forEach(doc -> rows.put(doc.getId(), doc));
+            return archived.stream()
+                .map(doc -> new EmbeddedDocument(doc.getId(), doc.getContent(), doc.getMetadata(), new float[] {1f}))
+                .toList();
+        }
+
+        @Override
+        public synchronized int deleteArchived(long version, String section) {
+            List<Document> removed = history.remove(new VersionKey(version, section));
+            return removed != null ? removed.size() : 0;
+        }
+
+        synchronized void swap(List<Document> inserts, Collection<String> deleteIds) {
+            inserts.forEach(doc -> rows.put(doc.getId(), doc));
+            deleteIds.forEach(rows::remove);
+        }
+    }
+
+    /**
+     * Applies swaps to the stub tables without embedding; counts the swaps made
+     */
+    private static final class StubWriter extends BatchDocumentWriter {
+
+        private final StubRepository repository;
+        private int swaps;
+
+        StubWriter(StubRepository repository) {
+            super(null, null, null, null, null, null, null, null);
+            this.repository = repository;
+        }
+
+        @Override
+        public void swap(List<Document> inserts, List<String> deleteIds, Runnable beforeWrite) {
+            swaps++;
+            beforeWrite.run();
+            repository.swap(inserts, deleteIds);
+        }
+
+        @Override
+        public List<Document> restore(Supplier<List<Document>> restore, List<String> deleteIds) {
+            List<Document> restored = restore.get();
+            repository.swap(List.of(), deleteIds);
+            return restored;
+        }
+    }
+}
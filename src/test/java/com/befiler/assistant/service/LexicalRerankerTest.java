@@ -0,0 +1,67 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.RagProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LexicalRerankerTest {
+
+    private final LexicalReranker reranker = new LexicalReranker(new RagProperties());
+
+    @Test
+    void candidatesMatchingMoreQueryTermsRankFirst() {
+        List<Document> reranked = reranker.rerank("withholding tax on rental income", candidates(40));
+
+        assertThat(reranked).hasSize(40);
+        assertThat(reranked.get(0).getContent()).contains("rental income");
+        assertThat(reranked).extracting(doc -> ((Number) doc.getMetadata().get("rerank_score")).doubleValue())
+            .isSortedAccordingTo((a, b) -> Double.compare(b, a));
+    }
+
+    @Test
+    void callersDocumentsAreNotModified() {
+        List<Document> candidates = candidates(5);
+
+        List<Document> reranked = reranker.rerank("withholding tax", candidates);
+
+        assertThat(candidates).allSatisfy(doc -> assertThat(doc.getMetadata()).doesNotContainKey("rerank_score"));
+        assertThat(reranked).allSatisfy(doc -> assertThat(doc.getMetadata())
+            .containsKey("rerank_score")
+            .containsKey("distance"));
+    }
+
+    @Test
+    void candidateMentioningTheQueryTermsMovesUp() {
+        List<Document> candidates = List.of(
+            document("a", "Salary is taxed at slab rates for the tax year.", 0.10),
+            document("b", "Withholding tax on rental income is deducted by the tenant.", 0.15));
+
+        List<Document> reranked = reranker.rerank("withholding on rental income", candidates);
+
+        assertThat(reranked.get(0).getId()).isEqualTo("b");
+    }
+
+    private static List<Document> candidates(int count) {
+        String[] topics = {"rental income", "withholding tax", "salary slab", "capital gains", "zakat deduction"};
+        List<Document> candidates = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String content = "Entry " + i + " about " + topics[i % topics.length] + " and "
+                + topics[(i * 3 + 1) % topics.length] + (i % 4 == 0 ? " including tax on income" : "");
+            candidates.add(document("doc-" + i, content, 0.1 + 0.01 * i));
+        }
+        return candidates;
+    }
+
+    private static Document document(String id, String content, double distance) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("distance", distance);
+        return new Document(id, content, metadata);
+    }
+}
@@ -0,0 +1,85 @@
+package com.befiler.assistant.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingClient;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrecomputedEmbeddingClientTest {
+
+    private final CountingEmbeddingClient upstream = new CountingEmbeddingClient();
+    private final PrecomputedEmbeddingClient client = new PrecomputedEmbeddingClient(upstream);
+
+    @Test
+    void pinnedTextsAreServedWithoutAnUpstreamCall() {
+        try (PrecomputedEmbeddingClient.Pin pin = client.pin(Map.of("what is the deadline?", List.of(1.0, 0.0)))) {
+            assertThat(client.embed("what is the deadline?")).containsExactly(1.0, 0.0);
+            assertThat(upstream.texts).isEmpty();
+        }
+
+        client.embed("what is the deadline?");
+        assertThat(upstream.texts).containsExactly("what is the deadline?");
+    }
+
+    @Test
+    void batchSendsOnlyUnpinnedTextsUpstreamInOrder() {
+        client.pin(Map.of("b", List.of(2.0, 2.0)));
+
+        List<List<Double>> embeddings = client.embed(List.of("a", "b", "c"));
+
+        assertThat(upstream.texts).containsExactly("a", "c");
+        assertThat(embeddings).containsExactly(List.of(1.0, 1.0), List.of(2.0, 2.0), List.of(3.0, 3.0));
+    }
+
+    @Test
+    void overlappingPinsKeepATextUntilTheLastIsClosed() {
+        PrecomputedEmbeddingClient.Pin first = client.pin(Map.of("q", List.of(1.0)));
+        PrecomputedEmbeddingClient.Pin second = client.pin(Map.of("q", List.of(1.0)));
+
+        first.close();
+        first.close();
+        client.embed("q");
+        assertThat(upstream.texts).isEmpty();
+
+        second.close();
+        client.embed("q");
+        assertThat(upstream.texts).containsExactly("q");
+    }
+
+    /**
+     * Embeds each text as a vector of its first letter's position in the alphabet
+     */
+    private static final class CountingEmbeddingClient implements EmbeddingClient {
+
+        private final List<String> texts = new ArrayList<>();
+
+        @Override
+        public List<Double> embed(String text) {
+            texts.add(text);
+            double value = Character.toLowerCase(text.charAt(0)) - 'a' + 1;
+            return List.of(value, value);
+        }
+
+        @Override
+        public List<List<Double>> embed(List<String> batch) {
+            return batch.stream().map(this::embed).toList();
+        }
+
+        @Override
+        public List<Double> embed(Document document) {
+            return embed(document.getContent());
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
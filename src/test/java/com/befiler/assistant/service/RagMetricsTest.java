@@ -0,0 +1,66 @@
+package com.befiler.assistant.service;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RagMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final KnownSections knownSections = new KnownSections(null);
+    private final RagMetrics ragMetrics = new RagMetrics(meterRegistry, knownSections);
+
+    @Test
+    void unknownSectionsShareOneTag() {
+        knownSections.add("salary");
+
+        ragMetrics.timeStage("search", "salary", () -> "ok");
+        ragMetrics.timeStage("search", "made-up-1", () -> "ok");
+        ragMetrics.timeStage("search", "made-up-2", () -> "ok");
+        ragMetrics.timeStage("search", null, () -> "ok");
+
+        assertThat(meterRegistry.find("rag.query.stage").timers())
+            .extracting(timer -> timer.getId().getTag("section"))
+            .containsExactlyInAnyOrder("salary", "other", "none");
+        assertThat(meterRegistry.get("rag.query.stage").tag("section", "other").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void latencyHistogramIsNotTaggedBySection() {
+        knownSections.add("salary");
+        knownSections.add("rental income");
+
+        Timer.Sample first = ragMetrics.start();
+        ragMetrics.recordQuery(first, "salary", "success");
+        Timer.Sample second = ragMetrics.start();
+        ragMetrics.recordQuery(second, "rental income", "success");
+
+        assertThat(meterRegistry.find("rag.query").timers()).hasSize(2);
+        Timer latency = meterRegistry.get("rag.query.latency").timer();
+        assertThat(latency.getId().getTag("section")).isNull();
+        assertThat(latency.count()).isEqualTo(2);
+    }
+
+    @Test
+    void adaptiveSearchRecordsSavingsOvershootAndSearches() {
+        ragMetrics.recordAdaptiveSearch("salary", "early_stop", 6, 1, 8);
+        ragMetrics.recordAdaptiveSearch("salary", "type_fill", 10, 2, 8);
+
+        assertThat(meterRegistry.get("rag.retrieval.candidates.saved").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("rag.retrieval.candidates.extra").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("rag.retrieval.searches").tag("outcome", "type_fill").summary().totalAmount())
+            .isEqualTo(2);
+    }
+
+    @Test
+    void knownSectionsStopGrowingAtTheCap() {
+        for (int i = 0; i < KnownSections.MAX_SECTIONS + 10; i++) {
+            knownSections.add("section-" + i);
+        }
+
+        assertThat(knownSections.contains("section-0")).isTrue();
+        assertThat(knownSections.contains("section-" + (KnownSections.MAX_SECTIONS + 5))).isFalse();
+    }
+}
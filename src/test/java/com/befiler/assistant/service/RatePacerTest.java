@@ -0,0 +1,86 @@
+package com.befiler.assistant.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RatePacerTest {
+
+    private static final long INTERVAL_MILLIS = 50;
+
+    @Test
+    void firstCallDoesNotWait() {
+        RatePacer pacer = new RatePacer(1000.0 / INTERVAL_MILLIS);
+        long start = System.nanoTime();
+
+        pacer.await();
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(INTERVAL_MILLIS));
+    }
+
+    @Test
+    void sequentialCallsAreSpacedByTheInterval() {
+        long begin = System.nanoTime();
+        RatePacer pacer = new RatePacer(1000.0 / INTERVAL_MILLIS);
+        List<Long> starts = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            pacer.await();
+            starts.add(System.nanoTime());
+        }
+
+        // Call i gets the slot i intervals after the pacer was created, and parkNanos never returns early
+        for (int i = 0; i < starts.size(); i++) {
+            assertThat(Duration.ofNanos(starts.get(i) - begin).toMillis()).isGreaterThanOrEqualTo(i * INTERVAL_MILLIS);
+        }
+    }
+
+    @Test
+    void concurrentCallersTakeDistinctSlotsWithoutBursting() {
+        long begin = System.nanoTime();
+        RatePacer pacer = new RatePacer(1000.0 / INTERVAL_MILLIS);
+        List<Long> starts = Collections.synchronizedList(new ArrayList<>());
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 6; i++) {
+                executor.execute(() -> {
+                    pacer.await();
+                    starts.add(System.nanoTime());
+                });
+            }
+        }
+
+        List<Long> sorted = new ArrayList<>(starts);
+        Collections.sort(sorted);
+        assertThat(sorted).hasSize(6);
+        // Six callers arriving together need five intervals
+        assertThat(Duration.ofNanos(sorted.get(5) - begin).toMillis()).isGreaterThanOrEqualTo(5 * INTERVAL_MILLIS);
+    }
+
+    @Test
+    void idlePacerDoesNotBankSlots() throws InterruptedException {
+        RatePacer pacer = new RatePacer(1000.0 / INTERVAL_MILLIS);
+        pacer.await();
+        Thread.sleep(5 * INTERVAL_MILLIS);
+
+        long start = System.nanoTime();
+        pacer.await();
+        pacer.await();
+
+        // After a quiet spell the next call runs at once, but the one after still waits an interval
+        assertThat(Duration.ofNanos(System.nanoTime() - start).toMillis()).isGreaterThanOrEqualTo(INTERVAL_MILLIS);
+    }
+
+    @Test
+    void rateMustBePositive() {
+        assertThatThrownBy(() -> new RatePacer(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,55 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.CacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SemanticAnswerCacheTest {
+
+    private final CacheProperties cacheProperties = new CacheProperties();
+    private final SemanticAnswerCache cache = new SemanticAnswerCache(cacheProperties, new SimpleMeterRegistry());
+
+    @Test
+    void similarQueryInTheSameScopeIsAHit() {
+        cache.put("Salary", "Rates", unit(1.0), "Slab rates apply.");
+
+        assertThat(cache.lookup("salary", "rates", unit(0.99))).contains("Slab rates apply.");
+        assertThat(cache.lookup("Salary", "Rates", unit(0.9))).isEmpty();
+        assertThat(cache.lookup("Salary", null, unit(1.0))).isEmpty();
+        assertThat(cache.lookup("Rental", "Rates", unit(1.0))).isEmpty();
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        cacheProperties.getAnswers().setMaxEntries(2);
+        SemanticAnswerCache bounded = new SemanticAnswerCache(cacheProperties, new SimpleMeterRegistry());
+        bounded.put("Salary", null, unit(1.0), "first");
+        bounded.put("Salary", null, unit(0.0), "second");
+        assertThat(bounded.lookup("Salary", null, unit(1.0))).contains("first");
+
+        bounded.put("Rental", null, unit(1.0), "third");
+
+        assertThat(bounded.lookup("Salary", null, unit(1.0))).contains("first");
+        assertThat(bounded.lookup("Salary", null, unit(0.0))).isEmpty();
+        assertThat(bounded.lookup("Rental", null, unit(1.0))).contains("third");
+    }
+
+    @Test
+    void sectionChangeDropsItsAnswersAndUnscopedOnes() {
+        cache.put("Salary", null, unit(1.0), "salary");
+        cache.put("Rental", null, unit(1.0), "rental");
+        cache.put(null, null, unit(1.0), "unscoped");
+
+        cache.onSectionChanged(new KnowledgeSectionChangedEvent("Salary", null));
+
+        assertThat(cache.lookup("Salary", null, unit(1.0))).isEmpty();
+        assertThat(cache.lookup(null, null, unit(1.0))).isEmpty();
+        assertThat(cache.lookup("Rental", null, unit(1.0))).contains("rental");
+    }
+
+    private static float[] unit(double cosine) {
+        return new float[] {(float) cosine, (float) Math.sqrt(1 - cosine * cosine)};
+    }
+}
@@ -0,0 +1,199 @@
+package com.befiler.assistant.service;
+
+import com.befiler.assistant.config.ResilienceProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.openai.api.OpenAiApi.OpenAiApiException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UpstreamGuardTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void retriesTransientFailuresUntilOneSucceeds() {
+        UpstreamGuard guard = guard(policy(Duration.ofSeconds(2), Duration.ZERO));
+
+        String result = guard.call(failingTimes(2, () -> new ResourceAccessException("connection reset")));
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(attempts).hasValue(3);
+        assertThat(counter("rag.upstream.retries")).isEqualTo(2);
+        assertThat(calls("success")).isEqualTo(1);
+    }
+
+    @Test
+    void givesUpAfterMaxRetries() {
+        UpstreamGuard guard = guard(policy(Duration.ofSeconds(2), Duration.ZERO));
+
+        assertThatThrownBy(() -> guard.call(failingTimes(5, () -> new ResourceAccessException("connection reset"))))
+            .isInstanceOf(ResourceAccessException.class);
+        assertThat(attempts).hasValue(3);
+        assertThat(calls("failure")).isEqualTo(1);
+    }
+
+    @Test
+    void doesNotRetryNonTransientErrors() {
+        UpstreamGuard guard = guard(policy(Duration.ofSeconds(2), Duration.ZERO));
+
+        assertThatThrownBy(() -> guard.call(failingTimes(1, () -> new IllegalArgumentException("bad input"))))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void openAiServerErrorsAreRetriedAndClientErrorsAreNot() {
+        UpstreamGuard guard = guard(policy(Duration.ofSeconds(2), Duration.ZERO));
+
+        assertThat(guard.call(failingTimes(1, () -> new OpenAiApiException("503 - upstream unavailable"))))
+            .isEqualTo("ok");
+        assertThat(attempts).hasValue(2);
+
+        attempts.set(0);
+        assertThatThrownBy(() -> guard.call(failingTimes(1, () -> new OpenAiApiException("400 - invalid request"))))
+            .isInstanceOf(OpenAiApiException.class);
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void clientErrorsDoNotOpenTheCircuit() {
+        ResilienceProperties.Policy policy = policy(Duration.ofSeconds(2), Duration.ZERO);
+        policy.getCircuitBreaker().setSlidingWindow(1);
+        policy.getCircuitBreaker().setMinimumCalls(1);
+        UpstreamGuard guard = guard(policy);
+
+        assertThatThrownBy(() -> guard.call(failingTimes(1, () -> new OpenAiApiException("400 - invalid request"))))
+            .isInstanceOf(OpenAiApiException.class);
+        attempts.set(0);
+        assertThatThrownBy(() -> guard.call(failingTimes(1,
+            () -> HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", HttpHeaders.EMPTY, null, null))))
+            .isInstanceOf(HttpClientErrorException.class);
+
+        assertThat(guard.isOpen()).isFalse();
+        assertThat(calls("client_error")).isEqualTo(2);
+        assertThat(calls("failure")).isZero();
+    }
+
+    @Test
+    void stopsWaitingAtTheDeadline() {
+        UpstreamGuard guard = guard(policy(Duration.ofMillis(100), Duration.ZERO));
+        long start = System.nanoTime();
+
+        assertThatThrownBy(() -> guard.call(sleeping(Duration.ofSeconds(5), "late")))
+            .isInstanceOf(UpstreamTimeoutException.class);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+        // A missed deadline is final: no retry is started past it
+        assertThat(attempts).hasValue(1);
+        assertThat(calls("timeout")).isEqualTo(1);
+    }
+
+    @Test
+    void slowRequestIsHedgedAndTheFirstAnswerWins() {
+        UpstreamGuard guard = guard(policy(Duration.ofSeconds(2), Duration.ofMillis(50)));
+        Supplier<String> slowThenFast = () -> attempts.get() == 0
+            ? sleeping(Duration.ofSeconds(5), "slow").get()
+            : succeeding("fast").get();
+        long start = System.nanoTime();
+
+        String result = guard.call(slowThenFast);
+
+        assertThat(result).isEqualTo("fast");
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+        assertThat(counter("rag.upstream.hedges")).isEqualTo(1);
+    }
+
+    @Test
+    void fastRequestIsNotHedged() {
+        UpstreamGuard guard = guard(policy(Duration.ofSeconds(2), Duration.ofMillis(500)));
+
+        assertThat(guard.call(succeeding("ok"))).isEqualTo("ok");
+        assertThat(attempts).hasValue(1);
+        assertThat(counter("rag.upstream.hedges")).isZero();
+    }
+
+    @Test
+    void openCircuitFailsFastWithoutCallingUpstream() {
+        ResilienceProperties.Policy policy = policy(Duration.ofSeconds(2), Duration.ZERO);
+        policy.getCircuitBreaker().setSlidingWindow(1);
+        policy.getCircuitBreaker().setMinimumCalls(1);
+        UpstreamGuard guard = guard(policy);
+
+        assertThatThrownBy(() -> guard.call(failingTimes(1, () -> new IllegalStateException("broken"))))
+            .isInstanceOf(IllegalStateException.class);
+        assertThat(guard.isOpen()).isTrue();
+
+        assertThatThrownBy(() -> guard.call(succeeding("ok"))).isInstanceOf(CircuitOpenException.class);
+        assertThat(attempts).hasValue(1);
+        assertThat(calls("rejected")).isEqualTo(1);
+    }
+
+    private UpstreamGuard guard(ResilienceProperties.Policy policy) {
+        return new UpstreamGuard("test", policy, executor, meterRegistry);
+    }
+
+    private static ResilienceProperties.Policy policy(Duration timeout, Duration hedgeDelay) {
+        ResilienceProperties.Policy policy = new ResilienceProperties.Policy(timeout, hedgeDelay);
+        policy.setMaxRetries(2);
+        policy.setInitialBackoff(Duration.ofMillis(1));
+        policy.setMaxBackoff(Duration.ofMillis(5));
+        return policy;
+    }
+
+    private Supplier<String> failingTimes(int failures, Supplier<RuntimeException> error) {
+        return () -> {
+            if (attempts.incrementAndGet() <= failures) {
+                throw error.get();
+            }
+            return "ok";
+        };
+    }
+
+    private Supplier<String> succeeding(String value) {
+        return () -> {
+            attempts.incrementAndGet();
+            return value;
+        };
+    }
+
+    private Supplier<String> sleeping(Duration duration, String value) {
+        return () -> {
+            attempts.incrementAndGet();
+            try {
+                Thread.sleep(duration);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("cancelled", e);
+            }
+            return value;
+        };
+    }
+
+    private double counter(String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+
+    private double calls(String outcome) {
+        return meterRegistry.get("rag.upstream.calls").tag("outcome", outcome).counter().count();
+    }
+}
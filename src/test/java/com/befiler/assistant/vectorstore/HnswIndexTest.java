@@ -0,0 +1,82 @@
+package com.befiler.assistant.vectorstore;
+
+import com.befiler.assistant.config.VectorStoreProperties.Quantization;
+import com.befiler.assistant.service.VectorMath;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HnswIndexTest {
+
+    private static final int DIMENSIONS = 32;
+    private static final int K = 10;
+
+    private final List<float[]> vectors = randomUnitVectors(2000, new Random(7));
+
+    @Test
+    void approximateSearchRecallsMostOfTheExactTopK() {
+        HnswIndex index = new HnswIndex(DIMENSIONS, 16, 100, vectors.size());
+        vectors.forEach(index::add);
+
+        assertThat(recall(index)).isGreaterThanOrEqualTo(0.95);
+    }
+
+    @Test
+    void int8IndexKeepsRecall() {
+        HnswIndex index = new HnswIndex(DIMENSIONS, 16, 100, vectors.size(), Quantization.INT8);
+        vectors.forEach(index::add);
+
+        assertThat(recall(index)).isGreaterThanOrEqualTo(0.9);
+    }
+
+    @Test
+    void rejectedNodesAreNeverReturned() {
+        HnswIndex index = new HnswIndex(DIMENSIONS, 16, 100, vectors.size());
+        vectors.forEach(index::add);
+
+        List<HnswIndex.Candidate> found = index.search(vectors.get(0), K, 64, node -> node % 2 == 1);
+
+        assertThat(found).hasSize(K).allMatch(candidate -> candidate.node() % 2 == 1);
+    }
+
+    /**
+     * Share of the exact top K (scored the same way as the graph) found by the graph search
+     */
+    private double recall(HnswIndex index) {
+        Random random = new Random(11);
+        int hits = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomUnitVector(random);
+            Set<Integer> exact = index.exactSearch(query, K, node -> true).stream()
+                .map(HnswIndex.Candidate::node)
+                .collect(Collectors.toSet());
+            hits += (int) index.search(query, K, 64, node -> true).stream()
+                .filter(candidate -> exact.contains(candidate.node()))
+                .count();
+        }
+        return hits / (double) (queries * K);
+    }
+
+    private static List<float[]> randomUnitVectors(int count, Random random) {
+        List<float[]> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(randomUnitVector(random));
+        }
+        return result;
+    }
+
+    private static float[] randomUnitVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return VectorMath.normalize(vector);
+    }
+}
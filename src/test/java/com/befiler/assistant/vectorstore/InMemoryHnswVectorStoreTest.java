@@ -0,0 +1,190 @@
+package com.befiler.assistant.vectorstore;
+
+import com.befiler.assistant.config.VectorStoreProperties;
+import com.befiler.assistant.config.VectorStoreProperties.Quantization;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingClient;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class InMemoryHnswVectorStoreTest {
+
+    private static final int DIMENSIONS = 4;
+    private static final FilterExpressionBuilder BUILDER = new FilterExpressionBuilder();
+    private static final List<Double> QUERY = List.of(1.0, 0.5, 0.25, 0.125);
+
+    private final InMemoryHnswVectorStore store = newStore();
+
+    @Test
+    void tombstonesBelowTheThresholdAreKept() {
+        store.index(documents(0, 10));
+
+        store.replace(List.of(), ids(0, 4));
+
+        assertThat(store.nodeCount()).isEqualTo(10);
+    }
+
+    @Test
+    void graphIsRebuiltOnceTombstonesReachTheThreshold() {
+        store.index(documents(0, 10));
+
+        store.replace(List.of(), ids(0, 5));
+
+        assertThat(store.nodeCount()).isEqualTo(5);
+    }
+
+    @Test
+    void replacedDocumentsCountAsTombstones() {
+        store.index(documents(0, 10));
+        store.index(documents(0, 4));
+        assertThat(store.nodeCount()).isEqualTo(14);
+
+        // Re-indexing all ten leaves 10 tombstones in 20 nodes, which reaches 0.5
+        store.index(documents(4, 10));
+        assertThat(store.nodeCount()).isEqualTo(10);
+    }
+
+    @Test
+    void selectiveFilterIsAnsweredExactly() {
+        store.index(documents(0, 20));
+
+        // Three documents match, below the exact-search threshold of five
+        List<Document> found = store.similaritySearch(SearchRequest.query("q").withTopK(10)
+            .withFilterExpression(BUILDER.and(BUILDER.eq("section", "even"), BUILDER.lt("index", 6)).build()));
+
+        assertThat(found).extracting(Document::getId).containsExactlyInAnyOrder(id(0), id(2), id(4));
+    }
+
+    @Test
+    void broadFilterIsAnsweredFromTheGraph() {
+        store.index(documents(0, 20));
+
+        List<Document> found = store.similaritySearch(SearchRequest.query("q").withTopK(3)
+            .withFilterExpression(BUILDER.eq("section", "even").build()));
+
+        assertThat(found).hasSize(3)
+            .allSatisfy(doc -> assertThat(doc.getMetadata()).containsEntry("section", "even"));
+    }
+
+    @Test
+    void notFilterExcludesItsOperand() {
+        store.index(documents(0, 6));
+
+        List<Document> found = store.similaritySearch(SearchRequest.query("q").withTopK(10)
+            .withFilterExpression(BUILDER.not(BUILDER.eq("section", "even")).build()));
+
+        assertThat(found).extracting(Document::getId).containsExactlyInAnyOrder(id(1), id(3), id(5));
+    }
+
+    @Test
+    void quantizedCandidatesAreRerankedWithLocalFloats(@TempDir Path dir) throws Exception {
+        InMemoryHnswVectorStore quantized = newStore(Quantization.INT8, dir.resolve("floats").toString());
+        try {
+            List<Document> documents = documents(0, 20);
+            quantized.index(documents);
+
+            List<Document> found = quantized.similaritySearch(SearchRequest.query("q").withTopK(3));
+
+            List<Document> exact = documents.stream()
+                .sorted(Comparator.comparingDouble((Document doc) -> cosine(doc.getEmbedding(), QUERY)).reversed())
+                .limit(3)
+                .toList();
+            assertThat(found).extracting(Document::getId)
+                .containsExactlyElementsOf(exact.stream().map(Document::getId).toList());
+            // Distances come from the float copies, not the int8 codes
+            for (int i = 0; i < found.size(); i++) {
+                assertThat(((Number) found.get(i).getMetadata().get("distance")).doubleValue())
+                    .isCloseTo(1 - cosine(exact.get(i).getEmbedding(), QUERY), within(1e-5));
+            }
+        } finally {
+            quantized.destroy();
+        }
+    }
+
+    private static InMemoryHnswVectorStore newStore() {
+        return newStore(Quantization.NONE, "");
+    }
+
+    private static InMemoryHnswVectorStore newStore(Quantization quantization, String rerankVectorsPath) {
+        VectorStoreProperties.Hnsw settings = new VectorStoreProperties.Hnsw();
+        settings.setQuantization(quantization);
+        settings.setRerankVectorsPath(rerankVectorsPath);
+        settings.setDimensions(DIMENSIONS);
+        settings.setSnapshotPath("");
+        settings.setCompactionThreshold(0.5);
+        settings.setExactSearchThreshold(5);
+        // Only the in-memory graph is exercised: no pgvector or limiter, and every query
+        // embeds to the same vector
+        return new InMemoryHnswVectorStore(null, null, new FixedEmbeddingClient(), null, null, settings,
+            new ObjectMapper());
+    }
+
+    private static List<Document> documents(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> {
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("section", i % 2 == 0 ? "even" : "odd");
+            metadata.put("index", i);
+            Document doc = new Document(id(i), "content " + i, metadata);
+            List<Double> embedding = new ArrayList<>();
+            for (int d = 0; d < DIMENSIONS; d++) {
+                embedding.add(d == i % DIMENSIONS ? 1.0 : 0.1 * i);
+            }
+            doc.setEmbedding(embedding);
+            return doc;
+        }).toList();
+    }
+
+    private static double cosine(List<Double> a, List<Double> b) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.size(); i++) {
+            dot += a.get(i) * b.get(i);
+            normA += a.get(i) * a.get(i);
+            normB += b.get(i) * b.get(i);
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+
+    private static List<String> ids(int from, int to) {
+        return IntStream.range(from, to).mapToObj(InMemoryHnswVectorStoreTest::id).toList();
+    }
+
+    private static String id(int i) {
+        return "00000000-0000-0000-0000-" + String.format("%012d", i);
+    }
+
+    private static final class FixedEmbeddingClient implements EmbeddingClient {
+
+        @Override
+        public List<Double> embed(String text) {
+            return QUERY;
+        }
+
+        @Override
+        public List<Double> embed(Document document) {
+            return embed(document.getContent());
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
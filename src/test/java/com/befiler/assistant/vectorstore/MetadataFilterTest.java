@@ -0,0 +1,40 @@
+package com.befiler.assistant.vectorstore;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MetadataFilterTest {
+
+    private static final FilterExpressionBuilder BUILDER = new FilterExpressionBuilder();
+
+    private final Map<String, Object> qaPair = Map.of("section", "salary", "type", "qa_pair");
+    private final Map<String, Object> generalInfo = Map.of("section", "salary", "type", "general_info");
+
+    @Test
+    void notNegatesItsOperand() {
+        Filter.Expression notQa = BUILDER.not(BUILDER.eq("type", "qa_pair")).build();
+
+        assertThat(MetadataFilter.matches(notQa, qaPair)).isFalse();
+        assertThat(MetadataFilter.matches(notQa, generalInfo)).isTrue();
+    }
+
+    @Test
+    void notNegatesAGroup() {
+        Filter.Expression expression = BUILDER.and(
+            BUILDER.eq("section", "salary"),
+            BUILDER.not(BUILDER.group(BUILDER.or(BUILDER.eq("type", "qa_pair"), BUILDER.eq("type", "faq"))))).build();
+
+        assertThat(MetadataFilter.matches(expression, qaPair)).isFalse();
+        assertThat(MetadataFilter.matches(expression, generalInfo)).isTrue();
+    }
+
+    @Test
+    void missingFilterMatchesEverything() {
+        assertThat(MetadataFilter.matches(null, qaPair)).isTrue();
+    }
+}
@@ -0,0 +1,60 @@
+package com.befiler.assistant.vectorstore;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class RerankVectorsTest {
+
+    private static final int DIMENSIONS = 3;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void vectorsAreScoredAcrossSegments() throws IOException {
+        try (RerankVectors vectors = new RerankVectors(dir.resolve("floats"), DIMENSIONS)) {
+            vectors.set(0, new float[] {1, 0, 0});
+            vectors.set(10_000, new float[] {0, 0.6f, 0.8f});
+
+            assertThat(vectors.similarity(0, new float[] {0.5f, 0.5f, 0})).isCloseTo(0.5f, within(1e-6f));
+            assertThat(vectors.similarity(10_000, new float[] {0, 0, 1})).isCloseTo(0.8f, within(1e-6f));
+        }
+    }
+
+    @Test
+    void moveCopiesToTheLowerNode() throws IOException {
+        try (RerankVectors vectors = new RerankVectors(dir.resolve("floats"), DIMENSIONS)) {
+            vectors.set(0, new float[] {1, 0, 0});
+            vectors.set(9_000, new float[] {0, 1, 0});
+
+            vectors.move(9_000, 0);
+
+            assertThat(vectors.similarity(0, new float[] {0, 1, 0})).isEqualTo(1f);
+        }
+    }
+
+    @Test
+    void committedGenerationSurvivesReopeningUntilInvalidated() throws IOException {
+        Path path = dir.resolve("floats");
+        try (RerankVectors vectors = new RerankVectors(path, DIMENSIONS)) {
+            assertThat(vectors.generation()).isZero();
+            vectors.set(5, new float[] {0, 0, 1});
+            vectors.commit(42);
+        }
+
+        try (RerankVectors vectors = new RerankVectors(path, DIMENSIONS)) {
+            assertThat(vectors.generation()).isEqualTo(42);
+            vectors.mapNodes(6);
+            assertThat(vectors.similarity(5, new float[] {0, 0, 1})).isEqualTo(1f);
+
+            vectors.invalidate();
+            assertThat(vectors.generation()).isZero();
+        }
+    }
+}